@@ -17,6 +17,7 @@ public class AutoLoadCommand implements Command {
     private final CompositeShapePrototypeRegistry compositeRegistry;
     private final ShapePrototypeRegistry shapeRegistry;
     private final AutoSaveManager autoSaveManager;
+    private long journalCheckpoint;
 
     /**
      * Creates a new AutoLoadCommand.
@@ -47,8 +48,10 @@ public class AutoLoadCommand implements Command {
                 LoadStateCommand loadCommand = new LoadStateCommand(
                         whiteBoard, toolbarPanel, compositeRegistry, shapeRegistry, filePath);
                 loadCommand.execute();
+                journalCheckpoint = loadCommand.getLoadedJournalCheckpoint();
                 System.out.println("[AutoLoadCommand] Successfully loaded autosaved state");
             } catch (Exception e) {
+                journalCheckpoint = -1;
                 System.err.println("[AutoLoadCommand] Error loading autosaved state: " + e.getMessage());
                 System.err.println("[AutoLoadCommand] Stack trace: " + e);
 
@@ -68,6 +71,17 @@ public class AutoLoadCommand implements Command {
         }
     }
 
+    /**
+     * Gets the journal checkpoint of the autosaved state, from which the
+     * journal is replayed.
+     *
+     * @return The checkpoint, 0 if there is no autosave or it has none, or
+     *         -1 if it could not be loaded
+     */
+    public long getJournalCheckpoint() {
+        return journalCheckpoint;
+    }
+
     @Override
     public void undo() {
         
@@ -0,0 +1,48 @@
+package com.editor.commands;
+
+/**
+ * Takes and restores the checkpoints of the scene that a
+ * {@link CommandHistory} keeps along its entries, so that it can jump to
+ * any entry without undoing and redoing every command on the way. The
+ * history only holds the checkpoints and hands them back; what they contain
+ * is up to the checkpointer.
+ *
+ * @param <T> The type of the checkpoints
+ */
+public interface Checkpointer<T> {
+    /**
+     * Captures the current state of the scene.
+     *
+     * @return The checkpoint
+     */
+    T capture();
+
+    /**
+     * Puts the scene back in a captured state. The shapes must be the very
+     * objects captured, since the commands of the history refer to them.
+     *
+     * @param checkpoint The checkpoint to restore
+     */
+    void restore(T checkpoint);
+
+    /**
+     * Estimates the memory, in bytes, that a checkpoint keeps alive besides
+     * the scene and the checkpoints taken before it. Counted by the history
+     * against its size budget, like {@link Command#estimateSize()}.
+     *
+     * @param checkpoint The checkpoint
+     * @return The estimated size in bytes
+     */
+    long estimateSize(T checkpoint);
+
+    /**
+     * Estimates the work of restoring a checkpoint, as the total
+     * {@link Command#estimateSize()} of the commands that take about as long
+     * to undo. The history restores a checkpoint rather than walking to an
+     * entry only when it is expected to be faster.
+     *
+     * @param checkpoint The checkpoint
+     * @return The estimated cost of {@link #restore(Object)}
+     */
+    long estimateRestoreCost(T checkpoint);
+}
@@ -4,4 +4,29 @@ public interface Command {
     void execute();
 
     void undo();
+
+    /**
+     * Estimates the memory, in bytes, that this command keeps alive so that
+     * it can be undone and redone, not counting the shapes it shares with
+     * the scene. Used by {@link CommandHistory} to bound its size.
+     *
+     * @return The estimated size in bytes
+     */
+    default long estimateSize() {
+        return 32;
+    }
+
+    /**
+     * Folds a command executed right after this one into this one, so that
+     * a continuous interaction takes a single history entry and is undone
+     * in one step. {@link CommandHistory} only offers commands executed
+     * within its merge window.
+     *
+     * @param next The command executed right after this one
+     * @return true if this command now also covers next, which is then not
+     *         kept in the history
+     */
+    default boolean mergeWith(Command next) {
+        return false;
+    }
 }
@@ -1,15 +1,90 @@
 package com.editor.commands;
 
-import java.util.Stack;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Tree of the executed commands, see {@link HistoryNode}. Undo moves to
+ * the parent of the current entry and redo to the child it was last left
+ * for; executing a command after undoing starts a new branch and keeps the
+ * undone one, so that any entry can still be reached with
+ * {@link #jumpTo(HistoryNode)}.
+ * <p>
+ * Once a {@link Checkpointer} is set, the history keeps a checkpoint of the
+ * scene at every entry whose depth is a multiple of the checkpoint
+ * interval. A jump further than the interval restores the checkpoint
+ * nearest above the target and executes the commands from there, at most
+ * the interval, instead of undoing and redoing every command on the way.
+ * The checkpoints count against the size budget of the history with the
+ * size the checkpointer estimates for them.
+ * <p>
+ * The entries kept in memory can be bounded by count and by estimated size
+ * (see {@link Command#estimateSize()}). Past either budget, the branches off
+ * the way to the current entry are dropped first, those forking earliest
+ * first. Then the oldest undo entries are dropped or, once a spill file is
+ * set, written to it in pages and read back when undoing reaches them.
+ * Shapes and the scene stay on the heap; only what the commands hold to
+ * undo and redo goes to the file. Redo entries are never spilled: when
+ * undoing far back brings the history past its budget, the redo entries
+ * furthest from the present are dropped.
+ * <p>
+ * A command is offered to the previous one through
+ * {@link Command#mergeWith(Command)} when the user came back to the scene
+ * within the merge window, so that a continuous interaction such as
+ * repeated drags of the same selection is kept, and undone, as a single
+ * entry. The window is measured from the previous command to the start of
+ * the interaction producing the next one, as marked by
+ * {@link #beginInteraction()}, since a drag or a dialog only yields its
+ * command when it ends. Undo and redo close the window.
+ */
 public class CommandHistory {
-    private Stack<Command> history = new Stack<>();
-    private Stack<Command> redoStack = new Stack<>();
+    private final List<CommandHistoryListener> listeners = new ArrayList<>();
+    private HistoryNode root = new HistoryNode(0);
+    private HistoryNode current = root;
+    private int entryCount;
+    private int maxEntries = Integer.MAX_VALUE;
+    private long maxBytes = Long.MAX_VALUE;
+    private long memoryBytes;
+    private long droppedCount;
+    private CommandSpill spill;
+    private long mergeWindowNanos = TimeUnit.SECONDS.toNanos(1);
+    private long lastPushNanos;
+    private long interactionNanos;
+    private boolean mergeOpen;
+    private long mergedCount;
+    private Checkpointer<Object> checkpointer;
+    private int checkpointInterval = Integer.MAX_VALUE;
+    private long checkpointRestores;
+
+    /**
+     * Creates an unbounded history.
+     */
+    public CommandHistory() {
+    }
+
+    /**
+     * Creates a history keeping at most the given number of entries and
+     * estimated bytes in memory.
+     *
+     * @param maxEntries The maximum number of entries in memory
+     * @param maxBytes   The maximum estimated size of the entries in memory
+     */
+    public CommandHistory(int maxEntries, long maxBytes) {
+        setLimits(maxEntries, maxBytes);
+    }
 
     public void executeCommand(Command command) {
         command.execute();
-        history.push(command);
-        redoStack.clear();
+        push(command);
+        fireExecuted(command);
+        captureCheckpoint();
+        trim();
     }
 
     /**
@@ -19,33 +94,604 @@ public class CommandHistory {
      * @param command The command to add to history
      */
     public void addCommand(Command command) {
-        history.push(command);
-        redoStack.clear();
+        push(command);
+        fireExecuted(command);
+        captureCheckpoint();
+        trim();
     }
 
     public void undo() {
-        if (!history.isEmpty()) {
-            Command command = history.pop();
-            command.undo();
-            redoStack.push(command);
+        if (current == root) {
+            pageIn();
+        }
+        if (current != root) {
+            HistoryNode node = current;
+            mergeOpen = false;
+            node.command.undo();
+            current = node.parent;
+            current.redo = node;
+            trimRedo();
+            fireUndone(node.command);
+            captureCheckpoint();
         }
     }
 
     public void redo() {
-        if (!redoStack.isEmpty()) {
-            Command command = redoStack.pop();
-            command.execute();
-            history.push(command);
+        HistoryNode node = current.redo;
+        if (node != null) {
+            mergeOpen = false;
+            node.command.execute();
+            current = node;
+            fireExecuted(node.command);
+            captureCheckpoint();
+        }
+    }
+
+    /**
+     * Brings the scene to the state of any entry of the history. The
+     * commands between the current entry and the target are undone up to
+     * their common ancestor and executed down to the target, unless that
+     * takes more steps than the checkpoint interval and more work than
+     * restoring the checkpoint nearest above the target: then the
+     * checkpoint is restored and only the commands below it are executed.
+     * Listeners are notified of every command undone or executed, but not
+     * of the restore itself. The way to the target
+     * becomes the one redo follows.
+     *
+     * @param target The entry to jump to
+     * @return true if the history is now at the target, false if the
+     *         target is not in the history
+     */
+    public boolean jumpTo(HistoryNode target) {
+        if (target == null || !contains(target)) {
+            return false;
+        }
+        mergeOpen = false;
+        HistoryNode common = commonAncestor(current, target);
+        int steps = current.depth + target.depth - 2 * common.depth;
+        HistoryNode checkpoint = steps > checkpointInterval ? checkpointAbove(target) : null;
+        if (checkpoint != null && target.depth - checkpoint.depth < steps
+                && restoreCost(checkpoint, target) < walkCost(current, common) + walkCost(target, common)) {
+            checkpointer.restore(checkpoint.checkpoint);
+            current = checkpoint;
+            checkpointRestores++;
+        } else {
+            while (current != common) {
+                HistoryNode node = current;
+                node.command.undo();
+                current = node.parent;
+                fireUndone(node.command);
+            }
+        }
+        HistoryNode[] path = new HistoryNode[target.depth - current.depth];
+        for (HistoryNode node = target; node != current; node = node.parent) {
+            path[node.depth - current.depth - 1] = node;
+        }
+        for (HistoryNode node : path) {
+            node.command.execute();
+            current = node;
+            fireExecuted(node.command);
+        }
+        for (HistoryNode node = target; node.parent != null; node = node.parent) {
+            node.parent.redo = node;
+        }
+        captureCheckpoint();
+        return true;
+    }
+
+    /**
+     * Gets the oldest entry still in memory.
+     *
+     * @return The root of the history
+     */
+    public HistoryNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets the entry the scene is at.
+     *
+     * @return The current entry
+     */
+    public HistoryNode getCurrent() {
+        return current;
+    }
+
+    /**
+     * Lists the entries of the history, each before its children, for
+     * browsing it.
+     *
+     * @return Every entry in memory, starting with the root
+     */
+    public List<HistoryNode> getNodes() {
+        List<HistoryNode> nodes = new ArrayList<>(entryCount + 1);
+        Deque<HistoryNode> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            HistoryNode node = pending.pop();
+            nodes.add(node);
+            for (int i = node.children.size() - 1; i >= 0; i--) {
+                pending.push(node.children.get(i));
+            }
         }
+        return nodes;
     }
 
     /**
-     * Clears both the undo and redo history stacks.
+     * Sets what takes and restores the checkpoints of the scene, and at
+     * which interval of depth. Checkpoints taken by another checkpointer
+     * are dropped.
+     *
+     * @param <T>          The type of the checkpoints
+     * @param checkpointer The checkpointer, or null to stop taking
+     *                     checkpoints and drop the ones taken
+     * @param interval     The number of commands between two checkpoints
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void setCheckpointer(Checkpointer<T> checkpointer, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive.");
+        }
+        if (checkpointer != this.checkpointer) {
+            for (HistoryNode node : getNodes()) {
+                dropCheckpoint(node);
+            }
+        }
+        this.checkpointer = (Checkpointer<Object>) checkpointer;
+        if (checkpointer == null) {
+            checkpointInterval = Integer.MAX_VALUE;
+            return;
+        }
+        checkpointInterval = interval;
+        captureCheckpoint();
+    }
+
+    /**
+     * Gets the number of jumps that restored a checkpoint.
+     *
+     * @return The number of checkpoint restores
+     */
+    public long getCheckpointRestoreCount() {
+        return checkpointRestores;
+    }
+
+    /**
+     * Clears the whole history.
      * Useful when loading a new state.
      */
     public void clear() {
-        history.clear();
-        redoStack.clear();
+        root = new HistoryNode(0);
+        current = root;
+        entryCount = 0;
+        memoryBytes = 0;
+        mergeOpen = false;
+        if (spill != null) {
+            try {
+                spill.clear();
+            } catch (IOException e) {
+                System.err.println("[CommandHistory] Could not clear spill file: " + e.getMessage());
+            }
+        }
+        captureCheckpoint();
         System.out.println("[CommandHistory] History cleared.");
     }
+
+    /**
+     * Sets the budget of the entries kept in memory, every branch together,
+     * and trims the history to it.
+     *
+     * @param maxEntries The maximum number of entries in memory
+     * @param maxBytes   The maximum estimated size of the entries in memory
+     */
+    public void setLimits(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("History limits must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    /**
+     * Sets the file receiving the entries past the budget, replacing its
+     * content. Without a spill file, those entries are dropped. Entries
+     * already in the previous spill file are dropped.
+     *
+     * @param file The spill file, or null to drop entries past the budget
+     * @throws IOException if the file cannot be created
+     */
+    public void setSpillFile(Path file) throws IOException {
+        if (spill != null) {
+            droppedCount += spill.size();
+            CommandSpill previous = spill;
+            spill = null;
+            previous.close();
+        }
+        if (file != null) {
+            spill = new CommandSpill(file);
+            System.out.println("[CommandHistory] Spilling history to " + file);
+        }
+    }
+
+    /**
+     * Sets how long after a command the next one may still be merged into
+     * it.
+     *
+     * @param millis The merge window in milliseconds, 0 to never merge
+     */
+    public void setMergeWindow(long millis) {
+        mergeWindowNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Marks the start of an interaction, such as a drag or an edit dialog,
+     * whose command is pushed when it ends. That command may be merged if
+     * the interaction began within the merge window of the previous
+     * command, however long it lasted. A mark left by an interaction that
+     * ended without a command is replaced by the next one.
+     */
+    public void beginInteraction() {
+        interactionNanos = System.nanoTime();
+    }
+
+    /**
+     * Gets the number of commands merged into the previous entry instead of
+     * taking an entry of their own.
+     *
+     * @return The number of merged commands
+     */
+    public long getMergedCount() {
+        return mergedCount;
+    }
+
+    /**
+     * Gets the estimated size of the entries held in memory.
+     *
+     * @return The size in bytes
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Gets the number of commands that can be undone, in memory or spilled.
+     *
+     * @return The undo depth
+     */
+    public int getUndoCount() {
+        return current.depth - root.depth + getSpilledCount();
+    }
+
+    /**
+     * Gets the number of commands that can be redone.
+     *
+     * @return The redo depth
+     */
+    public int getRedoCount() {
+        int count = 0;
+        for (HistoryNode node = current.redo; node != null; node = node.redo) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of commands held in the spill file.
+     *
+     * @return The number of spilled commands
+     */
+    public int getSpilledCount() {
+        return spill == null ? 0 : spill.size();
+    }
+
+    /**
+     * Gets the size of the spill file.
+     *
+     * @return The size in bytes, 0 without a spill file
+     */
+    public long getSpillBytes() {
+        return spill == null ? 0 : spill.getBytes();
+    }
+
+    /**
+     * Gets the number of commands dropped from the history so far because
+     * they were past the budget.
+     *
+     * @return The number of dropped commands
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Registers a listener notified after every execute, undo and redo.
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(CommandHistoryListener listener) {
+        if (listener != null && !listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes a previously registered listener.
+     *
+     * @param listener The listener to remove
+     */
+    public void removeListener(CommandHistoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void push(Command command) {
+        long now = System.nanoTime();
+        long resumed = interactionNanos != lastPushNanos ? interactionNanos : now;
+        if (mergeOpen && current != root && resumed - lastPushNanos <= mergeWindowNanos) {
+            long size = current.command.estimateSize();
+            if (current.command.mergeWith(command)) {
+                memoryBytes += current.command.estimateSize() - size;
+                lastPushNanos = now;
+                interactionNanos = now;
+                mergedCount++;
+                dropCheckpoint(current);
+                return;
+            }
+        }
+        HistoryNode node = new HistoryNode(command, current);
+        current.redo = node;
+        current = node;
+        entryCount++;
+        memoryBytes += command.estimateSize();
+        lastPushNanos = now;
+        interactionNanos = now;
+        mergeOpen = true;
+    }
+
+    /**
+     * Takes a checkpoint at the current entry if its depth calls for one.
+     * Called once listeners have seen the last command, so that the scene
+     * is up to date.
+     */
+    private void captureCheckpoint() {
+        if (checkpointer != null && current.checkpoint == null && current.depth % checkpointInterval == 0) {
+            current.checkpoint = checkpointer.capture();
+            current.checkpointSize = checkpointer.estimateSize(current.checkpoint);
+            memoryBytes += current.checkpointSize;
+        }
+    }
+
+    private void dropCheckpoint(HistoryNode node) {
+        memoryBytes -= node.checkpointSize;
+        node.checkpoint = null;
+        node.checkpointSize = 0;
+    }
+
+    private boolean contains(HistoryNode node) {
+        while (node.parent != null) {
+            node = node.parent;
+        }
+        return node == root;
+    }
+
+    private static HistoryNode commonAncestor(HistoryNode a, HistoryNode b) {
+        while (a.depth > b.depth) {
+            a = a.parent;
+        }
+        while (b.depth > a.depth) {
+            b = b.parent;
+        }
+        while (a != b) {
+            a = a.parent;
+            b = b.parent;
+        }
+        return a;
+    }
+
+    /**
+     * Estimates the work of undoing or executing the commands between an
+     * entry and one of its ancestors, from the size of the commands.
+     */
+    private static long walkCost(HistoryNode node, HistoryNode ancestor) {
+        long cost = 0;
+        for (; node != ancestor; node = node.parent) {
+            cost += node.command.estimateSize();
+        }
+        return cost;
+    }
+
+    /**
+     * Estimates the work of restoring a checkpoint and executing the
+     * commands below it down to the target.
+     */
+    private long restoreCost(HistoryNode checkpoint, HistoryNode target) {
+        return checkpointer.estimateRestoreCost(checkpoint.checkpoint) + walkCost(target, checkpoint);
+    }
+
+    private static HistoryNode checkpointAbove(HistoryNode node) {
+        while (node != null && node.checkpoint == null) {
+            node = node.parent;
+        }
+        return node;
+    }
+
+    /**
+     * Drops the redo entries furthest from the present while the history is
+     * past its budget, which happens when undoing reads spilled entries back.
+     */
+    private void trimRedo() {
+        if (!overBudget(maxEntries, maxBytes)) {
+            return;
+        }
+        dropBranches();
+        List<HistoryNode> redo = new ArrayList<>();
+        for (HistoryNode node = current.redo; node != null; node = node.redo) {
+            redo.add(node);
+        }
+        for (int i = redo.size() - 1; i > 0 && overBudget(maxEntries, maxBytes); i--) {
+            HistoryNode node = redo.get(i);
+            node.parent.children.remove(node);
+            node.parent.redo = null;
+            droppedCount += release(node);
+        }
+    }
+
+    private boolean overBudget(int entries, long bytes) {
+        return entryCount > entries || memoryBytes > bytes;
+    }
+
+    /**
+     * Evicts the oldest undo entries until the history is back within its
+     * budget, once the branches off the way to the current entry are gone.
+     * Spilled entries are written in one page, taken down to three quarters
+     * of the budget so that the file is not written on every command.
+     */
+    private void trim() {
+        if (!overBudget(maxEntries, maxBytes)) {
+            return;
+        }
+        dropBranches();
+        if (spill == null) {
+            while (current != root && overBudget(maxEntries, maxBytes)) {
+                advanceRoot();
+                droppedCount++;
+            }
+            return;
+        }
+        int lowEntries = Math.max(maxEntries - maxEntries / 4, 1);
+        long lowBytes = maxBytes - maxBytes / 4;
+        List<Command> page = new ArrayList<>();
+        while (current.depth - root.depth > 1 && overBudget(lowEntries, lowBytes)) {
+            page.add(advanceRoot());
+        }
+        if (page.isEmpty()) {
+            return;
+        }
+        try {
+            spill.push(page);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[CommandHistory] Could not spill history, dropping the oldest entries: "
+                    + e.getMessage());
+            droppedCount += page.size() + spill.size();
+            discardSpill();
+        }
+    }
+
+    /**
+     * Drops the branches off the way from the root to the current entry and
+     * on along its redo entries, those forking earliest first, while the
+     * history is past its budget. Every entry on that way leads to the next
+     * through its redo child.
+     */
+    private void dropBranches() {
+        for (HistoryNode node = root; node != null && overBudget(maxEntries, maxBytes); node = node.redo) {
+            Iterator<HistoryNode> children = node.children.iterator();
+            while (children.hasNext() && overBudget(maxEntries, maxBytes)) {
+                HistoryNode child = children.next();
+                if (child != node.redo) {
+                    children.remove();
+                    droppedCount += release(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the child of the root on the way to the current entry the new
+     * root, dropping any other branch of the old root.
+     *
+     * @return The command of the new root, no longer in the history
+     */
+    private Command advanceRoot() {
+        HistoryNode next = root.redo;
+        for (HistoryNode child : root.children) {
+            if (child != next) {
+                droppedCount += release(child);
+            }
+        }
+        root.children.clear();
+        root.redo = null;
+        dropCheckpoint(root);
+        Command command = next.command;
+        next.command = null;
+        next.parent = null;
+        root = next;
+        entryCount--;
+        memoryBytes -= command.estimateSize();
+        return command;
+    }
+
+    /**
+     * Forgets the entries of a branch taken off the tree.
+     *
+     * @return The number of entries forgotten
+     */
+    private int release(HistoryNode branch) {
+        branch.parent = null;
+        int count = 0;
+        Deque<HistoryNode> pending = new ArrayDeque<>();
+        pending.push(branch);
+        while (!pending.isEmpty()) {
+            HistoryNode node = pending.pop();
+            memoryBytes -= node.command.estimateSize() + node.checkpointSize;
+            count++;
+            for (HistoryNode child : node.children) {
+                pending.push(child);
+            }
+        }
+        entryCount -= count;
+        return count;
+    }
+
+    /**
+     * Reads the most recent page of spilled entries back into memory, above
+     * the root, which takes the newest command of the page.
+     */
+    private void pageIn() {
+        if (spill == null || spill.size() == 0) {
+            return;
+        }
+        try {
+            List<Command> page = spill.pop();
+            HistoryNode base = new HistoryNode(root.depth - page.size());
+            HistoryNode parent = base;
+            for (int i = 0; i < page.size() - 1; i++) {
+                HistoryNode node = new HistoryNode(page.get(i), parent);
+                parent.redo = node;
+                parent = node;
+            }
+            root.command = page.get(page.size() - 1);
+            root.parent = parent;
+            parent.children.add(root);
+            parent.redo = root;
+            root = base;
+            entryCount += page.size();
+            for (Command command : page) {
+                memoryBytes += command.estimateSize();
+            }
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            System.err.println("[CommandHistory] Could not read spilled history, dropping it: " + e.getMessage());
+            droppedCount += spill.size();
+            discardSpill();
+        }
+    }
+
+    private void discardSpill() {
+        try {
+            spill.clear();
+        } catch (IOException e) {
+            System.err.println("[CommandHistory] Could not clear spill file: " + e.getMessage());
+        }
+    }
+
+    private void fireExecuted(Command command) {
+        for (CommandHistoryListener listener : listeners) {
+            listener.commandExecuted(command);
+        }
+    }
+
+    private void fireUndone(Command command) {
+        for (CommandHistoryListener listener : listeners) {
+            listener.commandUndone(command);
+        }
+    }
 }
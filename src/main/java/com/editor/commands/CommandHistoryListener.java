@@ -0,0 +1,21 @@
+package com.editor.commands;
+
+/**
+ * Listener notified whenever a {@link CommandHistory} applies or reverts a
+ * command, so that views can resynchronise any state derived from the shapes.
+ */
+public interface CommandHistoryListener {
+    /**
+     * Called after a command has been executed or redone.
+     *
+     * @param command The command that was applied
+     */
+    void commandExecuted(Command command);
+
+    /**
+     * Called after a command has been undone.
+     *
+     * @param command The command that was reverted
+     */
+    void commandUndone(Command command);
+}
@@ -0,0 +1,242 @@
+package com.editor.commands;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.editor.shapes.Shape;
+
+/**
+ * File holding the oldest undo entries of a {@link CommandHistory}, as a
+ * stack of serialized pages. Commands refer to the live shapes and scene,
+ * which must come back as the very same objects when a page is read, so
+ * shapes and anything not serializable are written as references into a
+ * table of objects kept on the heap. Everything else a command holds, such
+ * as its lists, maps and saved positions, only lives in the file.
+ */
+final class CommandSpill implements Closeable {
+    private final Path file;
+    private final FileChannel channel;
+    private final Deque<Page> pages = new ArrayDeque<>();
+    private final List<Object> referents = new ArrayList<>();
+    private final Map<Object, Integer> ids = new IdentityHashMap<>();
+    private final List<Integer> useCounts = new ArrayList<>();
+    private long end;
+    private int count;
+
+    private static final class Page {
+        final long offset;
+        final int length;
+        final int count;
+        final int[] references;
+
+        Page(long offset, int length, int count, int[] references) {
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+            this.references = references;
+        }
+    }
+
+    /**
+     * Reference to an object of the referent table, written in place of it.
+     */
+    private static final class Reference implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final int id;
+
+        Reference(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Creates an empty spill file, replacing the file if it exists.
+     *
+     * @param file The spill file
+     * @throws IOException if the file cannot be created
+     */
+    CommandSpill(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of commands in the file.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Gets the number of bytes of the file in use.
+     */
+    long getBytes() {
+        return end;
+    }
+
+    /**
+     * Writes commands, oldest first, as a new page on top of the stack.
+     */
+    void push(List<Command> commands) throws IOException {
+        final BitSet references = new BitSet();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes) {
+            {
+                enableReplaceObject(true);
+            }
+
+            @Override
+            protected Object replaceObject(Object obj) {
+                if (obj instanceof Shape || !(obj instanceof Serializable)) {
+                    int id = reference(obj);
+                    references.set(id);
+                    return new Reference(id);
+                }
+                return obj;
+            }
+        }) {
+            out.writeInt(commands.size());
+            for (Command command : commands) {
+                out.writeObject(command);
+            }
+        } catch (IOException | RuntimeException e) {
+            references.stream().forEach(this::release);
+            throw e;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        long offset = end;
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+        } catch (IOException e) {
+            references.stream().forEach(this::release);
+            throw e;
+        }
+        int[] used = references.stream().toArray();
+        for (int id : used) {
+            useCounts.set(id, useCounts.get(id) + 1);
+        }
+        pages.push(new Page(offset, buffer.limit(), commands.size(), used));
+        end = offset + buffer.limit();
+        count += commands.size();
+    }
+
+    /**
+     * Reads and removes the page on top of the stack.
+     *
+     * @return The commands of the page, oldest first
+     */
+    List<Command> pop() throws IOException, ClassNotFoundException {
+        Page page = pages.pop();
+        count -= page.count;
+        end = page.offset;
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(page.length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, page.offset + buffer.position()) < 0) {
+                    throw new IOException("Spill file truncated: " + file);
+                }
+            }
+            channel.truncate(page.offset);
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buffer.array())) {
+                {
+                    enableResolveObject(true);
+                }
+
+                @Override
+                protected Object resolveObject(Object obj) {
+                    return obj instanceof Reference ? referents.get(((Reference) obj).id) : obj;
+                }
+            }) {
+                int size = in.readInt();
+                List<Command> commands = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    commands.add((Command) in.readObject());
+                }
+                return commands;
+            }
+        } finally {
+            for (int id : page.references) {
+                useCounts.set(id, useCounts.get(id) - 1);
+                release(id);
+            }
+            if (pages.isEmpty()) {
+                referents.clear();
+                ids.clear();
+                useCounts.clear();
+            }
+        }
+    }
+
+    /**
+     * Discards every page.
+     */
+    void clear() throws IOException {
+        pages.clear();
+        referents.clear();
+        ids.clear();
+        useCounts.clear();
+        count = 0;
+        end = 0;
+        channel.truncate(0);
+    }
+
+    /**
+     * Closes and deletes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        pages.clear();
+        referents.clear();
+        ids.clear();
+        useCounts.clear();
+        count = 0;
+        end = 0;
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    private int reference(Object obj) {
+        Integer id = ids.get(obj);
+        if (id == null) {
+            id = referents.size();
+            referents.add(obj);
+            useCounts.add(0);
+            ids.put(obj, id);
+        }
+        return id;
+    }
+
+    /**
+     * Forgets a referent once no page uses it anymore.
+     */
+    private void release(int id) {
+        if (useCounts.get(id) == 0 && referents.get(id) != null) {
+            ids.remove(referents.get(id));
+            referents.set(id, null);
+        }
+    }
+}
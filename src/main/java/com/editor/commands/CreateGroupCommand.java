@@ -1,5 +1,6 @@
 package com.editor.commands;
 
+import java.io.Serializable;
 import java.util.List;
 
 import com.editor.shapes.Shape;
@@ -8,7 +9,8 @@ import com.editor.shapes.ShapeGroup;
 /**
  * Command to add a pre-defined ShapeGroup to the whiteboard.
  */
-public class CreateGroupCommand implements Command {
+public class CreateGroupCommand implements Command, Serializable {
+    private static final long serialVersionUID = 1L;
     private List<Shape> shapes;
     private ShapeGroup groupToAdd;
 
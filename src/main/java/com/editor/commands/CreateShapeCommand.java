@@ -1,13 +1,16 @@
 package com.editor.commands;
 
+import java.io.Serializable;
 import java.util.List;
 
 import com.editor.shapes.Shape;
 
-public class CreateShapeCommand implements Command {
+public class CreateShapeCommand implements Command, Serializable {
+    private static final long serialVersionUID = 1L;
     private final List<Shape> canvasShapes;
     private final Shape shape;
     private final int x, y;
+    private boolean placed;
 
     public CreateShapeCommand(List<Shape> canvasShapes, Shape shape, int x, int y) {
         this.canvasShapes = canvasShapes;
@@ -16,9 +19,16 @@ public class CreateShapeCommand implements Command {
         this.y = y;
     }
 
+    /**
+     * Moves the shape into place the first time only, so that redoing the
+     * command puts the shape back where it was rather than moving it again.
+     */
     @Override
     public void execute() {
-        shape.move(x, y);
+        if (!placed) {
+            shape.move(x, y);
+            placed = true;
+        }
         canvasShapes.add(shape);
     }
 
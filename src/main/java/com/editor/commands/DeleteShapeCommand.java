@@ -1,10 +1,12 @@
 package com.editor.commands;
 
+import java.io.Serializable;
 import java.util.List;
 
 import com.editor.shapes.Shape;
 
-public class DeleteShapeCommand implements Command {
+public class DeleteShapeCommand implements Command, Serializable {
+    private static final long serialVersionUID = 1L;
     private final List<Shape> canvasShapes;
     private final Shape shape;
     private int index;
@@ -0,0 +1,73 @@
+package com.editor.commands;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import com.editor.shapes.Shape;
+
+/**
+ * Command to delete multiple shapes at once.
+ * Undo puts every shape back at the position it had in the scene.
+ */
+public class DeleteShapesCommand implements Command, Serializable {
+    private static final long serialVersionUID = 1L;
+    private final List<Shape> canvasShapes;
+    private final Shape[] shapes;
+    private final int[] indices;
+
+    /**
+     * Creates a command to delete shapes. Shapes that are not in the scene
+     * are left out.
+     *
+     * @param canvasShapes The list of shapes on the canvas
+     * @param shapesToDelete The shapes to delete
+     */
+    public DeleteShapesCommand(List<Shape> canvasShapes, Collection<Shape> shapesToDelete) {
+        this.canvasShapes = canvasShapes;
+        List<int[]> found = new ArrayList<>();
+        List<Shape> present = new ArrayList<>();
+        for (Shape shape : shapesToDelete) {
+            int index = canvasShapes.indexOf(shape);
+            if (index >= 0) {
+                found.add(new int[] { index, present.size() });
+                present.add(shape);
+            }
+        }
+        found.sort((a, b) -> Integer.compare(a[0], b[0]));
+        this.shapes = new Shape[found.size()];
+        this.indices = new int[found.size()];
+        for (int i = 0; i < shapes.length; i++) {
+            indices[i] = found.get(i)[0];
+            shapes[i] = present.get(found.get(i)[1]);
+        }
+    }
+
+    /**
+     * Tests whether any shape is to be deleted.
+     *
+     * @return true if the command deletes no shape
+     */
+    public boolean isEmpty() {
+        return shapes.length == 0;
+    }
+
+    @Override
+    public void execute() {
+        canvasShapes.removeAll(Arrays.asList(shapes));
+    }
+
+    @Override
+    public void undo() {
+        for (int i = 0; i < shapes.length; i++) {
+            canvasShapes.add(indices[i], shapes[i]);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return 64 + shapes.length * 12L;
+    }
+}
@@ -1,40 +1,36 @@
 package com.editor.commands;
 
 import java.awt.Color;
+import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
-import com.editor.shapes.Circle;
-import com.editor.shapes.Rectangle;
-import com.editor.shapes.RegularPolygon;
 import com.editor.shapes.Shape;
+import com.editor.shapes.ShapeGroup;
+import com.editor.shapes.Style;
+import com.editor.shapes.StyleTable;
+import com.editor.shapes.Styled;
 
 /**
- * Command to edit shape properties (colors, rotation)
+ * Command to edit shape properties (colors, rotation).
+ * The new colors and border radius are interned once as a shared style, so
+ * editing many shapes only assigns a style ID to each; the undo record is
+ * the array of previous style IDs and rotations.
+ * Shapes without a style, such as groups, only take the border color.
  */
-public class EditShapeCommand implements Command {
+public class EditShapeCommand implements ShapeCommand, Serializable {
+    private static final long serialVersionUID = 1L;
     private final List<Shape> shapes;
-    private final Map<Shape, ShapeState> oldStates = new HashMap<>();
-    private final Map<Shape, ShapeState> newStates = new HashMap<>();
-
-    /**
-     * Class to store shape state
-     */
-    private static class ShapeState {
-        Color borderColor;
-        Color fillColor;
-        double rotation;
-        int borderRadius;
-
-        ShapeState(Color borderColor, Color fillColor, double rotation, int borderRadius) {
-            this.borderColor = borderColor;
-            this.fillColor = fillColor;
-            this.rotation = rotation;
-            this.borderRadius = borderRadius;
-        }
-    }
+    private int newStyleId;
+    private Color newBorderColor;
+    private double newRotation;
+    private final int[] oldStyleIds;
+    private final double[] oldRotations;
+    private final Map<Shape, Color> oldBorderColors = new IdentityHashMap<>();
 
     /**
      * Create a new edit command
@@ -48,16 +44,21 @@ public class EditShapeCommand implements Command {
     public EditShapeCommand(List<Shape> shapes, Color newBorderColor, Color newFillColor, double newRotation,
             int newBorderRadius) {
         this.shapes = new ArrayList<>(shapes);
-
-        
-        for (Shape shape : shapes) {
-            Color oldBorderColor = getBorderColor(shape);
-            Color oldFillColor = getFillColor(shape);
-            double oldRotation = getRotation(shape);
-            int oldBorderRadius = getBorderRadius(shape);
-
-            oldStates.put(shape, new ShapeState(oldBorderColor, oldFillColor, oldRotation, oldBorderRadius));
-            newStates.put(shape, new ShapeState(newBorderColor, newFillColor, newRotation, newBorderRadius));
+        this.newStyleId = StyleTable.intern(new Style(newFillColor, newBorderColor, newBorderRadius));
+        this.newBorderColor = newBorderColor;
+        this.newRotation = newRotation;
+        this.oldStyleIds = new int[this.shapes.size()];
+        this.oldRotations = new double[this.shapes.size()];
+
+        for (int i = 0; i < this.shapes.size(); i++) {
+            Shape shape = this.shapes.get(i);
+            if (shape instanceof Styled) {
+                oldStyleIds[i] = ((Styled) shape).getStyleId();
+                oldRotations[i] = shape.getRotation();
+            } else {
+                oldStyleIds[i] = -1;
+                oldBorderColors.put(shape, getBorderColor(shape));
+            }
         }
     }
 
@@ -75,96 +76,68 @@ public class EditShapeCommand implements Command {
 
     @Override
     public void execute() {
-        for (Shape shape : shapes) {
-            ShapeState newState = newStates.get(shape);
-
-            
-            shape.setBorderColor(newState.borderColor);
-            setFillColor(shape, newState.fillColor);
-            setRotation(shape, newState.rotation);
-            setBorderRadius(shape, newState.borderRadius);
+        for (int i = 0; i < shapes.size(); i++) {
+            Shape shape = shapes.get(i);
+            if (oldStyleIds[i] >= 0) {
+                ((Styled) shape).setStyleId(newStyleId);
+                shape.setRotation(newRotation);
+            } else {
+                shape.setBorderColor(newBorderColor);
+            }
         }
     }
 
     @Override
     public void undo() {
-        for (Shape shape : shapes) {
-            ShapeState oldState = oldStates.get(shape);
-
-            
-            shape.setBorderColor(oldState.borderColor);
-            setFillColor(shape, oldState.fillColor);
-            setRotation(shape, oldState.rotation);
-            setBorderRadius(shape, oldState.borderRadius);
+        for (int i = 0; i < shapes.size(); i++) {
+            Shape shape = shapes.get(i);
+            if (oldStyleIds[i] >= 0) {
+                ((Styled) shape).setStyleId(oldStyleIds[i]);
+                shape.setRotation(oldRotations[i]);
+            } else {
+                shape.setBorderColor(oldBorderColors.get(shape));
+            }
         }
     }
 
-    
-
-    private Color getBorderColor(Shape shape) {
-        if (shape instanceof Rectangle) {
-            return ((Rectangle) shape).getBorderColor();
-        } else if (shape instanceof RegularPolygon) {
-            return ((RegularPolygon) shape).getBorderColor();
-        } else if (shape instanceof Circle) {
-            return ((Circle) shape).getBorderColor();
-        }
-        return Color.BLACK; 
-    }
-
-    private Color getFillColor(Shape shape) {
-        if (shape instanceof Rectangle) {
-            return ((Rectangle) shape).getFillColor();
-        } else if (shape instanceof RegularPolygon) {
-            return ((RegularPolygon) shape).getFillColor();
-        } else if (shape instanceof Circle) {
-            return ((Circle) shape).getFillColor();
+    /**
+     * Merges an edit of the same shapes: this command keeps the previous
+     * values and takes the new ones of the next edit.
+     */
+    @Override
+    public boolean mergeWith(Command next) {
+        if (!(next instanceof EditShapeCommand)) {
+            return false;
         }
-        return Color.WHITE; 
-    }
-
-    private double getRotation(Shape shape) {
-        if (shape instanceof Rectangle) {
-            return ((Rectangle) shape).getRotation();
-        } else if (shape instanceof RegularPolygon) {
-            return ((RegularPolygon) shape).getRotation();
-        } else if (shape instanceof Circle) {
-            return ((Circle) shape).getRotation();
+        EditShapeCommand other = (EditShapeCommand) next;
+        if (other.shapes.size() != shapes.size()) {
+            return false;
         }
-        return 0.0; 
-    }
-
-    private void setFillColor(Shape shape, Color color) {
-        if (shape instanceof Rectangle) {
-            ((Rectangle) shape).setFillColor(color);
-        } else if (shape instanceof RegularPolygon) {
-            ((RegularPolygon) shape).setFillColor(color);
-        } else if (shape instanceof Circle) {
-            ((Circle) shape).setFillColor(color);
+        for (int i = 0; i < shapes.size(); i++) {
+            if (other.shapes.get(i) != shapes.get(i)) {
+                return false;
+            }
         }
+        newStyleId = other.newStyleId;
+        newBorderColor = other.newBorderColor;
+        newRotation = other.newRotation;
+        return true;
     }
 
-    private void setRotation(Shape shape, double rotation) {
-        if (shape instanceof Rectangle) {
-            ((Rectangle) shape).setRotation(rotation);
-        } else if (shape instanceof RegularPolygon) {
-            ((RegularPolygon) shape).setRotation(rotation);
-        } else if (shape instanceof Circle) {
-            ((Circle) shape).setRotation(rotation);
-        }
+    @Override
+    public long estimateSize() {
+        return 96 + shapes.size() * 16L + oldBorderColors.size() * 48L;
     }
 
-    private int getBorderRadius(Shape shape) {
-        if (shape instanceof Rectangle) {
-            return ((Rectangle) shape).getBorderRadius();
-        }
-        return 0; 
+    @Override
+    public Collection<Shape> getAffectedShapes() {
+        return Collections.unmodifiableList(shapes);
     }
 
-    private void setBorderRadius(Shape shape, int borderRadius) {
-        if (shape instanceof Rectangle) {
-            ((Rectangle) shape).setBorderRadius(borderRadius);
+    private Color getBorderColor(Shape shape) {
+        if (shape instanceof ShapeGroup) {
+            return ((ShapeGroup) shape).getBorderColor();
         }
-        
+        return Color.BLACK; 
     }
 }
@@ -1,5 +1,6 @@
 package com.editor.commands;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -9,7 +10,8 @@ import com.editor.shapes.ShapeGroup;
 /**
  * Command to group multiple shapes into a single ShapeGroup.
  */
-public class GroupShapesCommand implements Command {
+public class GroupShapesCommand implements Command, Serializable {
+    private static final long serialVersionUID = 1L;
     private final List<Shape> canvasShapes;
     private final List<Shape> shapesToGroup;
     private final ShapeGroup group;
@@ -36,7 +38,7 @@ public class GroupShapesCommand implements Command {
     public void execute() {
         
         canvasShapes.removeAll(shapesToGroup);
-        
+        setParent(group);
         
         canvasShapes.add(group);
     }
@@ -45,7 +47,7 @@ public class GroupShapesCommand implements Command {
     public void undo() {
         
         canvasShapes.remove(group);
-        
+        setParent(null);
         
         for (int i = 0; i < shapesToGroup.size(); i++) {
             int index = originalIndices.get(i);
@@ -57,6 +59,22 @@ public class GroupShapesCommand implements Command {
         }
     }
     
+    /**
+     * Detaches the grouped shapes from the group while it is off the
+     * canvas, so that they do not keep invalidating it, and attaches them
+     * back when it returns.
+     */
+    private void setParent(ShapeGroup parent) {
+        for (Shape shape : shapesToGroup) {
+            shape.setParent(parent);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return 160 + shapesToGroup.size() * 32L;
+    }
+
     /**
      * Gets the created group.
      * 
@@ -0,0 +1,96 @@
+package com.editor.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry of a {@link CommandHistory}: the state reached by executing its
+ * command from the state of its parent. Executing a command after undoing
+ * keeps the undone entries as another branch, so the history is a tree
+ * whose root is the oldest state still in memory. Entries are handed out
+ * to browse the history and to jump to any of them with
+ * {@link CommandHistory#jumpTo(HistoryNode)}.
+ */
+public final class HistoryNode {
+    Command command;
+    HistoryNode parent;
+    final List<HistoryNode> children = new ArrayList<>(1);
+    HistoryNode redo;
+    int depth;
+    Object checkpoint;
+    long checkpointSize;
+
+    /**
+     * Creates the root of a history.
+     */
+    HistoryNode(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Creates an entry and adds it to the children of its parent.
+     */
+    HistoryNode(Command command, HistoryNode parent) {
+        this.command = command;
+        this.parent = parent;
+        this.depth = parent.depth + 1;
+        parent.children.add(this);
+    }
+
+    /**
+     * Gets the command leading to this entry from its parent.
+     *
+     * @return The command, or null for the root
+     */
+    public Command getCommand() {
+        return command;
+    }
+
+    /**
+     * Gets the entry this one was reached from.
+     *
+     * @return The parent, or null for the root or an entry dropped from the
+     *         history
+     */
+    public HistoryNode getParent() {
+        return parent;
+    }
+
+    /**
+     * Gets the entries reached from this one, oldest first.
+     *
+     * @return The children
+     */
+    public List<HistoryNode> getChildren() {
+        return new ArrayList<>(children);
+    }
+
+    /**
+     * Gets the number of commands executed since the history was cleared to
+     * reach this entry, counting those spilled or dropped.
+     *
+     * @return The depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Checks whether the history keeps a checkpoint of the scene at this
+     * entry.
+     *
+     * @return true if the entry has a checkpoint
+     */
+    public boolean hasCheckpoint() {
+        return checkpoint != null;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryNode{" +
+                "depth=" + depth +
+                ", command=" + command +
+                ", children=" + children.size() +
+                '}';
+    }
+}
@@ -31,6 +31,7 @@ public class LoadStateCommand implements Command {
 
     
     private AppStateMemento previousState = null;
+    private long loadedJournalCheckpoint = -1;
 
     /**
      * Constructor that takes all components including the composite registry.
@@ -155,6 +156,7 @@ public class LoadStateCommand implements Command {
                 System.out.println("[STATE DEBUG] Restoring ToolbarPanel from memento...");
                 toolbarPanel.restoreFromMemento(loadedToolbarState); 
 
+                loadedJournalCheckpoint = loadedState.getJournalCheckpoint();
                 System.out.println("[STATE DEBUG] State successfully restored to all components.");
             } else {
                 System.err.println("[STATE DEBUG] ERROR: Loaded state was null.");
@@ -174,6 +176,16 @@ public class LoadStateCommand implements Command {
         }
     }
 
+    /**
+     * Gets the journal checkpoint of the loaded state.
+     *
+     * @return The checkpoint, 0 if the state has none, or -1 if nothing was
+     *         loaded
+     */
+    public long getLoadedJournalCheckpoint() {
+        return loadedJournalCheckpoint;
+    }
+
     @Override
     public void undo() {
         System.out.println("[STATE DEBUG] LoadStateCommand.undo() - START");
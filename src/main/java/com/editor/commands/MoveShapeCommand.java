@@ -2,9 +2,13 @@ package com.editor.commands;
 
 import com.editor.shapes.Shape;
 import java.awt.Point;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
 
 
-public class MoveShapeCommand implements Command {
+public class MoveShapeCommand implements ShapeCommand, Serializable {
+    private static final long serialVersionUID = 1L;
     private final Shape shape;
     private final Point startPosition;
     private final Point endPosition;
@@ -50,6 +54,27 @@ public class MoveShapeCommand implements Command {
         shape.setPosition(startPosition.x, startPosition.y);
     }
 
+    /**
+     * Merges a move of the same shape that starts where this one ends.
+     */
+    @Override
+    public boolean mergeWith(Command next) {
+        if (!(next instanceof MoveShapeCommand)) {
+            return false;
+        }
+        MoveShapeCommand other = (MoveShapeCommand) next;
+        if (other.shape != shape || !other.startPosition.equals(endPosition)) {
+            return false;
+        }
+        endPosition.setLocation(other.endPosition);
+        return true;
+    }
+
+    @Override
+    public Collection<Shape> getAffectedShapes() {
+        return Collections.singletonList(shape);
+    }
+
     @Override
     public String toString() {
         return "MoveShapeCommand{" +
@@ -2,67 +2,168 @@ package com.editor.commands;
 
 import com.editor.shapes.Shape;
 import java.awt.Point;
-import java.util.HashMap;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Command to move multiple shapes at once.
- * Stores the original and final positions of each shape to support undo/redo.
+ * Stores the shapes and how far they moved: a single delta when they all
+ * moved by the same amount, otherwise one packed (dx, dy) pair per shape.
+ * Execute and undo move the shapes by the delta rather than setting their
+ * position, so the command takes 4 bytes per shape, or 12 when the deltas
+ * differ.
  */
-public class MoveShapesCommand implements Command {
-    private final List<Shape> shapes;
-    private final Map<Shape, Point> startPositions;
-    private final Map<Shape, Point> endPositions;
+public class MoveShapesCommand implements ShapeCommand, Serializable {
+    private static final long serialVersionUID = 1L;
+    private final Shape[] shapes;
+    private int dx, dy;
+    private int[] deltas;
+
+    /**
+     * Creates a command moving every shape by the same amount.
+     *
+     * @param shapes The shapes to move
+     * @param dx     The horizontal distance
+     * @param dy     The vertical distance
+     */
+    public MoveShapesCommand(List<Shape> shapes, int dx, int dy) {
+        this.shapes = shapes.toArray(new Shape[0]);
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    /**
+     * Creates a command moving each shape by its own amount.
+     *
+     * @param shapes The shapes to move
+     * @param deltas The distances, as (dx, dy) pairs in the order of the
+     *               shapes
+     */
+    public MoveShapesCommand(List<Shape> shapes, int[] deltas) {
+        if (deltas.length != 2 * shapes.size()) {
+            throw new IllegalArgumentException("Expected " + 2 * shapes.size() + " deltas, got " + deltas.length);
+        }
+        this.shapes = shapes.toArray(new Shape[0]);
+        setDeltas(deltas.clone());
+    }
 
     /**
      * Creates a command to move multiple shapes.
-     * 
+     *
      * @param shapes The list of shapes to move
      * @param startPositions Map of shapes to their starting positions
      * @param endPositions Map of shapes to their ending positions
      */
     public MoveShapesCommand(List<Shape> shapes, Map<Shape, Point> startPositions, Map<Shape, Point> endPositions) {
-        this.shapes = shapes;
-        
-        
-        this.startPositions = new HashMap<>();
-        for (Map.Entry<Shape, Point> entry : startPositions.entrySet()) {
-            this.startPositions.put(entry.getKey(), new Point(entry.getValue()));
+        this.shapes = shapes.toArray(new Shape[0]);
+        int[] moves = new int[2 * this.shapes.length];
+        for (int i = 0; i < this.shapes.length; i++) {
+            Point start = startPositions.get(this.shapes[i]);
+            Point end = endPositions.get(this.shapes[i]);
+            if (start != null && end != null) {
+                moves[2 * i] = end.x - start.x;
+                moves[2 * i + 1] = end.y - start.y;
+            }
         }
-        
-        this.endPositions = new HashMap<>();
-        for (Map.Entry<Shape, Point> entry : endPositions.entrySet()) {
-            this.endPositions.put(entry.getKey(), new Point(entry.getValue()));
+        setDeltas(moves);
+    }
+
+    /**
+     * Keeps a single delta if every shape moved by the same amount.
+     */
+    private void setDeltas(int[] moves) {
+        boolean uniform = true;
+        for (int i = 2; i < moves.length && uniform; i += 2) {
+            uniform = moves[i] == moves[0] && moves[i + 1] == moves[1];
+        }
+        if (uniform) {
+            dx = moves.length == 0 ? 0 : moves[0];
+            dy = moves.length == 0 ? 0 : moves[1];
+            deltas = null;
+        } else {
+            deltas = moves;
         }
     }
 
     @Override
     public void execute() {
-        
-        for (Shape shape : shapes) {
-            Point endPos = endPositions.get(shape);
-            if (endPos != null) {
-                shape.setPosition(endPos.x, endPos.y);
+        moveBy(1);
+    }
+
+    @Override
+    public void undo() {
+        moveBy(-1);
+    }
+
+    private void moveBy(int sign) {
+        if (deltas == null) {
+            for (Shape shape : shapes) {
+                shape.move(sign * dx, sign * dy);
+            }
+        } else {
+            for (int i = 0; i < shapes.length; i++) {
+                shapes[i].move(sign * deltas[2 * i], sign * deltas[2 * i + 1]);
             }
         }
     }
 
+    /**
+     * Merges a move of the same shapes by adding up the deltas.
+     */
     @Override
-    public void undo() {
-        
-        for (Shape shape : shapes) {
-            Point startPos = startPositions.get(shape);
-            if (startPos != null) {
-                shape.setPosition(startPos.x, startPos.y);
+    public boolean mergeWith(Command next) {
+        if (!(next instanceof MoveShapesCommand)) {
+            return false;
+        }
+        MoveShapesCommand other = (MoveShapesCommand) next;
+        if (other.shapes.length != shapes.length) {
+            return false;
+        }
+        for (int i = 0; i < shapes.length; i++) {
+            if (other.shapes[i] != shapes[i]) {
+                return false;
             }
         }
+        if (deltas == null && other.deltas == null) {
+            dx += other.dx;
+            dy += other.dy;
+            return true;
+        }
+        int[] moves = new int[2 * shapes.length];
+        for (int i = 0; i < shapes.length; i++) {
+            moves[2 * i] = deltaX(i) + other.deltaX(i);
+            moves[2 * i + 1] = deltaY(i) + other.deltaY(i);
+        }
+        setDeltas(moves);
+        return true;
+    }
+
+    private int deltaX(int i) {
+        return deltas == null ? dx : deltas[2 * i];
+    }
+
+    private int deltaY(int i) {
+        return deltas == null ? dy : deltas[2 * i + 1];
+    }
+
+    @Override
+    public long estimateSize() {
+        return 48 + shapes.length * (deltas == null ? 4L : 12L);
+    }
+
+    @Override
+    public Collection<Shape> getAffectedShapes() {
+        return Collections.unmodifiableList(Arrays.asList(shapes));
     }
 
     @Override
     public String toString() {
         return "MoveShapesCommand{" +
-                "shapes=" + shapes.size() + " shapes" +
+                "shapes=" + shapes.length + " shapes" +
                 '}';
     }
 }
@@ -1,8 +1,14 @@
 package com.editor.commands;
 
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 import com.editor.gui.WhiteBoard;
 import com.editor.gui.panel.ToolbarPanel;
@@ -67,33 +73,7 @@ public class SaveStateCommand implements Command {
         System.out.println("[STATE DEBUG] SaveStateCommand.execute() - START");
         System.out.println("[STATE DEBUG] Saving application state to: " + filePath);
         try {
-            
-            System.out.println("[STATE DEBUG] Creating WhiteBoard memento...");
-            ShapeMemento whiteboardMemento = whiteBoard.createMemento();
-
-            System.out.println("[STATE DEBUG] Creating ToolbarPanel memento...");
-            ToolbarMemento toolbarMemento = toolbarPanel.createMemento();
-
-            System.out.println("[STATE DEBUG] Creating CompositeRegistry memento...");
-            
-            CompositeRegistryMemento compositeRegistryMemento = new CompositeRegistryMemento(
-                    compositeRegistry.getPrototypesMap());
-
-            System.out.println("[STATE DEBUG] Creating PrototypeRegistry memento...");
-            PrototypeRegistryMemento prototypeRegistryMemento = new PrototypeRegistryMemento(
-                    prototypeRegistry.getPrototypesMap()); 
-
-            System.out.println("[STATE DEBUG] Creating AppStateMemento with all component mementos...");
-            AppStateMemento appState = new AppStateMemento(whiteboardMemento, toolbarMemento, compositeRegistryMemento,
-                    prototypeRegistryMemento); 
-
-            
-            try (FileOutputStream fileOut = new FileOutputStream(filePath);
-                    ObjectOutputStream out = new ObjectOutputStream(fileOut)) {
-                System.out.println("[STATE DEBUG] Writing AppStateMemento to file: " + filePath);
-                out.writeObject(appState);
-                System.out.println("[STATE DEBUG] Application state successfully saved to file.");
-            }
+            writeState(createState(0));
 
             System.out.println("[STATE DEBUG] SaveStateCommand.execute() - END");
 
@@ -107,6 +87,67 @@ public class SaveStateCommand implements Command {
         }
     }
 
+    /**
+     * Captures the state of every component, without writing it. The
+     * whiteboard is captured as a shared snapshot, so this takes little time
+     * and can be done on the event thread, between two changes.
+     *
+     * @param journalCheckpoint The journal checkpoint the state is taken at,
+     *                          0 if none
+     * @return The captured state
+     */
+    public AppStateMemento createState(long journalCheckpoint) {
+        System.out.println("[STATE DEBUG] Creating WhiteBoard memento...");
+        ShapeMemento whiteboardMemento = whiteBoard.createMemento();
+
+        System.out.println("[STATE DEBUG] Creating ToolbarPanel memento...");
+        ToolbarMemento toolbarMemento = toolbarPanel.createMemento();
+
+        System.out.println("[STATE DEBUG] Creating CompositeRegistry memento...");
+        
+        CompositeRegistryMemento compositeRegistryMemento = new CompositeRegistryMemento(
+                compositeRegistry.getPrototypesMap());
+
+        System.out.println("[STATE DEBUG] Creating PrototypeRegistry memento...");
+        PrototypeRegistryMemento prototypeRegistryMemento = new PrototypeRegistryMemento(
+                prototypeRegistry.getPrototypesMap()); 
+
+        System.out.println("[STATE DEBUG] Creating AppStateMemento with all component mementos...");
+        return new AppStateMemento(whiteboardMemento, toolbarMemento, compositeRegistryMemento,
+                prototypeRegistryMemento, journalCheckpoint);
+    }
+
+    /**
+     * Writes a captured state to the file. The state is written to a
+     * temporary file next to it, synced, then moved over the file, so the
+     * file holds either the previous state or the new one even if the
+     * application stops while saving.
+     *
+     * @param appState The state to write
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState(AppStateMemento appState) throws IOException {
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+                    ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fileOut))) {
+                System.out.println("[STATE DEBUG] Writing AppStateMemento to file: " + filePath);
+                out.writeObject(appState);
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            System.out.println("[STATE DEBUG] Application state successfully saved to file.");
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
     @Override
     public void undo() {
         
@@ -0,0 +1,18 @@
+package com.editor.commands;
+
+import java.util.Collection;
+
+import com.editor.shapes.Shape;
+
+/**
+ * A command that changes the geometry or appearance of shapes that are already
+ * on the whiteboard, as opposed to adding or removing them.
+ */
+public interface ShapeCommand extends Command {
+    /**
+     * Gets the shapes whose position or appearance this command changes.
+     *
+     * @return The affected shapes
+     */
+    Collection<Shape> getAffectedShapes();
+}
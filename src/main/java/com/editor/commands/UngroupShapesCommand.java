@@ -1,5 +1,6 @@
 package com.editor.commands;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -9,7 +10,8 @@ import com.editor.shapes.ShapeGroup;
 /**
  * Command to ungroup a ShapeGroup back into its individual shapes.
  */
-public class UngroupShapesCommand implements Command {
+public class UngroupShapesCommand implements Command, Serializable {
+    private static final long serialVersionUID = 1L;
     private final List<Shape> canvasShapes;
     private final ShapeGroup group;
     private final List<Shape> ungroupedShapes;
@@ -32,7 +34,7 @@ public class UngroupShapesCommand implements Command {
     public void execute() {
         
         canvasShapes.remove(group);
-        
+        setParent(null);
         
         canvasShapes.addAll(ungroupedShapes);
     }
@@ -41,7 +43,7 @@ public class UngroupShapesCommand implements Command {
     public void undo() {
         
         canvasShapes.removeAll(ungroupedShapes);
-        
+        setParent(group);
         
         if (groupIndex >= 0 && groupIndex <= canvasShapes.size()) {
             canvasShapes.add(groupIndex, group);
@@ -50,6 +52,22 @@ public class UngroupShapesCommand implements Command {
         }
     }
     
+    /**
+     * Detaches the ungrouped shapes from the group while it is off the
+     * canvas, so that they do not keep invalidating it, and attaches them
+     * back when it returns.
+     */
+    private void setParent(ShapeGroup parent) {
+        for (Shape shape : ungroupedShapes) {
+            shape.setParent(parent);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return 64 + ungroupedShapes.size() * 8L;
+    }
+
     /**
      * Gets the list of ungrouped shapes.
      * 
@@ -2,7 +2,6 @@ package com.editor.drawing;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.Polygon;
 
 import com.editor.shapes.Circle;
 import com.editor.shapes.Rectangle;
@@ -24,10 +23,11 @@ public class AWTDrawing implements Drawer {
     @Override
     public void drawRectangle(Rectangle rectangle) {
         Color originalColor = graphics.getColor();
-        java.awt.geom.AffineTransform oldTransform = graphics.getTransform();
+        java.awt.geom.AffineTransform oldTransform = null;
 
         try {
             if (rectangle.getRotation() != 0) {
+                oldTransform = graphics.getTransform();
                 int centerX = rectangle.getX() + rectangle.getWidth() / 2;
                 int centerY = rectangle.getY() + rectangle.getHeight() / 2;
                 graphics.rotate(Math.toRadians(rectangle.getRotation()), centerX, centerY);
@@ -55,11 +55,18 @@ public class AWTDrawing implements Drawer {
                 graphics.drawRoundRect(x, y, width, height, borderRadius, borderRadius);
             }
         } finally {
-            graphics.setTransform(oldTransform);
+            if (oldTransform != null) {
+                graphics.setTransform(oldTransform);
+            }
             graphics.setColor(originalColor);
         }
     }
 
+    @Override
+    public void translate(int dx, int dy) {
+        graphics.translate(dx, dy);
+    }
+
     @Override
     public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
         graphics.drawPolygon(xPoints, yPoints, nPoints);
@@ -68,37 +75,29 @@ public class AWTDrawing implements Drawer {
     @Override
     public void drawRegularPolygon(RegularPolygon regularPolygon) {
         Color originalColor = graphics.getColor();
-        java.awt.geom.AffineTransform oldTransform = graphics.getTransform();
+        java.awt.geom.AffineTransform oldTransform = null;
 
         try {
-            int sides = regularPolygon.getNumberOfSides();
-            int[] xPoints = new int[sides];
-            int[] yPoints = new int[sides];
-            double angleStep = 2 * Math.PI / sides;
-            double rotationRadians = Math.toRadians(regularPolygon.getRotation());
-
             if (regularPolygon.getRotation() != 0) {
-                int centerX = regularPolygon.getX();
-                int centerY = regularPolygon.getY();
-                graphics.rotate(rotationRadians, centerX, centerY);
-            }
-
-            for (int i = 0; i < sides; i++) {
-                double angle = i * angleStep;
-                xPoints[i] = (int) (regularPolygon.getX() + regularPolygon.getRadius() * Math.cos(angle));
-                yPoints[i] = (int) (regularPolygon.getY() + regularPolygon.getRadius() * Math.sin(angle));
+                oldTransform = graphics.getTransform();
+                graphics.rotate(Math.toRadians(regularPolygon.getRotation()),
+                        regularPolygon.getX(), regularPolygon.getY());
             }
 
-            Polygon awtPolygon = new Polygon(xPoints, yPoints, sides);
+            int sides = regularPolygon.getNumberOfSides();
+            int[] xPoints = regularPolygon.getXPoints();
+            int[] yPoints = regularPolygon.getYPoints();
 
             
             graphics.setColor(regularPolygon.getFillColor());
-            graphics.fillPolygon(awtPolygon);
+            graphics.fillPolygon(xPoints, yPoints, sides);
 
             graphics.setColor(regularPolygon.getBorderColor());
-            graphics.drawPolygon(awtPolygon);
+            graphics.drawPolygon(xPoints, yPoints, sides);
         } finally {
-            graphics.setTransform(oldTransform);
+            if (oldTransform != null) {
+                graphics.setTransform(oldTransform);
+            }
             graphics.setColor(originalColor);
         }
     }
@@ -106,7 +105,6 @@ public class AWTDrawing implements Drawer {
     @Override
     public void drawCircle(Circle circle) {
         Color originalColor = graphics.getColor();
-        java.awt.geom.AffineTransform oldTransform = graphics.getTransform();
 
         try {
             int x = circle.getX() - circle.getRadius();
@@ -134,7 +132,6 @@ public class AWTDrawing implements Drawer {
                         selectionMarkerSize, selectionMarkerSize);
             }
         } finally {
-            graphics.setTransform(oldTransform);
             graphics.setColor(originalColor);
         }
     }
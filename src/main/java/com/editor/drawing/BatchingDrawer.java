@@ -0,0 +1,481 @@
+package com.editor.drawing;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.editor.shapes.Circle;
+import com.editor.shapes.Rectangle;
+import com.editor.shapes.RegularPolygon;
+
+/**
+ * Drawer that records draw operations instead of issuing them immediately,
+ * and replays them on {@link #flush()} grouped by color.
+ * Each shape is split into primitive fill and outline operations. An
+ * operation joins the latest batch of its color only if no later batch
+ * touches the area it covers, so the final image is the same as drawing in
+ * z-order, while the graphics color is set once per batch instead of twice
+ * per shape. Rotated operations set and restore their own transform.
+ * Overlap is tracked on a coarse grid of cells hashed into a fixed table;
+ * hash collisions only make the test more conservative.
+ * Operation records are pooled and reused across flushes.
+ */
+public class BatchingDrawer implements Drawer {
+    private static final long serialVersionUID = 1L;
+
+    private static final int CELL_SHIFT = 5;
+    private static final int CELL_TABLE_SIZE = 4096;
+    private static final int MAX_CELLS_PER_OP = 256;
+
+    private static final int FILL_RECT = 0;
+    private static final int DRAW_RECT = 1;
+    private static final int FILL_ROUND_RECT = 2;
+    private static final int DRAW_ROUND_RECT = 3;
+    private static final int FILL_OVAL = 4;
+    private static final int DRAW_OVAL = 5;
+    private static final int FILL_POLYGON = 6;
+    private static final int DRAW_POLYGON = 7;
+
+    private transient Graphics2D graphics;
+    private final transient List<Op> ops = new ArrayList<>();
+    private final transient List<Batch> batches = new ArrayList<>();
+    private final int[] lastBatchInCell = new int[CELL_TABLE_SIZE];
+    private Color[] colors = new Color[16];
+    private int[] lastBatchOfColor = new int[16];
+    private int colorCount;
+    private int barrier;
+    private int opCount;
+    private int batchCount;
+    private int colorChanges;
+
+    /**
+     * A recorded primitive, with its conservative bounds in the coordinates
+     * of the graphics context.
+     */
+    private static final class Op {
+        int kind;
+        int x, y, width, height, arc;
+        int[] xPoints = new int[8];
+        int[] yPoints = new int[8];
+        int nPoints;
+        double rotation;
+        int centerX, centerY;
+        int minX, minY, maxX, maxY;
+        Op next;
+    }
+
+    /**
+     * Operations of one color, replayed together in recording order.
+     */
+    private static final class Batch {
+        Color color;
+        Op first, last;
+    }
+
+    /**
+     * Creates a batching drawer over the given graphics context.
+     *
+     * @param graphics The graphics context operations are replayed on
+     */
+    public BatchingDrawer(Graphics2D graphics) {
+        this.graphics = graphics;
+    }
+
+    /**
+     * Creates a batching drawer with no graphics context yet; one must be set
+     * with {@link #setGraphics(Graphics2D)} before drawing.
+     */
+    public BatchingDrawer() {
+        this(null);
+    }
+
+    /**
+     * Retargets the drawer, so that one instance and its pooled records can
+     * be reused for several images. Anything recorded and not yet flushed is
+     * discarded.
+     *
+     * @param graphics The graphics context operations are replayed on
+     */
+    public void setGraphics(Graphics2D graphics) {
+        this.graphics = graphics;
+        opCount = 0;
+        batchCount = 0;
+        colorCount = 0;
+        barrier = 0;
+        Arrays.fill(lastBatchInCell, 0);
+    }
+
+    /**
+     * Gets the graphics context operations are replayed on.
+     *
+     * @return The graphics context
+     */
+    public Graphics2D getGraphics() {
+        return graphics;
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        Op op = rectOp(DRAW_RECT, x, y, width, height, 0, 0, 0, 0);
+        record(graphics.getColor(), op);
+    }
+
+    /**
+     * Flushes what was recorded so far, since recorded operations are in the
+     * coordinates of the untranslated graphics, then translates the graphics.
+     */
+    @Override
+    public void translate(int dx, int dy) {
+        flush();
+        graphics.translate(dx, dy);
+    }
+
+    @Override
+    public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        Op op = polygonOp(DRAW_POLYGON, xPoints, yPoints, nPoints);
+        record(graphics.getColor(), op);
+    }
+
+    @Override
+    public void drawRectangle(Rectangle rectangle) {
+        int x = rectangle.getX();
+        int y = rectangle.getY();
+        int width = rectangle.getWidth();
+        int height = rectangle.getHeight();
+        int arc = rectangle.getBorderRadius();
+        double rotation = rectangle.getRotation();
+        int centerX = x + width / 2;
+        int centerY = y + height / 2;
+
+        boolean rounded = arc != 0;
+        record(rectangle.getFillColor(), rectOp(rounded ? FILL_ROUND_RECT : FILL_RECT,
+                x, y, width, height, arc, rotation, centerX, centerY));
+        record(rectangle.getBorderColor(), rectOp(rounded ? DRAW_ROUND_RECT : DRAW_RECT,
+                x, y, width, height, arc, rotation, centerX, centerY));
+    }
+
+    @Override
+    public void drawRegularPolygon(RegularPolygon regularPolygon) {
+        int sides = regularPolygon.getNumberOfSides();
+        double rotation = regularPolygon.getRotation();
+        Op fill = polygonOp(FILL_POLYGON, regularPolygon.getXPoints(), regularPolygon.getYPoints(), sides);
+        fill.rotation = rotation;
+        fill.centerX = regularPolygon.getX();
+        fill.centerY = regularPolygon.getY();
+        polygonBounds(fill);
+        record(regularPolygon.getFillColor(), fill);
+
+        Op border = polygonOp(DRAW_POLYGON, regularPolygon.getXPoints(), regularPolygon.getYPoints(), sides);
+        border.rotation = rotation;
+        border.centerX = fill.centerX;
+        border.centerY = fill.centerY;
+        polygonBounds(border);
+        record(regularPolygon.getBorderColor(), border);
+    }
+
+    @Override
+    public void drawCircle(Circle circle) {
+        int x = circle.getX() - circle.getRadius();
+        int y = circle.getY() - circle.getRadius();
+        int diameter = circle.getRadius() * 2;
+
+        record(circle.getFillColor(), rectOp(FILL_OVAL, x, y, diameter, diameter, 0, 0, 0, 0));
+        record(circle.getBorderColor(), rectOp(DRAW_OVAL, x, y, diameter, diameter, 0, 0, 0, 0));
+
+        if (circle.isSelected()) {
+            int selectionMarkerSize = 6;
+            int half = selectionMarkerSize / 2;
+            record(Color.RED, rectOp(FILL_RECT, circle.getX() - half, y - half,
+                    selectionMarkerSize, selectionMarkerSize, 0, 0, 0, 0));
+            record(Color.RED, rectOp(FILL_RECT, circle.getX() - half, y + diameter - half,
+                    selectionMarkerSize, selectionMarkerSize, 0, 0, 0, 0));
+            record(Color.RED, rectOp(FILL_RECT, x - half, circle.getY() - half,
+                    selectionMarkerSize, selectionMarkerSize, 0, 0, 0, 0));
+            record(Color.RED, rectOp(FILL_RECT, x + diameter - half, circle.getY() - half,
+                    selectionMarkerSize, selectionMarkerSize, 0, 0, 0, 0));
+        }
+    }
+
+    /**
+     * Replays every recorded operation on the graphics context, one batch
+     * after the other, and clears the recording. The color of the graphics
+     * context is restored afterwards.
+     */
+    public void flush() {
+        if (opCount == 0) {
+            return;
+        }
+        Color originalColor = graphics.getColor();
+        AffineTransform baseTransform = null;
+        try {
+            Color current = originalColor;
+            for (int b = 0; b < batchCount; b++) {
+                Batch batch = batches.get(b);
+                if (!batch.color.equals(current)) {
+                    graphics.setColor(batch.color);
+                    current = batch.color;
+                    colorChanges++;
+                }
+                for (Op op = batch.first; op != null; op = op.next) {
+                    if (op.rotation != 0) {
+                        if (baseTransform == null) {
+                            baseTransform = graphics.getTransform();
+                        }
+                        graphics.rotate(Math.toRadians(op.rotation), op.centerX, op.centerY);
+                        replay(op);
+                        graphics.setTransform(baseTransform);
+                    } else {
+                        replay(op);
+                    }
+                }
+            }
+        } finally {
+            graphics.setColor(originalColor);
+            opCount = 0;
+            batchCount = 0;
+            colorCount = 0;
+            barrier = 0;
+            Arrays.fill(lastBatchInCell, 0);
+        }
+    }
+
+    /**
+     * Gets the number of batches currently recorded.
+     *
+     * @return The batch count
+     */
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Gets the number of color changes issued by the flushes so far.
+     *
+     * @return The color change count
+     */
+    public int getColorChanges() {
+        return colorChanges;
+    }
+
+    private void replay(Op op) {
+        switch (op.kind) {
+            case FILL_RECT:
+                graphics.fillRect(op.x, op.y, op.width, op.height);
+                break;
+            case DRAW_RECT:
+                graphics.drawRect(op.x, op.y, op.width, op.height);
+                break;
+            case FILL_ROUND_RECT:
+                graphics.fillRoundRect(op.x, op.y, op.width, op.height, op.arc, op.arc);
+                break;
+            case DRAW_ROUND_RECT:
+                graphics.drawRoundRect(op.x, op.y, op.width, op.height, op.arc, op.arc);
+                break;
+            case FILL_OVAL:
+                graphics.fillOval(op.x, op.y, op.width, op.height);
+                break;
+            case DRAW_OVAL:
+                graphics.drawOval(op.x, op.y, op.width, op.height);
+                break;
+            case FILL_POLYGON:
+                graphics.fillPolygon(op.xPoints, op.yPoints, op.nPoints);
+                break;
+            case DRAW_POLYGON:
+                graphics.drawPolygon(op.xPoints, op.yPoints, op.nPoints);
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + op.kind);
+        }
+    }
+
+    /**
+     * Adds an operation to the latest batch of its color when no later batch
+     * touches its cells, or to a new batch at the end.
+     */
+    private void record(Color color, Op op) {
+        op.next = null;
+        int col1 = op.minX >> CELL_SHIFT, row1 = op.minY >> CELL_SHIFT;
+        int col2 = (op.maxX - 1) >> CELL_SHIFT, row2 = (op.maxY - 1) >> CELL_SHIFT;
+        boolean huge = (long) (col2 - col1 + 1) * (row2 - row1 + 1) > MAX_CELLS_PER_OP;
+
+        // Batch numbers are stored 1-based so that 0 means "untouched".
+        int latestTouching = barrier;
+        if (huge) {
+            latestTouching = batchCount;
+        } else {
+            for (int row = row1; row <= row2; row++) {
+                for (int col = col1; col <= col2; col++) {
+                    latestTouching = Math.max(latestTouching, lastBatchInCell[cellSlot(col, row)]);
+                }
+            }
+        }
+
+        int colorSlot = colorSlot(color);
+        int target = lastBatchOfColor[colorSlot];
+        if (target == 0 || target < latestTouching) {
+            target = newBatch(color);
+            lastBatchOfColor[colorSlot] = target;
+        }
+        append(batches.get(target - 1), op);
+
+        if (huge) {
+            barrier = target;
+        } else {
+            for (int row = row1; row <= row2; row++) {
+                for (int col = col1; col <= col2; col++) {
+                    int slot = cellSlot(col, row);
+                    lastBatchInCell[slot] = Math.max(lastBatchInCell[slot], target);
+                }
+            }
+        }
+    }
+
+    private static int cellSlot(int col, int row) {
+        return ((col * 73856093) ^ (row * 19349663)) & (CELL_TABLE_SIZE - 1);
+    }
+
+    /**
+     * Finds the slot of a color in the table of latest batches, adding it
+     * when it is new.
+     */
+    private int colorSlot(Color color) {
+        for (int i = 0; i < colorCount; i++) {
+            if (colors[i].equals(color)) {
+                return i;
+            }
+        }
+        if (colorCount == colors.length) {
+            colors = Arrays.copyOf(colors, colorCount * 2);
+            lastBatchOfColor = Arrays.copyOf(lastBatchOfColor, colorCount * 2);
+        }
+        colors[colorCount] = color;
+        lastBatchOfColor[colorCount] = 0;
+        return colorCount++;
+    }
+
+    /**
+     * Starts a new batch at the end of the recording.
+     *
+     * @return The 1-based number of the batch
+     */
+    private int newBatch(Color color) {
+        Batch batch;
+        if (batchCount < batches.size()) {
+            batch = batches.get(batchCount);
+        } else {
+            batch = new Batch();
+            batches.add(batch);
+        }
+        batchCount++;
+        batch.color = color;
+        batch.first = null;
+        batch.last = null;
+        return batchCount;
+    }
+
+    private static void append(Batch batch, Op op) {
+        if (batch.last == null) {
+            batch.first = op;
+        } else {
+            batch.last.next = op;
+        }
+        batch.last = op;
+    }
+
+    private Op nextOp() {
+        Op op;
+        if (opCount < ops.size()) {
+            op = ops.get(opCount);
+        } else {
+            op = new Op();
+            ops.add(op);
+        }
+        opCount++;
+        op.rotation = 0;
+        return op;
+    }
+
+    private Op rectOp(int kind, int x, int y, int width, int height, int arc,
+            double rotation, int centerX, int centerY) {
+        Op op = nextOp();
+        op.kind = kind;
+        op.x = x;
+        op.y = y;
+        op.width = width;
+        op.height = height;
+        op.arc = arc;
+        op.rotation = rotation;
+        op.centerX = centerX;
+        op.centerY = centerY;
+        if (rotation == 0) {
+            op.minX = x - 1;
+            op.minY = y - 1;
+            op.maxX = x + width + 2;
+            op.maxY = y + height + 2;
+        } else {
+            int reach = farthestCorner(x, y, width, height, centerX, centerY) + 2;
+            op.minX = centerX - reach;
+            op.minY = centerY - reach;
+            op.maxX = centerX + reach;
+            op.maxY = centerY + reach;
+        }
+        return op;
+    }
+
+    private Op polygonOp(int kind, int[] xPoints, int[] yPoints, int nPoints) {
+        Op op = nextOp();
+        ensureCapacity(op, nPoints);
+        System.arraycopy(xPoints, 0, op.xPoints, 0, nPoints);
+        System.arraycopy(yPoints, 0, op.yPoints, 0, nPoints);
+        op.kind = kind;
+        op.nPoints = nPoints;
+        polygonBounds(op);
+        return op;
+    }
+
+    private static void ensureCapacity(Op op, int nPoints) {
+        if (op.xPoints.length < nPoints) {
+            op.xPoints = new int[nPoints];
+            op.yPoints = new int[nPoints];
+        }
+    }
+
+    private static void polygonBounds(Op op) {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < op.nPoints; i++) {
+            minX = Math.min(minX, op.xPoints[i]);
+            minY = Math.min(minY, op.yPoints[i]);
+            maxX = Math.max(maxX, op.xPoints[i]);
+            maxY = Math.max(maxY, op.yPoints[i]);
+        }
+        if (op.nPoints == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        if (op.rotation == 0) {
+            op.minX = minX - 1;
+            op.minY = minY - 1;
+            op.maxX = maxX + 2;
+            op.maxY = maxY + 2;
+        } else {
+            int reach = farthestCorner(minX, minY, maxX - minX, maxY - minY, op.centerX, op.centerY) + 2;
+            op.minX = op.centerX - reach;
+            op.minY = op.centerY - reach;
+            op.maxX = op.centerX + reach;
+            op.maxY = op.centerY + reach;
+        }
+    }
+
+    /**
+     * Distance from a rotation center to the farthest corner of a box, which
+     * bounds the box under any rotation around that center.
+     */
+    private static int farthestCorner(int x, int y, int width, int height, int centerX, int centerY) {
+        double dx = Math.max(Math.abs(x - centerX), Math.abs(x + width - centerX));
+        double dy = Math.max(Math.abs(y - centerY), Math.abs(y + height - centerY));
+        return (int) Math.ceil(Math.sqrt(dx * dx + dy * dy));
+    }
+}
@@ -5,6 +5,7 @@ import java.io.Serializable;
 import com.editor.shapes.Circle;
 import com.editor.shapes.Rectangle;
 import com.editor.shapes.RegularPolygon;
+import com.editor.shapes.ShapeGroup;
 
 public interface Drawer extends Serializable {
     /**
@@ -37,4 +38,23 @@ public interface Drawer extends Serializable {
      * @param circle The circle to draw
      */
     void drawCircle(Circle circle);
+
+    /**
+     * Shifts everything drawn afterwards by the given distance. Calls are
+     * cumulative and are undone by translating back.
+     *
+     * @param dx The horizontal distance
+     * @param dy The vertical distance
+     */
+    void translate(int dx, int dy);
+
+    /**
+     * Draws a group of shapes. By default each child is drawn in turn;
+     * drawers may instead reuse a previous rendering of the group.
+     *
+     * @param group The group to draw
+     */
+    default void drawGroup(ShapeGroup group) {
+        group.drawChildren(this);
+    }
 }
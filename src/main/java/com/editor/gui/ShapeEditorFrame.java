@@ -186,7 +186,7 @@ public class ShapeEditorFrame extends Frame {
         
         StateChangeListener stateChangeListener = (source, description) -> {
             System.out.println("[AutoSave] State changed: " + description);
-            autoSaveManager.triggerAutoSave();
+            autoSaveManager.stateChanged(source);
         };
 
         
@@ -199,17 +199,22 @@ public class ShapeEditorFrame extends Frame {
         toolbarPanel.setCompositePrototypeRegistry(compositeRegistry); 
 
         
+        long journalCheckpoint = 0;
         if (autoSaveManager.autoSaveExists()) {
             System.out.println("[LOG] ShapeEditorFrame - Found previous state, auto-loading...");
             
             AutoLoadCommand autoLoadCommand = new AutoLoadCommand(
                     whiteBoard, toolbarPanel, compositeRegistry, prototypeRegistry);
             autoLoadCommand.execute();
+            journalCheckpoint = autoLoadCommand.getJournalCheckpoint();
         } else {
             System.out.println("[AutoSave] No previous state found, starting with empty state.");
         }
 
         
+        autoSaveManager.startJournal(journalCheckpoint);
+
+        
 
         
         dragMediator.registerTrashPanel(trashPanel);
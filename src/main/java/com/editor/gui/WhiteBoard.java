@@ -10,6 +10,7 @@ import java.awt.Dimension;
 import java.awt.Frame;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Image;
@@ -19,6 +20,7 @@ import java.awt.Point;
 import java.awt.PopupMenu;
 import java.awt.RenderingHints;
 import java.awt.Stroke;
+import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
@@ -28,6 +30,12 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferStrategy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -43,34 +51,75 @@ import javax.swing.JPanel;
 import javax.swing.JSlider;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
+import com.editor.commands.Checkpointer;
+import com.editor.commands.Command;
 import com.editor.commands.CommandHistory;
+import com.editor.commands.CommandHistoryListener;
 import com.editor.commands.CreateShapeCommand;
+import com.editor.commands.DeleteShapesCommand;
 import com.editor.commands.EditShapeCommand;
 import com.editor.commands.GroupShapesCommand;
+import com.editor.commands.HistoryNode;
 import com.editor.commands.MoveShapeCommand;
 import com.editor.commands.MoveShapesCommand;
+import com.editor.commands.ShapeCommand;
 import com.editor.commands.UngroupShapesCommand;
 import com.editor.drawing.AWTDrawing;
 import com.editor.drawing.Drawer;
 import com.editor.gui.button.Draggable;
 import com.editor.gui.panel.ToolbarPanel; 
 import com.editor.mediator.DragMediator;
+import com.editor.memento.SceneCheckpoint;
 import com.editor.memento.ShapeMemento;
+import com.editor.rendering.DirtyRegion;
+import com.editor.rendering.GroupRasterCache;
+import com.editor.rendering.PaintBounds;
+import com.editor.rendering.RenderStats;
+import com.editor.rendering.StaticLayerCache;
+import com.editor.rendering.TileCache;
+import com.editor.rendering.TiledRenderer;
+import com.editor.rendering.ViewTransform;
+import com.editor.selection.SelectionModel;
 import com.editor.shapes.Circle;
 import com.editor.shapes.Rectangle;
 import com.editor.shapes.RegularPolygon;
 import com.editor.shapes.Shape;
 import com.editor.shapes.ShapeGroup;
 import com.editor.shapes.ShapePrototypeRegistry; 
+import com.editor.spatial.GridSpatialIndex;
+import com.editor.spatial.IndexedShapeList;
+import com.editor.spatial.ShapeListListener;
+import com.editor.spatial.SpatialIndex;
 import com.editor.state.StateChangeListener;
 
 public class WhiteBoard extends Canvas implements Draggable {
+    private static final boolean DEBUG_PAINT = false;
+    private static final int FRAME_INTERVAL_MS = 16;
+    private static final int HISTORY_MAX_ENTRIES = 200;
+    private static final long HISTORY_MAX_BYTES = 16L * 1024 * 1024;
+    private static final int HISTORY_CHECKPOINT_INTERVAL = 20;
+    private static final long HISTORY_RESTORE_COST_PER_SHAPE = 16;
+    private static final float[] DASH = { 5.0f, 5.0f };
+    private static final BasicStroke SELECTION_STROKE = new BasicStroke(2.0f, BasicStroke.CAP_BUTT,
+            BasicStroke.JOIN_MITER, 10.0f, DASH, 0.0f);
+    private static final BasicStroke MARQUEE_STROKE = new BasicStroke(1.0f, BasicStroke.CAP_BUTT,
+            BasicStroke.JOIN_MITER, 10.0f, DASH, 0.0f);
+    private static final BasicStroke TRASH_STROKE = new BasicStroke(2.0f);
+    private static final BasicStroke TRASH_ICON_STROKE = new BasicStroke(3.0f);
+    private static final Color ACTIVE_OUTLINE_COLOR = new Color(255, 165, 0);
+    private static final Color SELECTION_COLOR = new Color(0, 0, 255);
+    private static final Color MARQUEE_FILL_COLOR = new Color(0, 0, 255, 30);
+    private static final Color TRASH_FILL_COLOR = new Color(255, 0, 0, 128);
+    private static final Color TRASH_ICON_COLOR = new Color(255, 0, 0, 200);
+    private static final AlphaComposite TRASH_COMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.7f);
+
     private double relX, relY, relW, relH;
     private Color backgroundColor = Color.WHITE;
-    private List<Shape> shapes = new ArrayList<>();
-    private final List<Shape> selectedShapes = new ArrayList<>();
-    private final CommandHistory commandHistory = new CommandHistory();
+    private final IndexedShapeList shapes = new IndexedShapeList(new GridSpatialIndex());
+    private final SelectionModel selectedShapes = new SelectionModel();
+    private final CommandHistory commandHistory = new CommandHistory(HISTORY_MAX_ENTRIES, HISTORY_MAX_BYTES);
     private ShapePrototypeRegistry prototypeRegistry = null;
     private String currentShapeType = null;
     private Shape activeShape; 
@@ -91,6 +140,30 @@ public class WhiteBoard extends Canvas implements Draggable {
     
     private Image offscreenBuffer;
     private Graphics offscreenGraphics;
+    private AffineTransform offscreenBaseTransform;
+    private Drawer offscreenDrawer;
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+    private java.awt.Rectangle overlayBounds = new java.awt.Rectangle();
+    private java.awt.Rectangle nextOverlayBounds = new java.awt.Rectangle();
+    private boolean hasOverlay = false;
+    private final java.awt.Rectangle canvasArea = new java.awt.Rectangle();
+    private final java.awt.Rectangle worldDamage = new java.awt.Rectangle();
+    private final java.awt.Rectangle worldClip = new java.awt.Rectangle();
+    private final java.awt.Rectangle repaintClip = new java.awt.Rectangle();
+    private final java.awt.Rectangle overlayScratch = new java.awt.Rectangle();
+    private final List<Shape> movingShapes = new ArrayList<>();
+    private final StaticLayerCache staticLayer = new StaticLayerCache();
+    private final RenderStats renderStats = new RenderStats();
+    private final ViewTransform view = new ViewTransform();
+    private final TileCache tileCache = new TileCache();
+    private final GroupRasterCache groupCache = new GroupRasterCache();
+    private boolean groupRasterCaching = false;
+    private TiledRenderer tiledRenderer;
+    private boolean viewChanged = false;
+    private Point panAnchor;
+    private BufferStrategy bufferStrategy;
+    private Timer renderLoop;
+    private boolean framePending = false;
 
     
     private ToolbarPanel toolbarPanel;
@@ -102,6 +175,11 @@ public class WhiteBoard extends Canvas implements Draggable {
 
         setupMouseListeners();
         setupKeyListeners();
+        setupHistoryListener();
+        setupHistorySpill();
+        setupHistoryCheckpoints();
+        shapes.setDirtyRegion(dirtyRegion);
+        tiledRenderer = new TiledRenderer(tileCache, shapes, renderStats, backgroundColor);
 
         
         setFocusable(true);
@@ -134,6 +212,13 @@ public class WhiteBoard extends Canvas implements Draggable {
             }
         });
 
+        addMouseWheelListener(new MouseAdapter() {
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                handleMouseWheel(e);
+            }
+        });
+
         
         addComponentListener(new ComponentAdapter() {
             @Override
@@ -148,9 +233,10 @@ public class WhiteBoard extends Canvas implements Draggable {
      */
     private void handleRightClick(MouseEvent e) {
         
+        Point p = view.toWorld(e.getX(), e.getY());
         boolean clickedOnSelected = false;
         for (Shape shape : selectedShapes) {
-            if (shape.isSelected(e.getX(), e.getY())) {
+            if (shape.isSelected(p.x, p.y)) {
                 clickedOnSelected = true;
                 break;
             }
@@ -211,6 +297,7 @@ public class WhiteBoard extends Canvas implements Draggable {
         if (selectedShapes.isEmpty()) {
             return; 
         }
+        commandHistory.beginInteraction();
 
         
         Shape firstShape = selectedShapes.get(0);
@@ -328,6 +415,8 @@ public class WhiteBoard extends Canvas implements Draggable {
                 if (!selectedShapes.isEmpty() && selectedShapes.get(0) instanceof Rectangle) {
                     Rectangle previewRect = (Rectangle) selectedShapes.get(0);
                     previewRect.setBorderRadius(value);
+                    shapes.refresh(previewRect);
+                    selectedShapes.invalidateBounds();
                     repaint(); 
                 }
             });
@@ -367,7 +456,7 @@ public class WhiteBoard extends Canvas implements Draggable {
 
                 
                 EditShapeCommand command = new EditShapeCommand(
-                        selectedShapes,
+                        selectedShapes.asList(),
                         selectedBorderColor[0],
                         selectedFillColor[0],
                         rotation,
@@ -461,18 +550,11 @@ public class WhiteBoard extends Canvas implements Draggable {
         }
 
         
-        GroupShapesCommand command = new GroupShapesCommand(shapes, new ArrayList<>(selectedShapes));
+        GroupShapesCommand command = new GroupShapesCommand(shapes, new ArrayList<>(selectedShapes.asList()));
         commandHistory.executeCommand(command);
 
-        
-        for (Shape shape : selectedShapes) {
-            shape.setSelected(false);
-        }
-        selectedShapes.clear();
-
         ShapeGroup group = command.getGroup();
-        group.setSelected(true);
-        selectedShapes.add(group);
+        selectedShapes.set(group);
         activeShape = group;
 
         repaint();
@@ -498,16 +580,7 @@ public class WhiteBoard extends Canvas implements Draggable {
             }
         }
 
-        
-        for (Shape shape : selectedShapes) {
-            shape.setSelected(false);
-        }
-        selectedShapes.clear();
-
-        for (Shape shape : newSelection) {
-            shape.setSelected(true);
-            selectedShapes.add(shape);
-        }
+        selectedShapes.set(newSelection);
 
         
         activeShape = null;
@@ -515,6 +588,79 @@ public class WhiteBoard extends Canvas implements Draggable {
         repaint();
     }
 
+    /**
+     * Envoie l'historique au-delà du budget mémoire dans un fichier temporaire
+     */
+    private void setupHistorySpill() {
+        try {
+            Path spillFile = Files.createTempFile("shape-editor-history", ".spill");
+            spillFile.toFile().deleteOnExit();
+            commandHistory.setSpillFile(spillFile);
+        } catch (IOException e) {
+            System.err.println("[WhiteBoard] Cannot create history spill file, old entries will be dropped: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Garde un point de reprise de la scène toutes les quelques commandes,
+     * pour sauter loin dans l'historique sans tout défaire. Restaurer un
+     * point de reprise parcourt toute la scène : on l'estime au coût
+     * d'annuler 16 octets de commandes par forme
+     */
+    private void setupHistoryCheckpoints() {
+        commandHistory.setCheckpointer(new Checkpointer<SceneCheckpoint>() {
+            @Override
+            public SceneCheckpoint capture() {
+                return shapes.checkpoint();
+            }
+
+            @Override
+            public void restore(SceneCheckpoint checkpoint) {
+                shapes.restore(checkpoint);
+                staticLayer.invalidate();
+                selectedShapes.invalidateBounds();
+            }
+
+            @Override
+            public long estimateSize(SceneCheckpoint checkpoint) {
+                return checkpoint.estimateSize();
+            }
+
+            @Override
+            public long estimateRestoreCost(SceneCheckpoint checkpoint) {
+                return HISTORY_RESTORE_COST_PER_SHAPE * checkpoint.size();
+            }
+        }, HISTORY_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Garde l'index spatial à jour quand une commande déplace des formes
+     */
+    private void setupHistoryListener() {
+        commandHistory.addListener(new CommandHistoryListener() {
+            @Override
+            public void commandExecuted(Command command) {
+                refreshAffectedShapes(command);
+            }
+
+            @Override
+            public void commandUndone(Command command) {
+                refreshAffectedShapes(command);
+            }
+        });
+    }
+
+    private void refreshAffectedShapes(Command command) {
+        staticLayer.invalidate();
+        if (command instanceof ShapeCommand) {
+            for (Shape shape : ((ShapeCommand) command).getAffectedShapes()) {
+                shapes.refresh(shape);
+            }
+        }
+        selectedShapes.invalidateBounds();
+    }
+
     private void setupKeyListeners() {
         addKeyListener(new KeyAdapter() {
             @Override
@@ -536,7 +682,13 @@ public class WhiteBoard extends Canvas implements Draggable {
     private final Map<Shape, Point> originalPositions = new HashMap<>();
 
     private void handleMousePress(MouseEvent e) {
+        if (SwingUtilities.isMiddleMouseButton(e)) {
+            panAnchor = e.getPoint();
+            return;
+        }
         if (SwingUtilities.isLeftMouseButton(e)) {
+            Point p = view.toWorld(e.getX(), e.getY());
+            commandHistory.beginInteraction();
             
             isCtrlPressed = (e.getModifiersEx() & InputEvent.CTRL_DOWN_MASK) != 0;
 
@@ -553,24 +705,14 @@ public class WhiteBoard extends Canvas implements Draggable {
             selectionEnd = null;
 
             
-            boolean foundShape = false;
-            Shape clickedShape = null;
-
-            for (Shape shape : shapes) {
-                if (shape.isSelected(e.getX(), e.getY())) {
-                    
-                    foundShape = true;
-                    clickedShape = shape;
-                    break;
-                }
-            }
+            Shape clickedShape = shapes.topmostAt(p.x, p.y);
+            boolean foundShape = clickedShape != null;
 
             if (foundShape) {
                 
                 
                 if (clickedShape != null && selectedShapes.contains(clickedShape) && isCtrlPressed) {
                     selectedShapes.remove(clickedShape);
-                    clickedShape.setSelected(false);
                 } else {
                     
                     if (selectedShapes.contains(clickedShape)) {
@@ -579,16 +721,9 @@ public class WhiteBoard extends Canvas implements Draggable {
                     } else {
                         
                         if (!isCtrlPressed) {
-                            for (Shape s : selectedShapes) {
-                                s.setSelected(false);
-                            }
-                            selectedShapes.clear();
-                        }
-
-                        
-                        if (clickedShape != null) {
+                            selectedShapes.set(clickedShape);
+                        } else {
                             selectedShapes.add(clickedShape);
-                            clickedShape.setSelected(true);
                         }
 
                         
@@ -596,7 +731,7 @@ public class WhiteBoard extends Canvas implements Draggable {
                     }
 
                     
-                    dragStartPoint = e.getPoint();
+                    dragStartPoint = p;
 
                     
                     Rectangle bounds = activeShape.getBounds();
@@ -620,7 +755,7 @@ public class WhiteBoard extends Canvas implements Draggable {
                     if (dragMediator != null && dragStartPoint != null) {
                         
                         
-                        dragMediator.startDrag(this, this, dragStartPoint.x, dragStartPoint.y);
+                        dragMediator.startDrag(this, this, e.getX(), e.getY());
                         System.out.println("[WhiteBoard] Notified mediator of internal drag start.");
                     } else {
                         System.err.println(
@@ -633,16 +768,13 @@ public class WhiteBoard extends Canvas implements Draggable {
             if (!foundShape) {
                 
                 if (!isCtrlPressed) {
-                    for (Shape s : selectedShapes) {
-                        s.setSelected(false);
-                    }
                     selectedShapes.clear();
                     activeShape = null;
                 }
 
                 
-                selectionStart = e.getPoint();
-                selectionEnd = e.getPoint(); 
+                selectionStart = p;
+                selectionEnd = new Point(p); 
                 isSelectionRectActive = true;
             }
 
@@ -656,20 +788,34 @@ public class WhiteBoard extends Canvas implements Draggable {
     }
 
     private void handleMouseDrag(MouseEvent e) {
-        
+        if (panAnchor != null) {
+            panBy(e.getX() - panAnchor.x, e.getY() - panAnchor.y);
+            panAnchor = e.getPoint();
+            return;
+        }
+        Point p = view.toWorld(e.getX(), e.getY());
+
         if (isSelectionRectActive && selectionStart != null) {
             
-            selectionEnd = e.getPoint();
+            selectionEnd = p;
             repaint();
             return;
         }
 
         
         if (isDragging && activeShape != null && dragOffset != null) {
+            if (!staticLayer.isValid()) {
+                staticLayer.build(getWidth(), getHeight(), backgroundColor, shapes, selectedShapes.asList(), view);
+            }
+            java.awt.Rectangle visible = getVisibleWorldArea();
+            int minX = visible.x - 20;
+            int minY = visible.y - 20;
+            int maxX = visible.x + visible.width - 20;
+            int maxY = visible.y + visible.height - 20;
+
             
-            
-            int newX = e.getX() - dragOffset.x;
-            int newY = e.getY() - dragOffset.y;
+            int newX = p.x - dragOffset.x;
+            int newY = p.y - dragOffset.y;
 
             
             int deltaX = newX - originalShapePosition.x;
@@ -678,9 +824,11 @@ public class WhiteBoard extends Canvas implements Draggable {
             
             if (selectedShapes.size() == 1) {
                 
-                newX = Math.max(-20, Math.min(newX, getWidth() - 20));
-                newY = Math.max(-20, Math.min(newY, getHeight() - 20));
+                newX = Math.max(minX, Math.min(newX, maxX));
+                newY = Math.max(minY, Math.min(newY, maxY));
                 activeShape.setPosition(newX, newY);
+                shapes.refresh(activeShape);
+                selectedShapes.invalidateBounds();
             }
             
             else if (selectedShapes.size() > 1) {
@@ -694,12 +842,14 @@ public class WhiteBoard extends Canvas implements Draggable {
                         int shapeNewY = originalPos.y + deltaY;
 
                         
-                        shapeNewX = Math.max(-20, Math.min(shapeNewX, getWidth() - 20));
-                        shapeNewY = Math.max(-20, Math.min(shapeNewY, getHeight() - 20));
+                        shapeNewX = Math.max(minX, Math.min(shapeNewX, maxX));
+                        shapeNewY = Math.max(minY, Math.min(shapeNewY, maxY));
 
                         shape.setPosition(shapeNewX, shapeNewY);
+                        shapes.refresh(shape);
                     }
                 }
+                selectedShapes.invalidateBounds();
             }
 
             
@@ -738,6 +888,12 @@ public class WhiteBoard extends Canvas implements Draggable {
     }
 
     private void handleMouseRelease(MouseEvent e) {
+        if (panAnchor != null) {
+            panAnchor = null;
+            return;
+        }
+        staticLayer.invalidate();
+
         
         if (dragMediator != null && dragMediator.isDragging() && dragMediator.getSourceComponentForDrag() != this) {
             System.out.println("[WhiteBoard] Mouse released, delegating endDrag to mediator for external drag.");
@@ -773,27 +929,11 @@ public class WhiteBoard extends Canvas implements Draggable {
             }
 
             
-            if (!isCtrlPressed) {
-                for (Shape s : selectedShapes) {
-                    s.setSelected(false);
-                }
-                selectedShapes.clear();
-            }
-
-            
-            for (Shape shape : shapes) {
-                Rectangle bounds = shape.getBounds();
-
-                
-                if (bounds.getX() >= x1 && bounds.getX() + bounds.getWidth() <= x2 &&
-                        bounds.getY() >= y1 && bounds.getY() + bounds.getHeight() <= y2) {
-
-                    
-                    if (!selectedShapes.contains(shape)) {
-                        selectedShapes.add(shape);
-                        shape.setSelected(true);
-                    }
-                }
+            List<Shape> enclosed = shapes.shapesWithin(x1, y1, x2, y2);
+            if (isCtrlPressed) {
+                selectedShapes.addAll(enclosed);
+            } else {
+                selectedShapes.set(enclosed);
             }
 
             
@@ -888,20 +1028,19 @@ public class WhiteBoard extends Canvas implements Draggable {
 
             
             
-            Map<Shape, Point> finalPositions = new HashMap<>();
+            int[] deltas = new int[2 * selectedShapes.size()];
             boolean positionsChanged = false;
 
             
+            int i = 0;
             for (Shape shape : selectedShapes) {
-                Rectangle bounds = shape.getBounds();
-                Point finalPosition = new Point(bounds.getX(), bounds.getY());
-                finalPositions.put(shape, finalPosition);
-
-                
                 Point originalPos = originalPositions.get(shape);
-                if (originalPos != null && !originalPos.equals(finalPosition)) {
-                    positionsChanged = true;
+                if (originalPos != null) {
+                    deltas[i] = shape.getBoundsX() - originalPos.x;
+                    deltas[i + 1] = shape.getBoundsY() - originalPos.y;
+                    positionsChanged |= deltas[i] != 0 || deltas[i + 1] != 0;
                 }
+                i += 2;
             }
 
             
@@ -911,17 +1050,12 @@ public class WhiteBoard extends Canvas implements Draggable {
                     MoveShapeCommand moveCommand = new MoveShapeCommand(
                             activeShape,
                             originalPositions.get(activeShape),
-                            finalPositions.get(activeShape));
+                            new Point(activeShape.getBoundsX(), activeShape.getBoundsY()));
 
                     commandHistory.executeCommand(moveCommand);
                 } else {
                     
-                    MoveShapesCommand moveShapesCommand = new MoveShapesCommand(
-                            selectedShapes,
-                            originalPositions,
-                            finalPositions);
-
-                    commandHistory.executeCommand(moveShapesCommand);
+                    commandHistory.addCommand(new MoveShapesCommand(selectedShapes.asList(), deltas));
                 }
             }
 
@@ -946,60 +1080,268 @@ public class WhiteBoard extends Canvas implements Draggable {
     @Override
     public void paint(Graphics g) {
         
+        if (bufferStrategy != null) {
+            
+            framePending = true;
+            return;
+        }
+        long frameStart = System.nanoTime();
         if (offscreenBuffer == null ||
                 offscreenBuffer.getWidth(null) != getWidth() ||
                 offscreenBuffer.getHeight(null) != getHeight()) {
             createOffscreenBuffer();
         }
+        if (offscreenBuffer == null) {
+            return;
+        }
 
-        
-        offscreenGraphics.setColor(backgroundColor);
-        offscreenGraphics.fillRect(0, 0, getWidth(), getHeight());
+        java.awt.Rectangle clip = collectRepaintClip();
+        if (clip != null) {
+            Graphics2D g2d = (Graphics2D) offscreenGraphics;
+            g2d.setClip(clip);
+            try {
+                renderRegion(g2d, offscreenBaseTransform, offscreenDrawer, clip);
+            } finally {
+                g2d.setClip(null);
+            }
+        }
 
         
-        Drawer drawer = new AWTDrawing((Graphics2D) offscreenGraphics);
-        for (Shape shape : shapes) {
-            shape.draw(drawer);
+        g.drawImage(offscreenBuffer, 0, 0, this);
+        renderStats.recordFrameTime(System.nanoTime() - frameStart);
+    }
+
+    /**
+     * Consomme les zones sales et calcule la zone écran à redessiner
+     *
+     * @return The area to repaint in screen coordinates, or null if nothing
+     *         visible changed. The rectangle is reused by the next call.
+     */
+    private java.awt.Rectangle collectRepaintClip() {
+        canvasArea.setBounds(0, 0, getWidth(), getHeight());
+        boolean hasDamage = dirtyRegion.getBounds(worldDamage);
+        boolean fullRepaint = dirtyRegion.isAll() || viewChanged;
+        if (dirtyRegion.isAll()) {
+            tileCache.clear();
+        } else if (hasDamage) {
+            tileCache.invalidate(worldDamage);
+        }
+        dirtyRegion.clear();
+        viewChanged = false;
+
+        java.awt.Rectangle previousOverlay = overlayBounds;
+        boolean hadOverlay = hasOverlay;
+        overlayBounds = nextOverlayBounds;
+        nextOverlayBounds = previousOverlay;
+        hasOverlay = computeOverlayBounds(overlayBounds);
+
+        if (fullRepaint) {
+            repaintClip.setBounds(canvasArea);
+            return repaintClip;
         }
+        boolean any = false;
+        if (hasDamage) {
+            view.toScreen(worldDamage, worldDamage).grow(2, 2);
+            any = include(repaintClip, any, worldDamage);
+        }
+        if (hadOverlay) {
+            any = include(repaintClip, any, previousOverlay);
+        }
+        if (hasOverlay) {
+            any = include(repaintClip, any, overlayBounds);
+        }
+        if (!any) {
+            return null;
+        }
+        java.awt.Rectangle.intersect(repaintClip, canvasArea, repaintClip);
+        return repaintClip.isEmpty() ? null : repaintClip;
+    }
 
-        
-        if (!selectedShapes.isEmpty()) {
-            Graphics2D g2d = (Graphics2D) offscreenGraphics.create();
-            try {
+    /**
+     * Ajoute une zone à l'accumulateur, ou l'initialise si c'est la première
+     */
+    private static boolean include(java.awt.Rectangle accumulator, boolean any, java.awt.Rectangle area) {
+        if (any) {
+            accumulator.add(area);
+        } else {
+            accumulator.setBounds(area);
+        }
+        return true;
+    }
+
+    /**
+     * Switches between the default offscreen image and an accelerated
+     * {@link BufferStrategy} with page flipping driven by a render loop. The
+     * accelerated mode is only enabled when the whiteboard is displayable and
+     * the graphics pipeline accelerates images; otherwise the whiteboard keeps
+     * the default mode.
+     *
+     * @param enabled Whether to use accelerated rendering
+     * @return true if accelerated rendering is active after the call
+     */
+    public boolean setAcceleratedRendering(boolean enabled) {
+        if (!enabled) {
+            stopRenderLoop();
+            return false;
+        }
+        if (bufferStrategy != null) {
+            return true;
+        }
+        if (GraphicsEnvironment.isHeadless() || !isDisplayable()) {
+            System.out.println("[WhiteBoard] Accelerated rendering unavailable (headless or not displayable), "
+                    + "keeping offscreen image.");
+            return false;
+        }
+        if (!getGraphicsConfiguration().getImageCapabilities().isAccelerated()) {
+            System.out.println("[WhiteBoard] Graphics pipeline is not accelerated, keeping offscreen image.");
+            return false;
+        }
+        try {
+            createBufferStrategy(2);
+            bufferStrategy = getBufferStrategy();
+        } catch (Exception ex) {
+            System.out.println("[WhiteBoard] Could not create buffer strategy: " + ex.getMessage());
+            bufferStrategy = null;
+            return false;
+        }
+
+        renderStats.reset();
+        framePending = true;
+        renderLoop = new Timer(FRAME_INTERVAL_MS, e -> renderAcceleratedFrame());
+        renderLoop.start();
+        System.out.println("[WhiteBoard] Accelerated rendering enabled, page flipping="
+                + bufferStrategy.getCapabilities().isPageFlipping());
+        return true;
+    }
+
+    /**
+     * Checks whether frames are presented through the accelerated buffer
+     * strategy.
+     *
+     * @return true if accelerated rendering is active
+     */
+    public boolean isAcceleratedRendering() {
+        return bufferStrategy != null;
+    }
+
+    /**
+     * Arrête la boucle de rendu et revient au tampon hors écran
+     */
+    private void stopRenderLoop() {
+        if (renderLoop != null) {
+            renderLoop.stop();
+            renderLoop = null;
+        }
+        if (bufferStrategy != null) {
+            bufferStrategy.dispose();
+            bufferStrategy = null;
+            renderStats.reset();
+            viewChanged = true;
+            repaint();
+        }
+    }
+
+    /**
+     * Tick de la boucle de rendu : redessine et présente une image complète
+     * quand la scène a changé ou que le contenu du tampon a été perdu
+     */
+    private void renderAcceleratedFrame() {
+        if (bufferStrategy == null || getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        java.awt.Rectangle clip = collectRepaintClip();
+        if (clip == null && !framePending && !bufferStrategy.contentsLost()) {
+            return;
+        }
+        framePending = false;
+
+        long frameStart = System.nanoTime();
+        do {
+            do {
+                Graphics2D g2d = (Graphics2D) bufferStrategy.getDrawGraphics();
+                try {
+                    g2d.clip(canvasArea);
+                    renderRegion(g2d, g2d.getTransform(), new AWTDrawing(g2d), canvasArea);
+                } finally {
+                    g2d.dispose();
+                }
+            } while (bufferStrategy.contentsRestored());
+            bufferStrategy.show();
+        } while (bufferStrategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        renderStats.recordFrameTime(System.nanoTime() - frameStart);
+    }
+
+    /**
+     * Marks the whole whiteboard as needing a repaint on the next paint.
+     */
+    public void invalidateAll() {
+        dirtyRegion.markAll();
+    }
+
+    /**
+     * Redessine dans le tampon uniquement la zone sale, à partir des tuiles
+     * en cache ou de la couche statique pendant un déplacement
+     *
+     * @param g2d             The target graphics, already clipped to the dirty area
+     * @param screenTransform The transform of the target in screen coordinates,
+     *                        restored before returning
+     * @param worldDrawer     A drawer bound to the target graphics
+     * @param clip            The dirty area, in screen coordinates
+     */
+    private void renderRegion(Graphics2D g2d, AffineTransform screenTransform, Drawer worldDrawer,
+            java.awt.Rectangle clip) {
+        renderStats.beginFrame();
+        Stroke originalStroke = g2d.getStroke();
+        Color originalColor = g2d.getColor();
+        try {
+            if (isDragging && staticLayer.isValid()) {
                 
-                float[] dash = { 5.0f, 5.0f };
-                g2d.setStroke(new BasicStroke(2.0f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, dash, 0.0f));
+                staticLayer.paint(g2d);
+                movingShapes.clear();
+                for (int i = 0; i < selectedShapes.size(); i++) {
+                    movingShapes.add(selectedShapes.get(i));
+                }
+                shapes.sortByZOrder(movingShapes);
+                view.applyTo(g2d);
+                drawCulled(movingShapes, worldDrawer, view.toWorld(clip, worldClip));
+                movingShapes.clear();
+            } else {
+                tiledRenderer.paint(g2d, clip, view);
+                view.applyTo(g2d);
+            }
+
+            
+            if (!selectedShapes.isEmpty()) {
+                g2d.setStroke(SELECTION_STROKE);
 
                 
-                for (Shape shape : selectedShapes) {
-                    Rectangle bounds = shape.getBounds();
+                for (int i = 0; i < selectedShapes.size(); i++) {
+                    Shape shape = selectedShapes.get(i);
+                    int x = shape.getBoundsX();
+                    int y = shape.getBoundsY();
+                    int width = shape.getBoundsWidth();
+                    int height = shape.getBoundsHeight();
 
                     if (isDragging && shape == activeShape) {
                         
-                        g2d.setColor(new Color(255, 165, 0)); 
+                        g2d.setColor(ACTIVE_OUTLINE_COLOR);
                     } else {
                         
-                        g2d.setColor(new Color(0, 0, 255)); 
+                        g2d.setColor(SELECTION_COLOR);
                     }
 
                     
-                    g2d.drawRect(bounds.getX() - 2, bounds.getY() - 2,
-                            bounds.getWidth() + 4, bounds.getHeight() + 4);
+                    g2d.drawRect(x - 2, y - 2, width + 4, height + 4);
 
                     
                     g2d.setColor(Color.RED);
-                    g2d.fillOval(bounds.getX() + bounds.getWidth() / 2 - 3,
-                            bounds.getY() + bounds.getHeight() / 2 - 3, 6, 6);
+                    g2d.fillOval(x + width / 2 - 3, y + height / 2 - 3, 6, 6);
                 }
-            } finally {
-                g2d.dispose();
             }
-        }
 
-        
-        if (isSelectionRectActive && selectionStart != null && selectionEnd != null) {
-            Graphics2D g2d = (Graphics2D) offscreenGraphics.create();
-            try {
+            
+            if (isSelectionRectActive && selectionStart != null && selectionEnd != null) {
                 
                 int x = Math.min(selectionStart.x, selectionEnd.x);
                 int y = Math.min(selectionStart.y, selectionEnd.y);
@@ -1007,46 +1349,100 @@ public class WhiteBoard extends Canvas implements Draggable {
                 int height = Math.abs(selectionEnd.y - selectionStart.y);
 
                 
-                float[] dash = { 5.0f, 5.0f };
-                g2d.setStroke(new BasicStroke(1.0f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, dash, 0.0f));
+                g2d.setStroke(MARQUEE_STROKE);
 
                 
-                g2d.setColor(new Color(0, 0, 255, 30)); 
+                g2d.setColor(MARQUEE_FILL_COLOR);
                 g2d.fillRect(x, y, width, height);
 
                 
-                g2d.setColor(new Color(0, 0, 255)); 
+                g2d.setColor(SELECTION_COLOR);
                 g2d.drawRect(x, y, width, height);
-            } finally {
-                g2d.dispose();
             }
-        }
 
-        
-        System.out.println("[WhiteBoard] Paint method - isDragging=" + isDragging + ", isBeingDraggedToTrash="
-                + isBeingDraggedToTrash + ", selectedShapes.isEmpty()=" + selectedShapes.isEmpty());
-        if (isDragging && isBeingDraggedToTrash && !selectedShapes.isEmpty()) {
-            System.out.println("[WhiteBoard] Condition met for drawing trash overlay");
-            Graphics2D g2d = (Graphics2D) offscreenGraphics.create();
-            try {
+            
+            if (DEBUG_PAINT) {
+                System.out.println("[WhiteBoard] Paint method - isDragging=" + isDragging + ", isBeingDraggedToTrash="
+                        + isBeingDraggedToTrash + ", selectedShapes.isEmpty()=" + selectedShapes.isEmpty());
+            }
+            if (isDragging && isBeingDraggedToTrash && !selectedShapes.isEmpty()) {
                 drawTrashOverlay(g2d);
-            } finally {
-                g2d.dispose();
             }
+        } finally {
+            g2d.setStroke(originalStroke);
+            g2d.setColor(originalColor);
+            g2d.setTransform(screenTransform);
         }
+    }
 
-        
-        g.drawImage(offscreenBuffer, 0, 0, this);
+    /**
+     * Dessine les formes dont l'emprise touche la zone, en ignorant les autres
+     */
+    private void drawCulled(List<Shape> candidates, Drawer drawer, java.awt.Rectangle clip) {
+        for (int i = 0; i < candidates.size(); i++) {
+            Shape shape = candidates.get(i);
+            if (shapes.isVisibleIn(shape, clip)) {
+                shape.draw(drawer);
+                renderStats.shapeDrawn();
+            } else {
+                renderStats.shapeCulled();
+            }
+        }
+    }
+
+    /**
+     * Gets the drawn and culled shape counters of the render loop.
+     *
+     * @return The render statistics
+     */
+    public RenderStats getRenderStats() {
+        return renderStats;
+    }
+
+    /**
+     * Computes the area covered by the selection outlines, the selection
+     * rectangle and the trash overlay, which must be redrawn whenever they
+     * appear, move or disappear.
+     *
+     * @param out The rectangle receiving the overlay area in screen coordinates
+     * @return false if no overlay is shown
+     */
+    private boolean computeOverlayBounds(java.awt.Rectangle out) {
+        if (isDragging && isBeingDraggedToTrash && !selectedShapes.isEmpty()) {
+            out.setBounds(canvasArea);
+            return true;
+        }
+
+        boolean any = selectedShapes.getBounds(out);
+        if (any) {
+            out.setBounds(out.x - PaintBounds.MARGIN, out.y - PaintBounds.MARGIN,
+                    out.width + 2 * PaintBounds.MARGIN + 1, out.height + 2 * PaintBounds.MARGIN + 1);
+        }
+
+        if (isSelectionRectActive && selectionStart != null && selectionEnd != null) {
+            overlayScratch.setBounds(
+                    Math.min(selectionStart.x, selectionEnd.x) - 1,
+                    Math.min(selectionStart.y, selectionEnd.y) - 1,
+                    Math.abs(selectionEnd.x - selectionStart.x) + 3,
+                    Math.abs(selectionEnd.y - selectionStart.y) + 3);
+            any = include(out, any, overlayScratch);
+        }
+        if (any) {
+            view.toScreen(out, out).grow(2, 2);
+        }
+        return any;
     }
 
     /**
      * Draws an overlay when shapes are being dragged to the trash panel
      *
-     * @param g2d The graphics context to draw on
+     * @param g2d The graphics context to draw on, in world coordinates
      */
     private void drawTrashOverlay(Graphics2D g2d) {
-        System.out.println("[WhiteBoard] Drawing trash overlay, isDragging=" + isDragging + ", isBeingDraggedToTrash="
-                + isBeingDraggedToTrash);
+        if (DEBUG_PAINT) {
+            System.out.println("[WhiteBoard] Drawing trash overlay, isDragging=" + isDragging
+                    + ", isBeingDraggedToTrash=" + isBeingDraggedToTrash);
+        }
 
         if (dragMediator == null) {
             System.out.println("[WhiteBoard] Cannot draw trash overlay - dragMediator is null");
@@ -1054,6 +1450,7 @@ public class WhiteBoard extends Canvas implements Draggable {
         }
 
         
+        Object originalAntialiasing = g2d.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
         
@@ -1068,42 +1465,45 @@ public class WhiteBoard extends Canvas implements Draggable {
                 
                 mousePos = new Point(getWidth() / 2, getHeight() / 2);
             }
+            mousePos = view.toWorld(mousePos.x, mousePos.y);
 
             
-            g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.7f));
+            g2d.setComposite(TRASH_COMPOSITE);
 
             
-            for (Shape shape : selectedShapes) {
-                Rectangle bounds = shape.getBounds();
+            for (int i = 0; i < selectedShapes.size(); i++) {
+                Shape shape = selectedShapes.get(i);
+                int x = shape.getBoundsX();
+                int y = shape.getBoundsY();
+                int width = shape.getBoundsWidth();
+                int height = shape.getBoundsHeight();
 
                 
-                g2d.setColor(new Color(255, 0, 0, 128)); 
-                g2d.fillRect(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+                g2d.setColor(TRASH_FILL_COLOR);
+                g2d.fillRect(x, y, width, height);
 
                 
                 g2d.setColor(Color.RED);
-                g2d.setStroke(new BasicStroke(2.0f));
-                g2d.drawRect(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+                g2d.setStroke(TRASH_STROKE);
+                g2d.drawRect(x, y, width, height);
             }
 
             
             if (activeShape != null) {
-                Rectangle bounds = activeShape.getBounds();
-                int centerX = bounds.getX() + bounds.getWidth() / 2;
-                int centerY = bounds.getY() + bounds.getHeight() / 2;
+                int centerX = activeShape.getBoundsX() + activeShape.getBoundsWidth() / 2;
+                int centerY = activeShape.getBoundsY() + activeShape.getBoundsHeight() / 2;
 
                 
                 g2d.setColor(Color.RED);
-                float[] dash = { 5.0f, 5.0f };
-                g2d.setStroke(new BasicStroke(2.0f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, dash, 0.0f));
+                g2d.setStroke(SELECTION_STROKE);
                 g2d.drawLine(centerX, centerY, mousePos.x, mousePos.y);
 
                 
                 int iconSize = 32; 
-                g2d.setColor(new Color(255, 0, 0, 200));
+                g2d.setColor(TRASH_ICON_COLOR);
                 g2d.fillOval(mousePos.x - iconSize / 2, mousePos.y - iconSize / 2, iconSize, iconSize);
                 g2d.setColor(Color.WHITE);
-                g2d.setStroke(new BasicStroke(3.0f)); 
+                g2d.setStroke(TRASH_ICON_STROKE); 
 
                 
                 int offset = iconSize / 4;
@@ -1115,6 +1515,7 @@ public class WhiteBoard extends Canvas implements Draggable {
             g2d.setComposite(originalComposite);
             g2d.setStroke(originalStroke);
             g2d.setColor(originalColor);
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, originalAntialiasing);
         }
     }
 
@@ -1129,6 +1530,10 @@ public class WhiteBoard extends Canvas implements Draggable {
                 offscreenGraphics.dispose();
             }
             offscreenGraphics = offscreenBuffer.getGraphics();
+            offscreenBaseTransform = ((Graphics2D) offscreenGraphics).getTransform();
+            offscreenDrawer = new AWTDrawing((Graphics2D) offscreenGraphics);
+            viewChanged = true;
+            staticLayer.invalidate();
         }
     }
 
@@ -1179,23 +1584,170 @@ public class WhiteBoard extends Canvas implements Draggable {
         return this.shapes;
     }
 
+    /**
+     * Sets the listener notified of every change to the list of shapes, such
+     * as a journal recording them.
+     *
+     * @param listener The listener, or null to stop notifying changes
+     */
+    public void setShapeListListener(ShapeListListener listener) {
+        shapes.setListener(listener);
+    }
+
+    /**
+     * Replaces the spatial index used for hit-testing and marquee selection.
+     * All shapes currently on the whiteboard are re-indexed.
+     *
+     * @param index The spatial index to use
+     */
+    public void setSpatialIndex(SpatialIndex index) {
+        shapes.setSpatialIndex(index);
+    }
+
+    /**
+     * Sets the number of threads that rasterize missing tiles in parallel,
+     * for instance after a zoom change.
+     *
+     * @param threads The number of rendering threads, 1 to render on the
+     *                event dispatch thread only
+     */
+    public void setRenderThreads(int threads) {
+        tiledRenderer.setParallelism(threads);
+    }
+
+    /**
+     * Enables or disables drawing shape groups from cached rasters. A group
+     * is then rendered once per zoom level and copied until it changes.
+     *
+     * @param enabled true to cache group rasters
+     */
+    public void setGroupRasterCaching(boolean enabled) {
+        groupRasterCaching = enabled;
+        tiledRenderer.setGroupCache(enabled ? groupCache : null);
+        staticLayer.setGroupCache(enabled ? groupCache : null);
+        if (!enabled) {
+            groupCache.clear();
+        }
+    }
+
+    /**
+     * Checks whether shape groups are drawn from cached rasters.
+     *
+     * @return true if group rasters are cached
+     */
+    public boolean isGroupRasterCaching() {
+        return groupRasterCaching;
+    }
+
+    /**
+     * Gets the cache of group rasters, for its budget and hit counts.
+     *
+     * @return The group raster cache
+     */
+    public GroupRasterCache getGroupRasterCache() {
+        return groupCache;
+    }
+
+    /**
+     * Gets the transform between the whiteboard and the scene coordinates.
+     *
+     * @return The current view transform
+     */
+    public ViewTransform getViewTransform() {
+        return view;
+    }
+
+    /**
+     * Converts a point on the whiteboard to scene coordinates.
+     *
+     * @param x The x-coordinate on the whiteboard
+     * @param y The y-coordinate on the whiteboard
+     * @return The matching point in the scene
+     */
+    public Point toWorld(int x, int y) {
+        return view.toWorld(x, y);
+    }
+
+    /**
+     * Gets the current zoom factor.
+     *
+     * @return The zoom factor, 1.0 being actual size
+     */
+    public double getZoom() {
+        return view.getZoom();
+    }
+
+    /**
+     * Sets the zoom factor, keeping the center of the whiteboard in place.
+     *
+     * @param zoom The zoom factor, clamped to the supported range
+     */
+    public void setZoom(double zoom) {
+        view.zoomAt(zoom, getWidth() / 2, getHeight() / 2);
+        onViewChanged();
+    }
+
+    /**
+     * Scrolls the view so the scene follows a drag of the given length.
+     *
+     * @param dx The horizontal distance in whiteboard pixels
+     * @param dy The vertical distance in whiteboard pixels
+     */
+    public void panBy(int dx, int dy) {
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        view.panBy(dx, dy);
+        onViewChanged();
+    }
+
+    /**
+     * Restores the actual-size view with no scroll.
+     */
+    public void resetView() {
+        view.reset();
+        onViewChanged();
+    }
+
+    /**
+     * Gère la molette : zoome autour du pointeur de la souris
+     */
+    private void handleMouseWheel(MouseWheelEvent e) {
+        double factor = Math.pow(1.1, -e.getPreciseWheelRotation());
+        view.zoomAt(view.getZoom() * factor, e.getX(), e.getY());
+        onViewChanged();
+    }
+
+    private void onViewChanged() {
+        viewChanged = true;
+        staticLayer.invalidate();
+        repaint();
+    }
+
+    /**
+     * Calcule la partie de la scène visible sur le tableau
+     */
+    private java.awt.Rectangle getVisibleWorldArea() {
+        return view.toWorld(new java.awt.Rectangle(0, 0, getWidth(), getHeight()));
+    }
+
     /**
      * Creates a shape at the specified location using the current shape type
+     *
+     * @param viewX The x-coordinate on the whiteboard
+     * @param viewY The y-coordinate on the whiteboard
      */
-    public void createShapeAt(int x, int y) {
+    public void createShapeAt(int viewX, int viewY) {
         if (currentShapeType != null && prototypeRegistry != null) {
+            Point p = view.toWorld(viewX, viewY);
+            int x = p.x;
+            int y = p.y;
             Shape newShape = prototypeRegistry.createShape(currentShapeType, x, y);
             commandHistory.executeCommand(
                     new CreateShapeCommand(shapes, newShape, x, y));
 
             
-            for (Shape s : selectedShapes) {
-                s.setSelected(false);
-            }
-            selectedShapes.clear();
-
-            
-            selectedShapes.add(newShape);
+            selectedShapes.set(newShape);
             activeShape = newShape;
             newShape.setSelected(true);
             repaint();
@@ -1242,6 +1794,55 @@ public class WhiteBoard extends Canvas implements Draggable {
         repaint();
     }
 
+    /**
+     * Gets the entry of the history the whiteboard is at, from which the
+     * whole history can be browsed through parents and children.
+     *
+     * @return The current history entry
+     */
+    public HistoryNode getCurrentHistoryNode() {
+        return commandHistory.getCurrent();
+    }
+
+    /**
+     * Lists every entry of the history, each before its children, for a
+     * history browser.
+     *
+     * @return The history entries, starting with the oldest state
+     */
+    public List<HistoryNode> getHistoryNodes() {
+        return commandHistory.getNodes();
+    }
+
+    /**
+     * Brings the whiteboard to the state of any entry of the history,
+     * restoring the nearest checkpoint when that is shorter than undoing
+     * and redoing one command at a time, and repaints once. Shapes no longer
+     * on the whiteboard are deselected.
+     *
+     * @param node The history entry to jump to
+     * @return true if the whiteboard is now at the entry, false if the
+     *         entry is no longer in the history
+     */
+    public boolean jumpToHistory(HistoryNode node) {
+        if (!commandHistory.jumpTo(node)) {
+            return false;
+        }
+        List<Shape> removed = new ArrayList<>();
+        for (Shape shape : selectedShapes) {
+            if (!shapes.contains(shape)) {
+                removed.add(shape);
+            }
+        }
+        selectedShapes.removeAll(removed);
+        if (activeShape != null && !shapes.contains(activeShape)) {
+            activeShape = null;
+        }
+        notifyStateChanged("Jumped to history entry " + node.getDepth());
+        repaint();
+        return true;
+    }
+
     /**
      * Deletes all currently selected shapes from the whiteboard
      *
@@ -1253,7 +1854,12 @@ public class WhiteBoard extends Canvas implements Draggable {
         }
 
         
-        boolean removed = shapes.removeAll(selectedShapes);
+        DeleteShapesCommand command = new DeleteShapesCommand(shapes, selectedShapes.asList());
+        boolean removed = !command.isEmpty();
+        if (removed) {
+            commandHistory.executeCommand(command);
+        }
+        staticLayer.invalidate();
 
         
         selectedShapes.clear();
@@ -1345,12 +1951,23 @@ public class WhiteBoard extends Canvas implements Draggable {
     }
 
     /**
-     * Gets a list of all currently selected shapes
+     * Gets a read-only view of the currently selected shapes. The view is not
+     * copied and follows later selection changes.
      *
-     * @return A list of selected shapes
+     * @return The selected shapes, in selection order
      */
     public List<Shape> getSelectedShapes() {
-        return new ArrayList<>(selectedShapes);
+        return selectedShapes.asList();
+    }
+
+    /**
+     * Gets the selection model, to listen to selection changes or update the
+     * selection in bulk.
+     *
+     * @return The selection model
+     */
+    public SelectionModel getSelection() {
+        return selectedShapes;
     }
 
     /**
@@ -1358,9 +1975,6 @@ public class WhiteBoard extends Canvas implements Draggable {
      */
     public void clearSelection() {
         if (!selectedShapes.isEmpty()) {
-            for (Shape s : selectedShapes) {
-                s.setSelected(false);
-            }
             selectedShapes.clear();
             activeShape = null; 
             System.out.println("[WhiteBoard] Selection cleared.");
@@ -1375,9 +1989,7 @@ public class WhiteBoard extends Canvas implements Draggable {
      * @param shape The shape to add to the selection.
      */
     public void addSelectedShape(Shape shape) {
-        if (shape != null && !selectedShapes.contains(shape)) {
-            selectedShapes.add(shape);
-            shape.setSelected(true); 
+        if (shape != null && selectedShapes.add(shape)) {
             System.out.println("[WhiteBoard] Added shape to selection: " + shape);
             
         }
@@ -1448,11 +2060,16 @@ public class WhiteBoard extends Canvas implements Draggable {
      * Cleans up resources used by this component
      */
     public void dispose() {
+        stopRenderLoop();
         if (offscreenGraphics != null) {
             offscreenGraphics.dispose();
             offscreenGraphics = null;
         }
         offscreenBuffer = null;
+        offscreenDrawer = null;
+        staticLayer.dispose();
+        tiledRenderer.dispose();
+        groupCache.clear();
     }
 
     /**
@@ -1481,13 +2098,15 @@ public class WhiteBoard extends Canvas implements Draggable {
 
     /**
      * Creates a memento containing the current state of the whiteboard (shapes).
+     * The memento shares the copies of the shapes that did not change since
+     * the previous one, so only the changed shapes are copied.
      *
      * @return A ShapeMemento object.
      */
     public ShapeMemento createMemento() {
         System.out.println("[WhiteBoard] Creating Memento...");
         
-        return new ShapeMemento(new ArrayList<>(this.shapes)); 
+        return new ShapeMemento(this.shapes.snapshot()); 
     }
 
     /**
@@ -1502,7 +2121,8 @@ public class WhiteBoard extends Canvas implements Draggable {
         }
         System.out.println("[WhiteBoard] Restoring state from Memento...");
         
-        this.shapes = memento.getShapesState();
+        this.shapes.restore(memento.getSnapshot());
+        this.staticLayer.invalidate();
         
         this.selectedShapes.clear();
         this.activeShape = null;
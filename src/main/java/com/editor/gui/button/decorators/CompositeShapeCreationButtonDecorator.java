@@ -1,6 +1,7 @@
 package com.editor.gui.button.decorators;
 
 import java.awt.Graphics;
+import java.awt.Point;
 
 import com.editor.commands.CommandHistory;
 import com.editor.commands.CreateGroupCommand;
@@ -48,12 +49,11 @@ public class CompositeShapeCreationButtonDecorator extends ButtonDecorator {
         }
 
         
-        int targetX = whiteBoard.getWidth() / 2;
-        int targetY = whiteBoard.getHeight() / 2;
+        Point target = whiteBoard.toWorld(whiteBoard.getWidth() / 2, whiteBoard.getHeight() / 2);
 
         try {
             
-            ShapeGroup newGroup = compositeRegistry.createGroup(groupKey, targetX, targetY);
+            ShapeGroup newGroup = compositeRegistry.createGroup(groupKey, target.x, target.y);
 
             
             CreateGroupCommand command = new CreateGroupCommand(whiteBoard.getShapesList(), newGroup); 
@@ -5,6 +5,7 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Point;
 
 import com.editor.commands.CommandHistory;
 import com.editor.commands.CreateGroupCommand;
@@ -122,7 +123,8 @@ public class DraggableCompositeShapeCreationButtonDecorator extends CompositeSha
 
             try {
                 
-                ShapeGroup newGroup = compositeRegistry.createGroup(groupKey, x, y);
+                Point target = whiteBoard.toWorld(x, y);
+                ShapeGroup newGroup = compositeRegistry.createGroup(groupKey, target.x, target.y);
                 System.out.println("[DraggableCompositeButton] Created group instance for key '" + groupKey + "' at ("
                         + x + ", " + y + ")");
 
@@ -6,6 +6,8 @@ import java.io.Serializable;
  * Represents the overall application state to be saved or loaded.
  * It holds mementos for different parts of the application, like the
  * WhiteBoard, ToolbarPanel, and both prototype registries.
+ * It also names the journal checkpoint it was taken at, so that the changes
+ * journaled after it can be replayed on top of it.
  */
 public class AppStateMemento implements Serializable {
 
@@ -15,6 +17,7 @@ public class AppStateMemento implements Serializable {
     private final ToolbarMemento toolbarState;
     private final CompositeRegistryMemento compositeRegistryState;
     private final PrototypeRegistryMemento prototypeRegistryState; 
+    private final long journalCheckpoint;
 
     /**
      * Constructs an AppStateMemento.
@@ -28,12 +31,28 @@ public class AppStateMemento implements Serializable {
      */
     public AppStateMemento(ShapeMemento whiteBoardState, ToolbarMemento toolbarState,
             CompositeRegistryMemento compositeRegistryState, PrototypeRegistryMemento prototypeRegistryState) { 
-                                                                                                                
-                                                                                                                
+        this(whiteBoardState, toolbarState, compositeRegistryState, prototypeRegistryState, 0);
+    }
+
+    /**
+     * Constructs an AppStateMemento taken at a journal checkpoint.
+     *
+     * @param whiteBoardState        The memento for the WhiteBoard's state.
+     * @param toolbarState           The memento for the ToolbarPanel's state.
+     * @param compositeRegistryState The memento for the
+     *                               CompositeShapePrototypeRegistry's state.
+     * @param prototypeRegistryState The memento for the ShapePrototypeRegistry's
+     *                               state.
+     * @param journalCheckpoint      The journal checkpoint, 0 if none.
+     */
+    public AppStateMemento(ShapeMemento whiteBoardState, ToolbarMemento toolbarState,
+            CompositeRegistryMemento compositeRegistryState, PrototypeRegistryMemento prototypeRegistryState,
+            long journalCheckpoint) {
         this.whiteBoardState = whiteBoardState;
         this.toolbarState = toolbarState;
         this.compositeRegistryState = compositeRegistryState;
         this.prototypeRegistryState = prototypeRegistryState; 
+        this.journalCheckpoint = journalCheckpoint;
         System.out.println(
                 "[STATE DEBUG] AppStateMemento created with WhiteBoard, Toolbar, CompositeRegistry, and PrototypeRegistry states.");
     }
@@ -73,4 +92,14 @@ public class AppStateMemento implements Serializable {
     public PrototypeRegistryMemento getPrototypeRegistryState() { 
         return prototypeRegistryState;
     }
+
+    /**
+     * Gets the journal checkpoint this state was taken at. States saved
+     * before the journal existed have none.
+     *
+     * @return The checkpoint, or 0 if none.
+     */
+    public long getJournalCheckpoint() {
+        return journalCheckpoint;
+    }
 }
@@ -0,0 +1,143 @@
+package com.editor.memento;
+
+import com.editor.shapes.Shape;
+
+/**
+ * State of the scene at one point of the command history, as taken and put
+ * back by {@link com.editor.spatial.IndexedShapeList}. Unlike a snapshot, it
+ * keeps the live shapes next to their frozen records, so that restoring it
+ * puts those very shapes back, which commands refer to.
+ * <p>
+ * Commands also refer to shapes that are not in the list, such as deleted
+ * ones, and these must come back in the state they had too. A shape out of
+ * the list does not change, so the list logs the state of a shape when it
+ * goes back in; the checkpoint holds the point of the log it was taken at,
+ * and the first entry of a shape after that point gives its state then.
+ * Checkpoints share their unchanged nodes and entries, so each one costs
+ * memory only for what changed since the previous one.
+ */
+public final class SceneCheckpoint {
+    private final SceneSnapshot records;
+    private final SceneSnapshot shapes;
+    private final Entry since;
+    private final long estimatedSize;
+
+    /**
+     * State of a shape, logged before the shape is put in the list or
+     * changed while out of it. Entries are only ever appended to the log.
+     */
+    public static final class Entry {
+        private final Shape shape;
+        private final Shape record;
+        private Entry next;
+
+        /**
+         * Creates an entry starting a log.
+         *
+         * @param shape  The shape, null for the start of the log
+         * @param record The frozen state of the shape, which must not be
+         *               modified
+         */
+        public Entry(Shape shape, Shape record) {
+            this.shape = shape;
+            this.record = record;
+        }
+
+        /**
+         * Appends an entry after this one, which must be the last of the
+         * log.
+         *
+         * @param shape  The shape
+         * @param record The frozen state of the shape
+         * @return The new last entry
+         */
+        public Entry append(Shape shape, Shape record) {
+            if (next != null) {
+                throw new IllegalStateException("Entry is not the last of the log");
+            }
+            next = new Entry(shape, record);
+            return next;
+        }
+
+        public Shape getShape() {
+            return shape;
+        }
+
+        public Shape getRecord() {
+            return record;
+        }
+
+        /**
+         * Gets the entry logged after this one.
+         *
+         * @return The next entry, or null if this one is the last so far
+         */
+        public Entry getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * Creates a checkpoint.
+     *
+     * @param records       The frozen copies of the shapes in the list
+     * @param shapes        The shapes themselves, in the same order
+     * @param since         The last entry of the log when the checkpoint
+     *                      is taken
+     * @param estimatedSize The memory the checkpoint keeps alive, in bytes
+     */
+    public SceneCheckpoint(SceneSnapshot records, SceneSnapshot shapes, Entry since, long estimatedSize) {
+        this.records = records;
+        this.shapes = shapes;
+        this.since = since;
+        this.estimatedSize = estimatedSize;
+    }
+
+    /**
+     * Gets the frozen copies of the shapes in the list.
+     *
+     * @return The records, which must not be modified
+     */
+    public SceneSnapshot getRecords() {
+        return records;
+    }
+
+    /**
+     * Gets the shapes in the list, the very objects the commands refer to.
+     *
+     * @return The shapes, in z-order
+     */
+    public SceneSnapshot getShapes() {
+        return shapes;
+    }
+
+    /**
+     * Gets the last entry of the log when the checkpoint was taken. The
+     * entries after it give the states of the shapes out of the list.
+     *
+     * @return The entry
+     */
+    public Entry getSince() {
+        return since;
+    }
+
+    /**
+     * Gets the number of shapes in the list.
+     *
+     * @return The number of shapes
+     */
+    public int size() {
+        return shapes.size();
+    }
+
+    /**
+     * Estimates the memory this checkpoint keeps alive besides the shapes
+     * and the checkpoints taken before it: the records copied and the
+     * shapes logged since the previous one.
+     *
+     * @return The estimated size in bytes
+     */
+    public long estimateSize() {
+        return estimatedSize;
+    }
+}
@@ -0,0 +1,295 @@
+package com.editor.memento;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.editor.shapes.Shape;
+
+/**
+ * Immutable sequence of shape records, in z-order, that is cheap to copy
+ * with changes. It is kept in a treap ordered by position where nodes are
+ * never modified: replacing, inserting or removing a record copies only the
+ * O(log n) nodes on its path and shares every other node, and every record,
+ * with the original. A snapshot of a scene of any size therefore costs
+ * memory only for the shapes that differ from the previous snapshot.
+ * <p>
+ * The records are owned by the snapshot, which may be shared by many
+ * mementos at once, so they must never be modified. Clone a record to get
+ * a shape that can be edited.
+ */
+public final class SceneSnapshot implements Iterable<Shape> {
+    /** The snapshot of an empty scene. */
+    public static final SceneSnapshot EMPTY = new SceneSnapshot(null);
+
+    /**
+     * Priorities of the nodes built in bulk, which are placed above every
+     * random priority so the balanced tree keeps its shape.
+     */
+    private static final int BULK_PRIORITY = Integer.MAX_VALUE;
+    private static final int MAX_RANDOM_PRIORITY = Integer.MAX_VALUE - 64;
+
+    private static final class Node {
+        final Shape record;
+        final Node left, right;
+        final int size;
+        final int priority;
+
+        Node(Shape record, Node left, Node right, int priority) {
+            this.record = record;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+            this.priority = priority;
+        }
+    }
+
+    private final Node root;
+
+    private SceneSnapshot(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Creates a snapshot holding the given records, in O(n). The records are
+     * taken as they are, not cloned.
+     *
+     * @param records The records, which must not be modified afterwards
+     * @return The snapshot
+     */
+    public static SceneSnapshot of(List<? extends Shape> records) {
+        if (records.isEmpty()) {
+            return EMPTY;
+        }
+        Shape[] array = records.toArray(new Shape[0]);
+        return new SceneSnapshot(build(array, 0, array.length, 0));
+    }
+
+    private static Node build(Shape[] records, int from, int to, int depth) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Node left = build(records, from, middle, depth + 1);
+        Node right = build(records, middle + 1, to, depth + 1);
+        return new Node(records[middle], left, right, BULK_PRIORITY - depth);
+    }
+
+    /**
+     * Gets the number of records.
+     *
+     * @return The size of the snapshot
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Tests whether the snapshot holds no records.
+     *
+     * @return true if the snapshot is empty
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Gets the record at a position, in O(log n).
+     *
+     * @param i The position
+     * @return The record, which must not be modified
+     */
+    public Shape get(int i) {
+        check(i, size());
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (i < leftSize) {
+                node = node.left;
+            } else if (i == leftSize) {
+                return node.record;
+            } else {
+                i -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot where the record at a position is replaced.
+     *
+     * @param i      The position
+     * @param record The new record
+     * @return The new snapshot; this one is unchanged
+     */
+    public SceneSnapshot set(int i, Shape record) {
+        check(i, size());
+        return new SceneSnapshot(set(root, i, record));
+    }
+
+    /**
+     * Returns a snapshot where a record is inserted at a position.
+     *
+     * @param i      The position, from 0 to {@link #size()}
+     * @param record The record to insert
+     * @return The new snapshot; this one is unchanged
+     */
+    public SceneSnapshot insert(int i, Shape record) {
+        check(i, size() + 1);
+        int priority = ThreadLocalRandom.current().nextInt(MAX_RANDOM_PRIORITY);
+        return new SceneSnapshot(insert(root, i, record, priority));
+    }
+
+    /**
+     * Returns a snapshot where the record at a position is removed.
+     *
+     * @param i The position
+     * @return The new snapshot; this one is unchanged
+     */
+    public SceneSnapshot remove(int i) {
+        check(i, size());
+        return new SceneSnapshot(remove(root, i));
+    }
+
+    /**
+     * Gets a read-only list view of the records. Positional access takes
+     * O(log n) and iteration O(1) per record.
+     *
+     * @return The records, in z-order
+     */
+    public List<Shape> asList() {
+        return new AbstractList<Shape>() {
+            @Override
+            public Shape get(int i) {
+                return SceneSnapshot.this.get(i);
+            }
+
+            @Override
+            public int size() {
+                return SceneSnapshot.this.size();
+            }
+
+            @Override
+            public Iterator<Shape> iterator() {
+                return SceneSnapshot.this.iterator();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Shape> iterator() {
+        return new Iterator<Shape>() {
+            private final Deque<Node> path = new ArrayDeque<>();
+
+            {
+                pushLeft(root);
+            }
+
+            private void pushLeft(Node node) {
+                for (; node != null; node = node.left) {
+                    path.push(node);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public Shape next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = path.pop();
+                pushLeft(node.right);
+                return node.record;
+            }
+        };
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void check(int i, int bound) {
+        if (i < 0 || i >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + (bound - 1));
+        }
+    }
+
+    private static Node set(Node node, int i, Shape record) {
+        int leftSize = size(node.left);
+        if (i < leftSize) {
+            return new Node(node.record, set(node.left, i, record), node.right, node.priority);
+        } else if (i == leftSize) {
+            return new Node(record, node.left, node.right, node.priority);
+        }
+        return new Node(node.record, node.left, set(node.right, i - leftSize - 1, record), node.priority);
+    }
+
+    private static Node insert(Node node, int i, Shape record, int priority) {
+        if (node == null) {
+            return new Node(record, null, null, priority);
+        }
+        if (priority > node.priority) {
+            Node[] halves = new Node[2];
+            split(node, i, halves);
+            return new Node(record, halves[0], halves[1], priority);
+        }
+        int leftSize = size(node.left);
+        if (i <= leftSize) {
+            return new Node(node.record, insert(node.left, i, record, priority), node.right, node.priority);
+        }
+        return new Node(node.record, node.left, insert(node.right, i - leftSize - 1, record, priority),
+                node.priority);
+    }
+
+    private static Node remove(Node node, int i) {
+        int leftSize = size(node.left);
+        if (i < leftSize) {
+            return new Node(node.record, remove(node.left, i), node.right, node.priority);
+        } else if (i == leftSize) {
+            return merge(node.left, node.right);
+        }
+        return new Node(node.record, node.left, remove(node.right, i - leftSize - 1), node.priority);
+    }
+
+    /**
+     * Splits a tree into the first i records and the rest, copying only the
+     * nodes along the split path.
+     */
+    private static void split(Node node, int i, Node[] halves) {
+        if (node == null) {
+            halves[0] = null;
+            halves[1] = null;
+            return;
+        }
+        int leftSize = size(node.left);
+        if (i <= leftSize) {
+            split(node.left, i, halves);
+            halves[1] = new Node(node.record, halves[1], node.right, node.priority);
+        } else {
+            split(node.right, i - leftSize - 1, halves);
+            halves[0] = new Node(node.record, node.left, halves[0], node.priority);
+        }
+    }
+
+    /**
+     * Concatenates two trees, copying only the nodes along the seam.
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        } else if (left.priority > right.priority) {
+            return new Node(left.record, left.left, merge(left.right, right), left.priority);
+        }
+        return new Node(right.record, merge(left, right.left), right.right, right.priority);
+    }
+}
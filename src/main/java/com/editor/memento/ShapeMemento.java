@@ -1,6 +1,11 @@
 package com.editor.memento;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -8,14 +13,20 @@ import com.editor.shapes.Shape;
 
 /**
  * Memento class to store the state of the WhiteBoard.
- * It holds a list of clones of the shapes currently on the whiteboard.
+ * It holds a {@link SceneSnapshot} of frozen copies of the shapes on the
+ * whiteboard, which is shared with the whiteboard and with other mementos
+ * rather than copied, so creating one takes constant time and memory.
+ * It is saved as a plain list of shapes, as it always has been.
  */
 public class ShapeMemento implements Serializable {
 
-    private static final long serialVersionUID = 1L; 
+    private static final long serialVersionUID = 1L;
 
-    
-    private final List<Shape> shapesState;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("shapesState", List.class)
+    };
+
+    private transient SceneSnapshot snapshot;
 
     /**
      * Constructs a ShapeMemento by cloning the provided list of shapes.
@@ -23,11 +34,30 @@ public class ShapeMemento implements Serializable {
      * @param shapesToSave The list of shapes currently on the WhiteBoard.
      */
     public ShapeMemento(List<Shape> shapesToSave) {
-        
-        this.shapesState = shapesToSave.stream()
-                .map(Shape::clone) 
-                .collect(Collectors.toList());
-        System.out.println("[ShapeMemento] Created with " + this.shapesState.size() + " shapes.");
+
+        this(SceneSnapshot.of(shapesToSave.stream()
+                .map(Shape::clone)
+                .collect(Collectors.toList())));
+    }
+
+    /**
+     * Constructs a ShapeMemento holding a snapshot, without copying it.
+     *
+     * @param snapshot The snapshot of the shapes on the WhiteBoard.
+     */
+    public ShapeMemento(SceneSnapshot snapshot) {
+        this.snapshot = snapshot;
+        System.out.println("[ShapeMemento] Created with " + snapshot.size() + " shapes.");
+    }
+
+    /**
+     * Gets the saved snapshot. Its records are shared and must not be
+     * modified.
+     *
+     * @return The snapshot of the saved shapes.
+     */
+    public SceneSnapshot getSnapshot() {
+        return snapshot;
     }
 
     /**
@@ -36,9 +66,23 @@ public class ShapeMemento implements Serializable {
      * @return A new list containing clones of the saved shapes.
      */
     public List<Shape> getShapesState() {
-        
-        return this.shapesState.stream()
-                .map(Shape::clone)
-                .collect(Collectors.toList());
+        List<Shape> shapes = new ArrayList<>(snapshot.size());
+        for (Shape record : snapshot) {
+            shapes.add(record.clone());
+        }
+        return shapes;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("shapesState", new ArrayList<>(snapshot.asList()));
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        List<Shape> shapesState = (List<Shape>) fields.get("shapesState", null);
+        snapshot = shapesState == null ? SceneSnapshot.EMPTY : SceneSnapshot.of(shapesState);
     }
 }
@@ -0,0 +1,113 @@
+package com.editor.rendering;
+
+import java.awt.Rectangle;
+
+/**
+ * Accumulates the areas of the scene that need to be redrawn, in world
+ * coordinates. Damaged rectangles are merged into a single bounding rectangle,
+ * which the renderer maps to the screen to clip the next paint.
+ */
+public class DirtyRegion {
+    private int minX, minY, maxX, maxY;
+    private boolean empty = true;
+    private boolean all = false;
+
+    /**
+     * Marks a rectangle as needing a repaint.
+     *
+     * @param x      The x-coordinate of the damaged area
+     * @param y      The y-coordinate of the damaged area
+     * @param width  The width of the damaged area
+     * @param height The height of the damaged area
+     */
+    public void add(int x, int y, int width, int height) {
+        if (all || width <= 0 || height <= 0) {
+            return;
+        }
+        if (empty) {
+            minX = x;
+            minY = y;
+            maxX = x + width;
+            maxY = y + height;
+            empty = false;
+        } else {
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x + width);
+            maxY = Math.max(maxY, y + height);
+        }
+    }
+
+    /**
+     * Marks a rectangle as needing a repaint.
+     *
+     * @param area The damaged area, ignored if null
+     */
+    public void add(Rectangle area) {
+        if (area != null) {
+            add(area.x, area.y, area.width, area.height);
+        }
+    }
+
+    /**
+     * Marks the whole scene as needing a repaint.
+     */
+    public void markAll() {
+        all = true;
+        empty = false;
+    }
+
+    /**
+     * Checks whether nothing needs to be repainted.
+     *
+     * @return true if no area is dirty
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Checks whether the whole scene needs to be repainted.
+     *
+     * @return true if the whole scene is dirty
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    /**
+     * Gets the union of the damaged areas.
+     *
+     * @return The damaged area, or null if nothing is dirty or the whole scene
+     *         is dirty
+     */
+    public Rectangle getBounds() {
+        if (empty || all) {
+            return null;
+        }
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Copies the union of the damaged areas into an existing rectangle.
+     *
+     * @param out The rectangle receiving the damaged area
+     * @return false if nothing is dirty or the whole scene is dirty, in which
+     *         case out is left unchanged
+     */
+    public boolean getBounds(Rectangle out) {
+        if (empty || all) {
+            return false;
+        }
+        out.setBounds(minX, minY, maxX - minX, maxY - minY);
+        return true;
+    }
+
+    /**
+     * Resets the region after a repaint.
+     */
+    public void clear() {
+        empty = true;
+        all = false;
+    }
+}
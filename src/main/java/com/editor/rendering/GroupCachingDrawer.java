@@ -0,0 +1,68 @@
+package com.editor.rendering;
+
+import java.awt.Graphics2D;
+
+import com.editor.drawing.BatchingDrawer;
+import com.editor.shapes.ShapeGroup;
+import com.editor.shapes.SymbolInstance;
+
+/**
+ * Batching drawer that draws shape groups from a {@link GroupRasterCache}
+ * when one is set. Pending operations are flushed before a group is copied,
+ * so the result is still drawn in z-order. Symbol instances that still share
+ * their prototype are drawn from the prototype's raster, so every placement
+ * of a composite reuses the same image.
+ */
+public class GroupCachingDrawer extends BatchingDrawer {
+    private static final long serialVersionUID = 1L;
+
+    private transient GroupRasterCache groupCache;
+
+    /**
+     * Creates a drawer with no graphics context and no group cache yet.
+     */
+    public GroupCachingDrawer() {
+    }
+
+    /**
+     * Creates a drawer over the given graphics context.
+     *
+     * @param graphics   The graphics context operations are replayed on
+     * @param groupCache The cache groups are drawn from, or null to draw
+     *                   every child
+     */
+    public GroupCachingDrawer(Graphics2D graphics, GroupRasterCache groupCache) {
+        super(graphics);
+        this.groupCache = groupCache;
+    }
+
+    /**
+     * Sets the cache groups are drawn from.
+     *
+     * @param groupCache The group cache, or null to draw every child
+     */
+    public void setGroupCache(GroupRasterCache groupCache) {
+        this.groupCache = groupCache;
+    }
+
+    @Override
+    public void drawGroup(ShapeGroup group) {
+        if (groupCache != null && group instanceof SymbolInstance && ((SymbolInstance) group).isShared()) {
+            SymbolInstance instance = (SymbolInstance) group;
+            translate(instance.getOffsetX(), instance.getOffsetY());
+            try {
+                drawGroup(instance.getPrototype());
+            } finally {
+                translate(-instance.getOffsetX(), -instance.getOffsetY());
+            }
+            return;
+        }
+        if (groupCache != null) {
+            flush();
+            if (groupCache.draw(group, getGraphics())) {
+                return;
+            }
+        }
+        super.drawGroup(group);
+    }
+}
@@ -0,0 +1,265 @@
+package com.editor.rendering;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.editor.drawing.BatchingDrawer;
+import com.editor.shapes.ShapeGroup;
+
+/**
+ * Least-recently-used cache of rendered shape groups.
+ * A group is rendered once into a translucent raster at the scale of the
+ * graphics it is drawn on, and copied from there until the group or one of
+ * its children changes, or the scale changes. The raster is aligned on the
+ * device pixel grid, so a copy only differs from drawing the children
+ * directly by the same edge rounding as two neighbouring tiles.
+ * The total size of the rasters is bounded; the least recently drawn groups
+ * are dropped first. The cache may be shared by several rendering threads.
+ */
+public class GroupRasterCache {
+    public static final long DEFAULT_BUDGET_BYTES = 32L << 20;
+    private static final int MAX_RASTER_SIDE = 2048;
+    private static final double PHASE_TOLERANCE = 1e-6;
+    private static final AffineTransform IDENTITY = new AffineTransform();
+
+    private final Map<ShapeGroup, Raster> rasters = new LinkedHashMap<>(16, 0.75f, true);
+    private long budgetBytes;
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * A rendered group, with everything needed to tell whether it still
+     * matches the group and the graphics it is drawn on.
+     */
+    private static final class Raster {
+        final BufferedImage image;
+        final long version;
+        final double scale;
+        final double phaseX, phaseY;
+        final int originX, originY;
+
+        Raster(BufferedImage image, long version, double scale, double phaseX, double phaseY,
+                int originX, int originY) {
+            this.image = image;
+            this.version = version;
+            this.scale = scale;
+            this.phaseX = phaseX;
+            this.phaseY = phaseY;
+            this.originX = originX;
+            this.originY = originY;
+        }
+
+        long bytes() {
+            return 4L * image.getWidth() * image.getHeight();
+        }
+    }
+
+    /**
+     * Creates a cache with the default memory budget.
+     */
+    public GroupRasterCache() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    /**
+     * Creates a cache holding at most the given number of bytes of rasters.
+     *
+     * @param budgetBytes The memory budget, in bytes
+     */
+    public GroupRasterCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Draws a group from its cached raster, rendering the raster first if the
+     * group changed since. Groups are left to the caller when the graphics
+     * transform rotates, shears or stretches, or when the raster would take
+     * more than a quarter of the budget.
+     *
+     * @param group The group to draw
+     * @param g2d   The graphics to draw onto
+     * @return true if the group was drawn, false if the caller must draw it
+     */
+    public boolean draw(ShapeGroup group, Graphics2D g2d) {
+        AffineTransform transform = g2d.getTransform();
+        int type = transform.getType();
+        if ((type & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE)) != 0
+                || transform.getScaleX() <= 0) {
+            return false;
+        }
+        double scale = transform.getScaleX();
+        double tx = transform.getTranslateX();
+        double ty = transform.getTranslateY();
+        long version = group.getVersion();
+
+        Raster raster;
+        synchronized (this) {
+            raster = rasters.get(group);
+        }
+        if (raster != null && raster.version == version && raster.scale == scale
+                && Math.abs(phase(tx) - raster.phaseX) < PHASE_TOLERANCE
+                && Math.abs(phase(ty) - raster.phaseY) < PHASE_TOLERANCE) {
+            synchronized (this) {
+                hits++;
+            }
+        } else {
+            raster = render(group, version, scale, tx, ty);
+            synchronized (this) {
+                misses++;
+                Raster old = raster == null ? rasters.remove(group) : rasters.put(group, raster);
+                if (old != null) {
+                    usedBytes -= old.bytes();
+                }
+                if (raster != null) {
+                    usedBytes += raster.bytes();
+                    evict();
+                }
+            }
+            if (raster == null) {
+                return false;
+            }
+        }
+
+        int deviceX = (int) Math.round(tx - raster.phaseX) + raster.originX;
+        int deviceY = (int) Math.round(ty - raster.phaseY) + raster.originY;
+        g2d.setTransform(IDENTITY);
+        try {
+            g2d.drawImage(raster.image, deviceX, deviceY, null);
+        } finally {
+            g2d.setTransform(transform);
+        }
+        return true;
+    }
+
+    /**
+     * Renders the children of a group into a new raster, or returns null if
+     * the raster would be too large to cache. The raster is rendered with the
+     * same scale and the same fractional translation as the target, so that
+     * only whole pixels separate the two.
+     */
+    private Raster render(ShapeGroup group, long version, double scale, double tx, double ty) {
+        Rectangle world = PaintBounds.of(group);
+        double phaseX = phase(tx);
+        double phaseY = phase(ty);
+        int originX = (int) Math.floor(scale * world.x + phaseX);
+        int originY = (int) Math.floor(scale * world.y + phaseY);
+        double width = Math.ceil(scale * (world.x + world.width) + phaseX) - originX;
+        double height = Math.ceil(scale * (world.y + world.height) + phaseY) - originY;
+        if (width < 1 || height < 1 || width > MAX_RASTER_SIDE || height > MAX_RASTER_SIDE
+                || 4 * width * height > budgetBytes / 4) {
+            return null;
+        }
+
+        BufferedImage image = new BufferedImage((int) width, (int) height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.translate(phaseX - originX, phaseY - originY);
+            g2d.scale(scale, scale);
+            BatchingDrawer drawer = new BatchingDrawer(g2d);
+            group.drawChildren(drawer);
+            drawer.flush();
+        } finally {
+            g2d.dispose();
+        }
+        return new Raster(image, version, scale, phaseX, phaseY, originX, originY);
+    }
+
+    private static double phase(double deviceCoordinate) {
+        return deviceCoordinate - Math.floor(deviceCoordinate);
+    }
+
+    private void evict() {
+        Iterator<Raster> it = rasters.values().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            usedBytes -= it.next().bytes();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Changes the memory budget, dropping rasters until the cache fits.
+     *
+     * @param budgetBytes The new budget, in bytes
+     */
+    public synchronized void setBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        evict();
+    }
+
+    /**
+     * Gets the memory budget.
+     *
+     * @return The budget, in bytes
+     */
+    public synchronized long getBudget() {
+        return budgetBytes;
+    }
+
+    /**
+     * Gets the memory currently taken by cached rasters.
+     *
+     * @return The used memory, in bytes
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Gets the number of cached rasters.
+     *
+     * @return The number of cached groups
+     */
+    public synchronized int size() {
+        return rasters.size();
+    }
+
+    /**
+     * Drops every cached raster.
+     */
+    public synchronized void clear() {
+        rasters.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Gets the number of groups drawn from an up-to-date raster.
+     *
+     * @return The hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of groups that had to be rendered again.
+     *
+     * @return The miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of rasters dropped to stay within the budget.
+     *
+     * @return The eviction count
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "GroupRasterCache[groups=" + rasters.size() + ", used=" + (usedBytes >> 10) + "KB/"
+                + (budgetBytes >> 10) + "KB, hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + "]";
+    }
+}
@@ -0,0 +1,90 @@
+package com.editor.rendering;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import com.editor.shapes.Circle;
+import com.editor.shapes.RegularPolygon;
+import com.editor.shapes.Shape;
+import com.editor.shapes.ShapeGroup;
+import com.editor.shapes.SymbolInstance;
+
+/**
+ * Computes the area of the canvas a shape may touch when it is drawn.
+ * Unlike {@link Shape#getBounds()}, this accounts for rotation, stroke width
+ * and selection markers, so it can safely be used for repaint and culling.
+ */
+public final class PaintBounds {
+    /** Extra pixels around the geometry covered by strokes and selection markers. */
+    public static final int MARGIN = 4;
+
+    private PaintBounds() {
+    }
+
+    /**
+     * Gets the painted extent of a shape.
+     *
+     * @param shape The shape
+     * @return A new rectangle covering every pixel the shape may draw
+     */
+    public static Rectangle of(Shape shape) {
+        return of(shape, new Rectangle());
+    }
+
+    /**
+     * Computes the painted extent of a shape into an existing rectangle, so
+     * that callers on the paint path do not allocate.
+     *
+     * @param shape The shape
+     * @param out   The rectangle receiving the result
+     * @return The out rectangle
+     */
+    public static Rectangle of(Shape shape, Rectangle out) {
+        if (shape instanceof SymbolInstance && ((SymbolInstance) shape).isShared()) {
+            SymbolInstance instance = (SymbolInstance) shape;
+            of(instance.getPrototype(), out);
+            out.translate(instance.getOffsetX(), instance.getOffsetY());
+            return out;
+        }
+        if (shape instanceof ShapeGroup) {
+            List<Shape> children = ((ShapeGroup) shape).getShapes();
+            if (!children.isEmpty()) {
+                int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+                int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+                for (int i = 0; i < children.size(); i++) {
+                    of(children.get(i), out);
+                    minX = Math.min(minX, out.x);
+                    minY = Math.min(minY, out.y);
+                    maxX = Math.max(maxX, out.x + out.width);
+                    maxY = Math.max(maxY, out.y + out.height);
+                }
+                out.setBounds(minX, minY, maxX - minX, maxY - minY);
+                return out;
+            }
+        }
+
+        int x = shape.getBoundsX();
+        int y = shape.getBoundsY();
+        int width = shape.getBoundsWidth();
+        int height = shape.getBoundsHeight();
+
+        // Circles ignore rotation and polygons rotate inside their circumscribed circle.
+        double rotation = shape.getRotation();
+        if (rotation != 0 && !(shape instanceof Circle) && !(shape instanceof RegularPolygon)) {
+            double radians = Math.toRadians(rotation);
+            double cos = Math.abs(Math.cos(radians));
+            double sin = Math.abs(Math.sin(radians));
+            double centerX = x + width / 2;
+            double centerY = y + height / 2;
+            double halfWidth = (width * cos + height * sin) / 2;
+            double halfHeight = (width * sin + height * cos) / 2;
+            x = (int) Math.floor(centerX - halfWidth);
+            y = (int) Math.floor(centerY - halfHeight);
+            width = (int) Math.ceil(centerX + halfWidth) - x;
+            height = (int) Math.ceil(centerY + halfHeight) - y;
+        }
+
+        out.setBounds(x - MARGIN, y - MARGIN, width + 2 * MARGIN + 1, height + 2 * MARGIN + 1);
+        return out;
+    }
+}
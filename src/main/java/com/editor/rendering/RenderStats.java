@@ -0,0 +1,159 @@
+package com.editor.rendering;
+
+/**
+ * Counts how many shapes the renderer drew and how many it culled because
+ * their painted extent lay outside the area being repainted, and how long
+ * frames took to render and present.
+ */
+public class RenderStats {
+    private int drawn;
+    private int culled;
+    private long totalDrawn;
+    private long totalCulled;
+    private long frames;
+    private long lastFrameNanos;
+    private long totalFrameNanos;
+    private long timedFrames;
+
+    /**
+     * Starts counting a new frame.
+     */
+    public void beginFrame() {
+        drawn = 0;
+        culled = 0;
+        frames++;
+    }
+
+    /**
+     * Records a shape dispatched to the drawer.
+     */
+    public void shapeDrawn() {
+        drawn++;
+        totalDrawn++;
+    }
+
+    /**
+     * Records a shape skipped by culling.
+     */
+    public void shapeCulled() {
+        culled++;
+        totalCulled++;
+    }
+
+    /**
+     * Records counts gathered separately, for instance by a worker thread
+     * rendering a tile.
+     *
+     * @param drawnCount  The number of shapes drawn
+     * @param culledCount The number of shapes culled
+     */
+    public void add(int drawnCount, int culledCount) {
+        drawn += drawnCount;
+        culled += culledCount;
+        totalDrawn += drawnCount;
+        totalCulled += culledCount;
+    }
+
+    /**
+     * Records the time taken to render and present a frame.
+     *
+     * @param nanos The frame time in nanoseconds
+     */
+    public void recordFrameTime(long nanos) {
+        lastFrameNanos = nanos;
+        totalFrameNanos += nanos;
+        timedFrames++;
+    }
+
+    /**
+     * Gets the time taken by the last timed frame.
+     *
+     * @return The frame time in milliseconds
+     */
+    public double getLastFrameMillis() {
+        return lastFrameNanos / 1_000_000.0;
+    }
+
+    /**
+     * Gets the average time of the frames timed since the stats were last
+     * reset.
+     *
+     * @return The average frame time in milliseconds, or 0 if no frame was
+     *         timed
+     */
+    public double getAverageFrameMillis() {
+        return timedFrames == 0 ? 0 : totalFrameNanos / (timedFrames * 1_000_000.0);
+    }
+
+    /**
+     * Gets the number of shapes drawn during the last frame.
+     *
+     * @return The drawn count
+     */
+    public int getDrawnCount() {
+        return drawn;
+    }
+
+    /**
+     * Gets the number of shapes culled during the last frame.
+     *
+     * @return The culled count
+     */
+    public int getCulledCount() {
+        return culled;
+    }
+
+    /**
+     * Gets the number of shapes drawn since the stats were last reset.
+     *
+     * @return The total drawn count
+     */
+    public long getTotalDrawn() {
+        return totalDrawn;
+    }
+
+    /**
+     * Gets the number of shapes culled since the stats were last reset.
+     *
+     * @return The total culled count
+     */
+    public long getTotalCulled() {
+        return totalCulled;
+    }
+
+    /**
+     * Gets the number of frames rendered since the stats were last reset.
+     *
+     * @return The frame count
+     */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Resets every counter.
+     */
+    public void reset() {
+        drawn = 0;
+        culled = 0;
+        totalDrawn = 0;
+        totalCulled = 0;
+        frames = 0;
+        lastFrameNanos = 0;
+        totalFrameNanos = 0;
+        timedFrames = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "RenderStats{" +
+                "drawn=" + drawn +
+                ", culled=" + culled +
+                ", totalDrawn=" + totalDrawn +
+                ", totalCulled=" + totalCulled +
+                ", frames=" + frames +
+                ", lastFrameMs=" + String.format("%.3f", getLastFrameMillis()) +
+                ", avgFrameMs=" + String.format("%.3f", getAverageFrameMillis()) +
+                '}';
+    }
+}
@@ -0,0 +1,29 @@
+package com.editor.rendering;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import com.editor.shapes.Shape;
+
+/**
+ * Read access to the shapes of a scene by area, used by renderers that only
+ * draw part of the canvas at a time.
+ */
+public interface ShapeSource {
+    /**
+     * Gets the shapes whose painted extent may intersect the given area.
+     *
+     * @param area The area in world coordinates
+     * @return The candidate shapes, back to front
+     */
+    List<Shape> shapesIntersecting(Rectangle area);
+
+    /**
+     * Tests whether a shape's painted extent intersects the given area.
+     *
+     * @param shape The shape
+     * @param area  The area in world coordinates
+     * @return true if the shape may draw inside the area
+     */
+    boolean isVisibleIn(Shape shape, Rectangle area);
+}
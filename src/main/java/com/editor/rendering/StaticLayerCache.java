@@ -0,0 +1,103 @@
+package com.editor.rendering;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+
+import com.editor.shapes.Shape;
+
+/**
+ * Cached raster of the shapes that stay still while a selection is dragged.
+ * The layer is rendered once when the drag starts; every drag frame then
+ * copies it and only draws the moving shapes on top.
+ */
+public class StaticLayerCache {
+    private BufferedImage layer;
+    private boolean valid = false;
+    private GroupRasterCache groupCache;
+
+    /**
+     * Sets the cache shape groups are drawn from when the layer is built.
+     *
+     * @param groupCache The group cache, or null to draw groups child by child
+     */
+    public void setGroupCache(GroupRasterCache groupCache) {
+        this.groupCache = groupCache;
+    }
+
+    /**
+     * Renders every shape except the excluded ones into the cached layer.
+     * Shapes lying entirely outside the visible part of the scene are culled.
+     *
+     * @param width      The width of the canvas
+     * @param height     The height of the canvas
+     * @param background The background color of the canvas
+     * @param shapes     All shapes, in z-order
+     * @param excluded   The shapes being dragged, left out of the layer; looked
+     *                   up once per shape, so it should be a set or a selection
+     * @param view       The view transform the layer is rendered with
+     */
+    public void build(int width, int height, Color background, Iterable<Shape> shapes,
+            Collection<Shape> excluded, ViewTransform view) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (layer == null || layer.getWidth() != width || layer.getHeight() != height) {
+            layer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+
+        Rectangle visible = view.toWorld(new Rectangle(0, 0, width, height));
+        Graphics2D g2d = layer.createGraphics();
+        try {
+            g2d.setColor(background);
+            g2d.fillRect(0, 0, width, height);
+            view.applyTo(g2d);
+            GroupCachingDrawer drawer = new GroupCachingDrawer(g2d, groupCache);
+            for (Shape shape : shapes) {
+                if (!excluded.contains(shape) && PaintBounds.of(shape).intersects(visible)) {
+                    shape.draw(drawer);
+                }
+            }
+            drawer.flush();
+        } finally {
+            g2d.dispose();
+        }
+        valid = true;
+    }
+
+    /**
+     * Checks whether the layer can be used for the current frame.
+     *
+     * @return true if the layer is up to date
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Copies the layer onto the given graphics, honouring its clip.
+     *
+     * @param g2d The graphics to draw onto
+     */
+    public void paint(Graphics2D g2d) {
+        g2d.drawImage(layer, 0, 0, null);
+    }
+
+    /**
+     * Marks the layer as stale. The raster is kept so the next drag can reuse
+     * its memory.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Releases the cached raster.
+     */
+    public void dispose() {
+        valid = false;
+        layer = null;
+    }
+}
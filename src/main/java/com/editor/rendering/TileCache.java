@@ -0,0 +1,229 @@
+package com.editor.rendering;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of rendered scene tiles.
+ * Tiles are square rasters on the zoomed pixel grid, keyed by zoom level and
+ * tile column and row. A change to the scene drops every tile, at any zoom,
+ * whose world area it touches.
+ * Rasters of dropped tiles are kept in a small pool and handed out again for
+ * new tiles, so repainting a damaged area does not allocate new images.
+ */
+public class TileCache {
+    public static final int DEFAULT_TILE_SIZE = 256;
+    public static final int DEFAULT_MAX_TILES = 128;
+    private static final int MAX_SPARE_TILES = 16;
+
+    private final int tileSize;
+    private final Map<TileKey, BufferedImage> tiles;
+    private final TileKey probe = new TileKey(0, 0, 0);
+    private final Deque<BufferedImage> spare = new ArrayDeque<>(MAX_SPARE_TILES);
+    private long hits;
+    private long misses;
+
+    /**
+     * Identifies a tile by zoom level and position on that level's grid.
+     * Keys stored in the map are never modified; a single mutable probe is
+     * reused for lookups.
+     */
+    private static final class TileKey {
+        double zoom;
+        int col, row;
+
+        TileKey(double zoom, int col, int row) {
+            this.zoom = zoom;
+            this.col = col;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) o;
+            return col == other.col && row == other.row
+                    && Double.doubleToLongBits(zoom) == Double.doubleToLongBits(other.zoom);
+        }
+
+        @Override
+        public int hashCode() {
+            long zoomBits = Double.doubleToLongBits(zoom);
+            return (int) (zoomBits ^ (zoomBits >>> 32)) * 961 + col * 31 + row;
+        }
+    }
+
+    /**
+     * Creates a cache with the default tile size and capacity.
+     */
+    public TileCache() {
+        this(DEFAULT_TILE_SIZE, DEFAULT_MAX_TILES);
+    }
+
+    /**
+     * Creates a cache with the given tile size and capacity.
+     *
+     * @param tileSize The width and height of a tile in pixels
+     * @param maxTiles The number of tiles kept before the least recently used
+     *                 one is evicted
+     */
+    public TileCache(int tileSize, final int maxTiles) {
+        if (tileSize <= 0 || maxTiles <= 0) {
+            throw new IllegalArgumentException("Tile size and capacity must be positive.");
+        }
+        this.tileSize = tileSize;
+        this.tiles = new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TileKey, BufferedImage> eldest) {
+                if (size() > maxTiles) {
+                    recycle(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the width and height of a tile in pixels.
+     *
+     * @return The tile size
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Gets a cached tile and marks it as recently used.
+     *
+     * @param zoom The zoom level
+     * @param col  The tile column
+     * @param row  The tile row
+     * @return The tile, or null if it is not cached
+     */
+    public BufferedImage get(double zoom, int col, int row) {
+        probe.zoom = zoom;
+        probe.col = col;
+        probe.row = row;
+        BufferedImage tile = tiles.get(probe);
+        if (tile != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return tile;
+    }
+
+    /**
+     * Stores a rendered tile.
+     *
+     * @param zoom The zoom level
+     * @param col  The tile column
+     * @param row  The tile row
+     * @param tile The rendered tile
+     */
+    public void put(double zoom, int col, int row, BufferedImage tile) {
+        tiles.put(new TileKey(zoom, col, row), tile);
+    }
+
+    /**
+     * Gets the world area covered by a tile.
+     *
+     * @param zoom The zoom level
+     * @param col  The tile column
+     * @param row  The tile row
+     * @return The world rectangle covered by the tile
+     */
+    public Rectangle worldBoundsOf(double zoom, int col, int row) {
+        int x1 = (int) Math.floor(col * tileSize / zoom);
+        int y1 = (int) Math.floor(row * tileSize / zoom);
+        int x2 = (int) Math.ceil((col + 1) * tileSize / zoom);
+        int y2 = (int) Math.ceil((row + 1) * tileSize / zoom);
+        return new Rectangle(x1, y1, x2 - x1, y2 - y1);
+    }
+
+    /**
+     * Drops every tile whose world area intersects the given area.
+     *
+     * @param worldArea The changed area in world coordinates
+     */
+    public void invalidate(Rectangle worldArea) {
+        Iterator<Map.Entry<TileKey, BufferedImage>> it = tiles.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<TileKey, BufferedImage> entry = it.next();
+            TileKey key = entry.getKey();
+            int x1 = (int) Math.floor(key.col * tileSize / key.zoom);
+            int y1 = (int) Math.floor(key.row * tileSize / key.zoom);
+            int x2 = (int) Math.ceil((key.col + 1) * tileSize / key.zoom);
+            int y2 = (int) Math.ceil((key.row + 1) * tileSize / key.zoom);
+            if (x1 < worldArea.x + worldArea.width && worldArea.x < x2
+                    && y1 < worldArea.y + worldArea.height && worldArea.y < y2) {
+                recycle(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops every tile.
+     */
+    public void clear() {
+        for (BufferedImage tile : tiles.values()) {
+            recycle(tile);
+        }
+        tiles.clear();
+    }
+
+    /**
+     * Gets a raster for a new tile, reusing the raster of a dropped tile when
+     * one is available. Its previous content is undefined.
+     *
+     * @return A tile-sized image
+     */
+    public BufferedImage obtainImage() {
+        BufferedImage image = spare.poll();
+        return image != null ? image : new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private void recycle(BufferedImage tile) {
+        if (tile != null && spare.size() < MAX_SPARE_TILES) {
+            spare.push(tile);
+        }
+    }
+
+    /**
+     * Gets the number of cached tiles.
+     *
+     * @return The tile count
+     */
+    public int size() {
+        return tiles.size();
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache.
+     *
+     * @return The hit count
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that required rendering a tile.
+     *
+     * @return The miss count
+     */
+    public long getMisses() {
+        return misses;
+    }
+}
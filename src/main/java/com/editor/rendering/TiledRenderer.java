@@ -0,0 +1,260 @@
+package com.editor.rendering;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.editor.shapes.Shape;
+
+/**
+ * Draws the scene through a {@link TileCache}: visible tiles are copied from
+ * the cache, and only missing tiles are rendered from the shapes that
+ * intersect them.
+ * When several tiles are missing, for example after a zoom change, they are
+ * rasterized in parallel on a {@link ForkJoinPool}, each into its own image
+ * with its own graphics context. The calling thread waits for the batch and
+ * then composites the tiles, so the scene is never read while it changes.
+ */
+public class TiledRenderer {
+    private final TileCache cache;
+    private final ShapeSource source;
+    private final RenderStats stats;
+    private Color background;
+    private ForkJoinPool pool;
+    private final List<TileJob> missing = new ArrayList<>();
+    private final ThreadLocal<GroupCachingDrawer> drawers = ThreadLocal.withInitial(GroupCachingDrawer::new);
+    private GroupRasterCache groupCache;
+
+    /**
+     * A tile waiting to be rendered, and the result once it is.
+     */
+    private static final class TileJob {
+        final int col, row;
+        BufferedImage image;
+        int drawn, culled;
+
+        TileJob(int col, int row) {
+            this.col = col;
+            this.row = row;
+        }
+    }
+
+    /**
+     * Renders a range of tile jobs, splitting it until one tile remains.
+     */
+    private final class RenderTiles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<TileJob> jobs;
+        private final double zoom;
+        private final int from, to;
+
+        RenderTiles(List<TileJob> jobs, double zoom, int from, int to) {
+            this.jobs = jobs;
+            this.zoom = zoom;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                render(jobs.get(from), zoom);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RenderTiles(jobs, zoom, from, middle), new RenderTiles(jobs, zoom, middle, to));
+        }
+    }
+
+    /**
+     * Creates a tiled renderer that uses one thread per available processor.
+     *
+     * @param cache      The tile cache
+     * @param source     The shapes to render
+     * @param stats      The counters updated for each rendered shape
+     * @param background The background color of the canvas
+     */
+    public TiledRenderer(TileCache cache, ShapeSource source, RenderStats stats, Color background) {
+        this.cache = cache;
+        this.source = source;
+        this.stats = stats;
+        this.background = background;
+        setParallelism(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Sets the number of threads used to rasterize missing tiles. With a
+     * single thread, tiles are rendered on the calling thread.
+     *
+     * @param threads The number of rendering threads
+     */
+    public void setParallelism(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1.");
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * Gets the number of threads used to rasterize missing tiles.
+     *
+     * @return The number of rendering threads
+     */
+    public int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Sets the background color, dropping every cached tile.
+     *
+     * @param background The new background color
+     */
+    public void setBackground(Color background) {
+        this.background = background;
+        cache.clear();
+    }
+
+    /**
+     * Sets the cache shape groups are drawn from. Cached tiles are kept, as
+     * they look the same either way.
+     *
+     * @param groupCache The group cache, or null to draw groups child by child
+     */
+    public void setGroupCache(GroupRasterCache groupCache) {
+        this.groupCache = groupCache;
+    }
+
+    /**
+     * Gets the tile cache.
+     *
+     * @return The tile cache
+     */
+    public TileCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Paints the part of the scene covered by a screen area.
+     *
+     * @param g2d        The screen graphics, not transformed
+     * @param screenClip The area of the whiteboard to paint
+     * @param view       The current view transform
+     */
+    public void paint(Graphics2D g2d, Rectangle screenClip, ViewTransform view) {
+        int tileSize = cache.getTileSize();
+        double zoom = view.getZoom();
+        int scrollX = view.getScrollX();
+        int scrollY = view.getScrollY();
+
+        int firstCol = Math.floorDiv(screenClip.x + scrollX, tileSize);
+        int firstRow = Math.floorDiv(screenClip.y + scrollY, tileSize);
+        int lastCol = Math.floorDiv(screenClip.x + screenClip.width - 1 + scrollX, tileSize);
+        int lastRow = Math.floorDiv(screenClip.y + screenClip.height - 1 + scrollY, tileSize);
+
+        missing.clear();
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                BufferedImage tile = cache.get(zoom, col, row);
+                if (tile != null) {
+                    g2d.drawImage(tile, col * tileSize - scrollX, row * tileSize - scrollY, null);
+                } else {
+                    missing.add(new TileJob(col, row));
+                }
+            }
+        }
+
+        renderAll(missing, zoom);
+        for (TileJob job : missing) {
+            cache.put(zoom, job.col, job.row, job.image);
+            stats.add(job.drawn, job.culled);
+            g2d.drawImage(job.image, job.col * tileSize - scrollX, job.row * tileSize - scrollY, null);
+        }
+        missing.clear();
+    }
+
+    /**
+     * Renders a single tile from the shapes that intersect it.
+     *
+     * @param zoom The zoom level
+     * @param col  The tile column
+     * @param row  The tile row
+     * @return The rendered tile
+     */
+    public BufferedImage renderTile(double zoom, int col, int row) {
+        TileJob job = new TileJob(col, row);
+        job.image = cache.obtainImage();
+        render(job, zoom);
+        stats.add(job.drawn, job.culled);
+        return job.image;
+    }
+
+    /**
+     * Renders every tile of the list, in parallel when a pool is configured.
+     */
+    private void renderAll(List<TileJob> jobs, double zoom) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        for (TileJob job : jobs) {
+            job.image = cache.obtainImage();
+        }
+        if (pool == null || jobs.size() == 1) {
+            for (TileJob job : jobs) {
+                render(job, zoom);
+            }
+        } else {
+            pool.invoke(new RenderTiles(jobs, zoom, 0, jobs.size()));
+        }
+    }
+
+    /**
+     * Rasterizes one tile into the image of its job. Only reads the scene, so
+     * several tiles may be rendered at once.
+     */
+    private void render(TileJob job, double zoom) {
+        int tileSize = cache.getTileSize();
+        Graphics2D g2d = job.image.createGraphics();
+        try {
+            g2d.setColor(background);
+            g2d.fillRect(0, 0, tileSize, tileSize);
+            g2d.translate(-job.col * tileSize, -job.row * tileSize);
+            g2d.scale(zoom, zoom);
+
+            Rectangle worldArea = cache.worldBoundsOf(zoom, job.col, job.row);
+            GroupCachingDrawer drawer = drawers.get();
+            drawer.setGraphics(g2d);
+            drawer.setGroupCache(groupCache);
+            for (Shape shape : source.shapesIntersecting(worldArea)) {
+                if (source.isVisibleIn(shape, worldArea)) {
+                    shape.draw(drawer);
+                    job.drawn++;
+                } else {
+                    job.culled++;
+                }
+            }
+            drawer.flush();
+            drawer.setGraphics(null);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * Stops the rendering threads.
+     */
+    public void dispose() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+}
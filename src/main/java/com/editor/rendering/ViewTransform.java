@@ -0,0 +1,170 @@
+package com.editor.rendering;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+
+/**
+ * Maps world coordinates, in which shapes are stored, to screen coordinates
+ * of the whiteboard. The scroll offset is kept in whole zoomed pixels so that
+ * tiles rendered at a given zoom always land on the pixel grid.
+ */
+public class ViewTransform {
+    public static final double MIN_ZOOM = 0.1;
+    public static final double MAX_ZOOM = 8.0;
+
+    private double zoom = 1.0;
+    private int scrollX = 0;
+    private int scrollY = 0;
+
+    /**
+     * Gets the zoom factor.
+     *
+     * @return The number of screen pixels per world unit
+     */
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Gets the horizontal scroll offset in zoomed pixels.
+     *
+     * @return The horizontal scroll offset
+     */
+    public int getScrollX() {
+        return scrollX;
+    }
+
+    /**
+     * Gets the vertical scroll offset in zoomed pixels.
+     *
+     * @return The vertical scroll offset
+     */
+    public int getScrollY() {
+        return scrollY;
+    }
+
+    /**
+     * Checks whether world and screen coordinates are the same.
+     *
+     * @return true if there is no zoom and no scroll
+     */
+    public boolean isIdentity() {
+        return zoom == 1.0 && scrollX == 0 && scrollY == 0;
+    }
+
+    /**
+     * Converts a screen point to world coordinates.
+     *
+     * @param screenX The x-coordinate on the whiteboard
+     * @param screenY The y-coordinate on the whiteboard
+     * @return The matching world point
+     */
+    public Point toWorld(int screenX, int screenY) {
+        return new Point(
+                (int) Math.floor((screenX + scrollX) / zoom),
+                (int) Math.floor((screenY + scrollY) / zoom));
+    }
+
+    /**
+     * Converts a screen rectangle to the smallest enclosing world rectangle.
+     *
+     * @param screen The rectangle on the whiteboard
+     * @return The matching world rectangle
+     */
+    public Rectangle toWorld(Rectangle screen) {
+        return toWorld(screen, new Rectangle());
+    }
+
+    /**
+     * Converts a screen rectangle to the smallest enclosing world rectangle,
+     * writing the result into an existing rectangle.
+     *
+     * @param screen The rectangle on the whiteboard
+     * @param out    The rectangle receiving the result, may be screen itself
+     * @return The out rectangle
+     */
+    public Rectangle toWorld(Rectangle screen, Rectangle out) {
+        int x1 = (int) Math.floor((screen.x + scrollX) / zoom);
+        int y1 = (int) Math.floor((screen.y + scrollY) / zoom);
+        int x2 = (int) Math.ceil((screen.x + screen.width + scrollX) / zoom);
+        int y2 = (int) Math.ceil((screen.y + screen.height + scrollY) / zoom);
+        out.setBounds(x1, y1, x2 - x1, y2 - y1);
+        return out;
+    }
+
+    /**
+     * Converts a world rectangle to the smallest enclosing screen rectangle.
+     *
+     * @param world The rectangle in world coordinates
+     * @return The matching rectangle on the whiteboard
+     */
+    public Rectangle toScreen(Rectangle world) {
+        return toScreen(world, new Rectangle());
+    }
+
+    /**
+     * Converts a world rectangle to the smallest enclosing screen rectangle,
+     * writing the result into an existing rectangle.
+     *
+     * @param world The rectangle in world coordinates
+     * @param out   The rectangle receiving the result, may be world itself
+     * @return The out rectangle
+     */
+    public Rectangle toScreen(Rectangle world, Rectangle out) {
+        int x1 = (int) Math.floor(world.x * zoom) - scrollX;
+        int y1 = (int) Math.floor(world.y * zoom) - scrollY;
+        int x2 = (int) Math.ceil((world.x + world.width) * zoom) - scrollX;
+        int y2 = (int) Math.ceil((world.y + world.height) * zoom) - scrollY;
+        out.setBounds(x1, y1, x2 - x1, y2 - y1);
+        return out;
+    }
+
+    /**
+     * Applies the transform to a graphics context, so that it can be drawn on
+     * in world coordinates.
+     *
+     * @param g2d The graphics context
+     */
+    public void applyTo(Graphics2D g2d) {
+        g2d.translate(-scrollX, -scrollY);
+        g2d.scale(zoom, zoom);
+    }
+
+    /**
+     * Moves the view so the content follows a drag of the given length.
+     *
+     * @param dx The horizontal drag distance in screen pixels
+     * @param dy The vertical drag distance in screen pixels
+     */
+    public void panBy(int dx, int dy) {
+        scrollX -= dx;
+        scrollY -= dy;
+    }
+
+    /**
+     * Changes the zoom while keeping the world point under the given screen
+     * point in place.
+     *
+     * @param newZoom The requested zoom, clamped to the supported range
+     * @param screenX The x-coordinate of the fixed point on the whiteboard
+     * @param screenY The y-coordinate of the fixed point on the whiteboard
+     */
+    public void zoomAt(double newZoom, int screenX, int screenY) {
+        double clamped = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, newZoom));
+        double worldX = (screenX + scrollX) / zoom;
+        double worldY = (screenY + scrollY) / zoom;
+        zoom = clamped;
+        scrollX = (int) Math.round(worldX * zoom - screenX);
+        scrollY = (int) Math.round(worldY * zoom - screenY);
+    }
+
+    /**
+     * Restores the 1:1 view with no scroll.
+     */
+    public void reset() {
+        zoom = 1.0;
+        scrollX = 0;
+        scrollY = 0;
+    }
+}
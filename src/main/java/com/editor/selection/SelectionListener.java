@@ -0,0 +1,14 @@
+package com.editor.selection;
+
+/**
+ * Listener notified when the content of a {@link SelectionModel} changes.
+ */
+public interface SelectionListener {
+    /**
+     * Called once after each operation that changed the selection, however
+     * many shapes it added or removed.
+     *
+     * @param selection The selection that changed
+     */
+    void selectionChanged(SelectionModel selection);
+}
@@ -0,0 +1,411 @@
+package com.editor.selection;
+
+import java.awt.Rectangle;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import com.editor.shapes.Shape;
+
+/**
+ * The set of selected shapes, in the order they were selected.
+ * Shapes are kept in an array and looked up by identity in a map from shape
+ * to slot, so membership tests and additions take constant time. A removal
+ * clears the slot, and the array is compacted once the whole change is made,
+ * before listeners are notified, so removing k shapes at once costs a
+ * single pass over the selection and reads by position never see a hole.
+ * The model also keeps the selected flag of the shapes in sync, notifies
+ * listeners once per change, and caches the union of the bounds of the
+ * selected shapes until the selection changes or
+ * {@link #invalidateBounds()} is called.
+ */
+public class SelectionModel implements Iterable<Shape> {
+    private final Map<Shape, Integer> slots = new IdentityHashMap<>();
+    private final List<SelectionListener> listeners = new ArrayList<>();
+    private final List<Shape> view = new ListView();
+    private Shape[] items = new Shape[16];
+    private int end;
+    private int modCount;
+    private boolean boundsValid;
+    private final Rectangle bounds = new Rectangle();
+
+    /**
+     * Read-only list view of the selection, without copying.
+     */
+    private final class ListView extends AbstractList<Shape> implements RandomAccess {
+        @Override
+        public Shape get(int i) {
+            return SelectionModel.this.get(i);
+        }
+
+        @Override
+        public int size() {
+            return slots.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return slots.containsKey(o);
+        }
+
+        @Override
+        public Iterator<Shape> iterator() {
+            return SelectionModel.this.iterator();
+        }
+    }
+
+    /**
+     * Adds a listener notified after every change.
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(SelectionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener to remove
+     */
+    public void removeListener(SelectionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Selects a shape, unless it is already selected.
+     *
+     * @param shape The shape to select
+     * @return true if the selection changed
+     */
+    public boolean add(Shape shape) {
+        if (!doAdd(shape)) {
+            return false;
+        }
+        changed();
+        return true;
+    }
+
+    /**
+     * Selects several shapes, skipping those already selected.
+     *
+     * @param shapes The shapes to select
+     * @return true if the selection changed
+     */
+    public boolean addAll(Collection<? extends Shape> shapes) {
+        boolean changed = false;
+        for (Shape shape : shapes) {
+            changed |= doAdd(shape);
+        }
+        if (changed) {
+            changed();
+        }
+        return changed;
+    }
+
+    /**
+     * Deselects a shape.
+     *
+     * @param shape The shape to deselect
+     * @return true if the shape was selected
+     */
+    public boolean remove(Shape shape) {
+        if (!doRemove(shape)) {
+            return false;
+        }
+        changed();
+        return true;
+    }
+
+    /**
+     * Deselects several shapes.
+     *
+     * @param shapes The shapes to deselect
+     * @return true if the selection changed
+     */
+    public boolean removeAll(Collection<? extends Shape> shapes) {
+        boolean changed = false;
+        for (Shape shape : shapes) {
+            changed |= doRemove(shape);
+        }
+        if (changed) {
+            changed();
+        }
+        return changed;
+    }
+
+    /**
+     * Selects a shape if it is not selected, and deselects it otherwise.
+     *
+     * @param shape The shape to toggle
+     * @return true if the shape is now selected
+     */
+    public boolean toggle(Shape shape) {
+        if (shape == null) {
+            return false;
+        }
+        boolean selected = !doRemove(shape) && doAdd(shape);
+        changed();
+        return selected;
+    }
+
+    /**
+     * Toggles several shapes.
+     *
+     * @param shapes The shapes to toggle
+     */
+    public void toggleAll(Collection<? extends Shape> shapes) {
+        if (shapes.isEmpty()) {
+            return;
+        }
+        for (Shape shape : shapes) {
+            if (!doRemove(shape)) {
+                doAdd(shape);
+            }
+        }
+        changed();
+    }
+
+    /**
+     * Replaces the selection with the given shapes.
+     *
+     * @param shapes The shapes to select
+     */
+    public void set(Collection<? extends Shape> shapes) {
+        boolean changed = deselectAll();
+        for (Shape shape : shapes) {
+            changed |= doAdd(shape);
+        }
+        if (changed) {
+            changed();
+        }
+    }
+
+    /**
+     * Replaces the selection with a single shape.
+     *
+     * @param shape The shape to select
+     */
+    public void set(Shape shape) {
+        boolean changed = deselectAll();
+        changed |= doAdd(shape);
+        if (changed) {
+            changed();
+        }
+    }
+
+    /**
+     * Deselects every shape.
+     */
+    public void clear() {
+        if (deselectAll()) {
+            changed();
+        }
+    }
+
+    /**
+     * Checks whether a shape is selected.
+     *
+     * @param shape The shape
+     * @return true if the shape is selected
+     */
+    public boolean contains(Object shape) {
+        return slots.containsKey(shape);
+    }
+
+    /**
+     * Gets the number of selected shapes.
+     *
+     * @return The selection size
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Checks whether nothing is selected.
+     *
+     * @return true if the selection is empty
+     */
+    public boolean isEmpty() {
+        return slots.isEmpty();
+    }
+
+    /**
+     * Gets a selected shape by its position in selection order.
+     *
+     * @param i The position
+     * @return The shape
+     */
+    public Shape get(int i) {
+        if (i < 0 || i >= slots.size()) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + slots.size());
+        }
+        return items[i];
+    }
+
+    /**
+     * Gets a read-only list view of the selection. The view follows later
+     * changes and is not copied; callers that keep it, such as commands,
+     * must copy it themselves.
+     *
+     * @return The selected shapes, in selection order
+     */
+    public List<Shape> asList() {
+        return view;
+    }
+
+    @Override
+    public Iterator<Shape> iterator() {
+        return new Iterator<Shape>() {
+            private int cursor = skipHoles(0);
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < end;
+            }
+
+            @Override
+            public Shape next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (cursor >= end) {
+                    throw new NoSuchElementException();
+                }
+                Shape shape = items[cursor];
+                cursor = skipHoles(cursor + 1);
+                return shape;
+            }
+        };
+    }
+
+    /**
+     * Computes the union of the bounds of the selected shapes, reusing the
+     * previous result if nothing changed since.
+     *
+     * @param out The rectangle receiving the union
+     * @return false if the selection is empty
+     */
+    public boolean getBounds(Rectangle out) {
+        if (slots.isEmpty()) {
+            return false;
+        }
+        if (!boundsValid) {
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < end; i++) {
+                Shape shape = items[i];
+                if (shape != null) {
+                    int x = shape.getBoundsX();
+                    int y = shape.getBoundsY();
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x + shape.getBoundsWidth());
+                    maxY = Math.max(maxY, y + shape.getBoundsHeight());
+                }
+            }
+            bounds.setBounds(minX, minY, maxX - minX, maxY - minY);
+            boundsValid = true;
+        }
+        out.setBounds(bounds);
+        return true;
+    }
+
+    /**
+     * Drops the cached bounds, after selected shapes moved or changed size.
+     */
+    public void invalidateBounds() {
+        boundsValid = false;
+    }
+
+    private boolean doAdd(Shape shape) {
+        if (shape == null || slots.containsKey(shape)) {
+            return false;
+        }
+        if (end == items.length) {
+            if (slots.size() < end / 2) {
+                compact();
+            } else {
+                items = Arrays.copyOf(items, end * 2);
+            }
+        }
+        slots.put(shape, end);
+        items[end++] = shape;
+        shape.setSelected(true);
+        return true;
+    }
+
+    private boolean doRemove(Shape shape) {
+        Integer slot = slots.remove(shape);
+        if (slot == null) {
+            return false;
+        }
+        items[slot] = null;
+        shape.setSelected(false);
+        return true;
+    }
+
+    private boolean deselectAll() {
+        if (slots.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < end; i++) {
+            if (items[i] != null) {
+                items[i].setSelected(false);
+                items[i] = null;
+            }
+        }
+        slots.clear();
+        end = 0;
+        return true;
+    }
+
+    /**
+     * Moves the shapes to the front of the array, closing the holes left by
+     * removals.
+     */
+    private void compact() {
+        if (end == slots.size()) {
+            return;
+        }
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            Shape shape = items[i];
+            if (shape != null) {
+                if (count != i) {
+                    items[count] = shape;
+                    items[i] = null;
+                    slots.put(shape, count);
+                }
+                count++;
+            }
+        }
+        end = count;
+    }
+
+    private int skipHoles(int i) {
+        while (i < end && items[i] == null) {
+            i++;
+        }
+        return i;
+    }
+
+    private void changed() {
+        compact();
+        modCount++;
+        boundsValid = false;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).selectionChanged(this);
+        }
+    }
+}
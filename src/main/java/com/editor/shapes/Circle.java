@@ -2,22 +2,25 @@ package com.editor.shapes;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 
 import com.editor.drawing.Drawer;
 
 /**
  * Represents a circle shape.
  */
-public class Circle implements Shape {
+public class Circle implements Shape, Styled {
     private static final long serialVersionUID = 1L;
 
     private int x;
     private int y;
     private int radius;
-    private Color fillColor = new Color(255, 182, 193); 
-    private Color borderColor = Color.BLACK;
     private double rotation = 0.0;
+    private transient int styleId = StyleTable.DEFAULT_STYLE;
     private boolean selected = false;
+    private transient ShapeGroup parent;
 
     /**
      * Creates a new circle with the specified position and radius.
@@ -48,6 +51,7 @@ public class Circle implements Shape {
      */
     public void setX(int x) {
         this.x = x;
+        changed();
     }
 
     /**
@@ -66,6 +70,7 @@ public class Circle implements Shape {
      */
     public void setY(int y) {
         this.y = y;
+        changed();
     }
 
     /**
@@ -84,6 +89,7 @@ public class Circle implements Shape {
      */
     public void setRadius(int radius) {
         this.radius = radius;
+        changed();
     }
 
     /**
@@ -92,7 +98,7 @@ public class Circle implements Shape {
      * @return The fill color
      */
     public Color getFillColor() {
-        return fillColor;
+        return StyleTable.get(styleId).getFill();
     }
 
     /**
@@ -101,7 +107,8 @@ public class Circle implements Shape {
      * @param fillColor The new fill color
      */
     public void setFillColor(Color fillColor) {
-        this.fillColor = fillColor;
+        this.styleId = StyleTable.intern(StyleTable.get(styleId).withFill(fillColor));
+        changed();
     }
 
     /**
@@ -110,7 +117,7 @@ public class Circle implements Shape {
      * @return The border color
      */
     public Color getBorderColor() {
-        return borderColor;
+        return StyleTable.get(styleId).getBorder();
     }
 
     /**
@@ -120,7 +127,8 @@ public class Circle implements Shape {
      */
     @Override
     public void setBorderColor(Color borderColor) {
-        this.borderColor = borderColor;
+        this.styleId = StyleTable.intern(StyleTable.get(styleId).withBorder(borderColor));
+        changed();
     }
 
     /**
@@ -141,6 +149,7 @@ public class Circle implements Shape {
     @Override
     public void setRotation(double rotation) {
         this.rotation = rotation;
+        changed();
     }
 
     /**
@@ -164,12 +173,14 @@ public class Circle implements Shape {
     public void move(int dx, int dy) {
         x += dx;
         y += dy;
+        changed();
     }
 
     @Override
     public void setPosition(int x, int y) {
         this.x = x + radius;
         this.y = y + radius;
+        changed();
     }
 
     @Override
@@ -177,6 +188,26 @@ public class Circle implements Shape {
         return new Rectangle(x - radius, y - radius, radius * 2, radius * 2);
     }
 
+    @Override
+    public int getBoundsX() {
+        return x - radius;
+    }
+
+    @Override
+    public int getBoundsY() {
+        return y - radius;
+    }
+
+    @Override
+    public int getBoundsWidth() {
+        return radius * 2;
+    }
+
+    @Override
+    public int getBoundsHeight() {
+        return radius * 2;
+    }
+
     @Override
     public void draw(Drawer drawer) {
         drawer.drawCircle(this);
@@ -192,12 +223,12 @@ public class Circle implements Shape {
     public Shape clone() {
         try {
             Circle clone = (Circle) super.clone();
+            clone.parent = null;
             return clone;
         } catch (CloneNotSupportedException e) {
             Circle clone = new Circle(x, y, radius);
             clone.setSelected(selected);
-            clone.setFillColor(fillColor);
-            clone.setBorderColor(borderColor);
+            clone.styleId = styleId;
             clone.setRotation(rotation);
             return clone;
         }
@@ -221,6 +252,7 @@ public class Circle implements Shape {
     @Override
     public void setSelected(boolean selected) {
         this.selected = selected;
+        changed();
     }
 
     /**
@@ -235,4 +267,42 @@ public class Circle implements Shape {
         double distance = Math.sqrt(Math.pow(x - this.x, 2) + Math.pow(y - this.y, 2));
         return distance <= radius;
     }
+
+    @Override
+    public void setParent(ShapeGroup parent) {
+        this.parent = parent;
+    }
+
+    private void changed() {
+        if (parent != null) {
+            parent.childChanged();
+        }
+    }
+
+    @Override
+    public int getStyleId() {
+        return styleId;
+    }
+
+    @Override
+    public void setStyleId(int styleId) {
+        StyleTable.get(styleId);
+        this.styleId = styleId;
+        changed();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(StyleTable.get(styleId));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        x = fields.get("x", 0);
+        y = fields.get("y", 0);
+        radius = fields.get("radius", 0);
+        selected = fields.get("selected", false);
+        rotation = fields.get("rotation", 0.0);
+        styleId = StyleTable.intern(StyleTable.readStyle(in, fields));
+    }
 }
@@ -8,7 +8,8 @@ import com.editor.memento.CompositeRegistryMemento;
 
 /**
  * Registry for ShapeGroup prototypes.
- * Stores prototype instances (groups) and creates new groups by cloning them.
+ * Stores prototype instances (groups) and creates new groups that refer to
+ * them. Registered prototypes must not be modified afterwards.
  */
 public class CompositeShapePrototypeRegistry implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -30,7 +31,8 @@ public class CompositeShapePrototypeRegistry implements Serializable {
     }
 
     /**
-     * Creates a new ShapeGroup by cloning the prototype with the given key.
+     * Creates a new group from the prototype with the given key. The group is a
+     * {@link SymbolInstance} sharing the prototype's shapes until it is edited.
      * The new group is positioned such that its bounding box's top-left corner is
      * at (x, y).
      *
@@ -48,19 +50,11 @@ public class CompositeShapePrototypeRegistry implements Serializable {
             throw new IllegalArgumentException("No group prototype registered with key: " + key);
         }
 
-        
-        ShapeGroup clone = (ShapeGroup) prototype.clone();
-
-        
-        Rectangle bounds = clone.getBounds();
-        int deltaX = x - bounds.getX();
-        int deltaY = y - bounds.getY();
-
-        
-        clone.move(deltaX, deltaY);
+        SymbolInstance instance = new SymbolInstance(key, prototype,
+                x - prototype.getBoundsX(), y - prototype.getBoundsY());
 
         System.out.println("[CompositeRegistry] Created group from key: " + key + " at (" + x + ", " + y + ")");
-        return clone;
+        return instance;
     }
 
     /**
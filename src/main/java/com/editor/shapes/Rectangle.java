@@ -1,18 +1,20 @@
 package com.editor.shapes;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 
 import com.editor.drawing.Drawer;
 
-public class Rectangle implements Shape {
+public class Rectangle implements Shape, Styled {
     private static final long serialVersionUID = 1L;
     private int x, y;
-    private final int width, height;
+    private int width, height;
     private boolean selected;
-    private Color fillColor = new Color(255, 182, 193); 
-    private Color borderColor = Color.BLACK; 
     private double rotation = 0.0; 
-    private int borderRadius = 0; 
+    private transient int styleId = StyleTable.DEFAULT_STYLE;
+    private transient ShapeGroup parent;
 
     public Rectangle(int x, int y, int width, int height) {
         this.x = x;
@@ -30,12 +32,14 @@ public class Rectangle implements Shape {
     public void move(int dx, int dy) {
         this.x += dx;
         this.y += dy;
+        changed();
     }
 
     @Override
     public void setPosition(int x, int y) {
         this.x = x;
         this.y = y;
+        changed();
     }
 
     @Override
@@ -47,6 +51,7 @@ public class Rectangle implements Shape {
     @Override
     public void setSelected(boolean selected) {
         this.selected = selected;
+        changed();
     }
 
     @Override
@@ -59,11 +64,32 @@ public class Rectangle implements Shape {
         return new Rectangle(x, y, width, height);
     }
 
+    @Override
+    public int getBoundsX() {
+        return x;
+    }
+
+    @Override
+    public int getBoundsY() {
+        return y;
+    }
+
+    @Override
+    public int getBoundsWidth() {
+        return width;
+    }
+
+    @Override
+    public int getBoundsHeight() {
+        return height;
+    }
+
     @Override
     @SuppressWarnings("CloneDeclaresCloneNotSupported")
     public Shape clone() {
         try {
             Rectangle clone = (Rectangle) super.clone();
+            clone.parent = null;
             return clone;
         } catch (CloneNotSupportedException e) {
             
@@ -77,7 +103,8 @@ public class Rectangle implements Shape {
      * @param color The new fill color
      */
     public void setFillColor(Color color) {
-        this.fillColor = color;
+        this.styleId = StyleTable.intern(StyleTable.get(styleId).withFill(color));
+        changed();
     }
 
     /**
@@ -87,7 +114,8 @@ public class Rectangle implements Shape {
      */
     @Override
     public void setBorderColor(Color color) {
-        this.borderColor = color;
+        this.styleId = StyleTable.intern(StyleTable.get(styleId).withBorder(color));
+        changed();
     }
 
     /**
@@ -96,7 +124,7 @@ public class Rectangle implements Shape {
      * @return The current fill color
      */
     public Color getFillColor() {
-        return fillColor;
+        return StyleTable.get(styleId).getFill();
     }
 
     /**
@@ -105,7 +133,7 @@ public class Rectangle implements Shape {
      * @return The current border color
      */
     public Color getBorderColor() {
-        return borderColor;
+        return StyleTable.get(styleId).getBorder();
     }
 
     /**
@@ -116,6 +144,7 @@ public class Rectangle implements Shape {
     @Override
     public void setRotation(double degrees) {
         this.rotation = degrees;
+        changed();
     }
 
     /**
@@ -150,7 +179,7 @@ public class Rectangle implements Shape {
      * @return The current border radius
      */
     public int getBorderRadius() {
-        return borderRadius;
+        return StyleTable.get(styleId).getBorderRadius();
     }
 
     /**
@@ -159,6 +188,46 @@ public class Rectangle implements Shape {
      * @param radius The new border radius
      */
     public void setBorderRadius(int radius) {
-        this.borderRadius = radius;
+        this.styleId = StyleTable.intern(StyleTable.get(styleId).withBorderRadius(radius));
+        changed();
+    }
+
+    @Override
+    public int getStyleId() {
+        return styleId;
+    }
+
+    @Override
+    public void setStyleId(int styleId) {
+        StyleTable.get(styleId);
+        this.styleId = styleId;
+        changed();
+    }
+
+    @Override
+    public void setParent(ShapeGroup parent) {
+        this.parent = parent;
+    }
+
+    private void changed() {
+        if (parent != null) {
+            parent.childChanged();
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(StyleTable.get(styleId));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        x = fields.get("x", 0);
+        y = fields.get("y", 0);
+        width = fields.get("width", 0);
+        height = fields.get("height", 0);
+        selected = fields.get("selected", false);
+        rotation = fields.get("rotation", 0.0);
+        styleId = StyleTable.intern(StyleTable.readStyle(in, fields));
     }
 }
@@ -2,21 +2,48 @@ package com.editor.shapes;
 
 import java.awt.Color;
 import java.awt.Polygon;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.editor.drawing.Drawer;
 
 /**
  * Represents a regular polygon with a specified number of sides and radius.
+ * The vertices are computed once per position from unit-circle tables shared
+ * by every polygon with the same number of sides, and reused for painting
+ * and hit-testing until the polygon moves.
  */
-public class RegularPolygon implements Shape {
+public class RegularPolygon implements Shape, Styled {
     private static final long serialVersionUID = 1L;
+    private static final Map<Integer, double[]> UNIT_CIRCLES = new ConcurrentHashMap<>();
+
     private int x, y;
-    private final int radius;
-    private final int numberOfSides;
+    private int radius;
+    private int numberOfSides;
     private boolean selected;
-    private Color fillColor = new Color(255, 182, 193); 
-    private Color borderColor = Color.BLACK;
     private double rotation = 0.0;
+    private transient int styleId = StyleTable.DEFAULT_STYLE;
+    private transient Geometry geometry;
+    private transient ShapeGroup parent;
+
+    /**
+     * Unrotated vertices for the current position. Published as a whole so
+     * that tiles rendered in parallel never see a half-built polygon.
+     */
+    private static final class Geometry {
+        final int[] xPoints;
+        final int[] yPoints;
+        final Polygon polygon;
+
+        Geometry(int[] xPoints, int[] yPoints) {
+            this.xPoints = xPoints;
+            this.yPoints = yPoints;
+            this.polygon = new Polygon(xPoints, yPoints, xPoints.length);
+        }
+    }
 
     /**
      * Creates a new regular polygon.
@@ -42,32 +69,79 @@ public class RegularPolygon implements Shape {
     public void move(int dx, int dy) {
         this.x += dx;
         this.y += dy;
+        geometry = null;
+        changed();
     }
 
     @Override
     public void setPosition(int x, int y) {
         this.x = x + radius;
         this.y = y + radius;
+        geometry = null;
+        changed();
     }
 
     @Override
     public boolean isSelected(int testX, int testY) {
-        int[] xPoints = new int[numberOfSides];
-        int[] yPoints = new int[numberOfSides];
-        double angleStep = 2 * Math.PI / numberOfSides;
+        return geometry().polygon.contains(testX, testY);
+    }
+
+    /**
+     * Gets the x-coordinates of the unrotated vertices. The array is cached
+     * and shared, and must not be modified.
+     *
+     * @return The x-coordinates, one per side
+     */
+    public int[] getXPoints() {
+        return geometry().xPoints;
+    }
 
-        for (int i = 0; i < numberOfSides; i++) {
-            xPoints[i] = (int) (x + radius * Math.cos(i * angleStep));
-            yPoints[i] = (int) (y + radius * Math.sin(i * angleStep));
+    /**
+     * Gets the y-coordinates of the unrotated vertices. The array is cached
+     * and shared, and must not be modified.
+     *
+     * @return The y-coordinates, one per side
+     */
+    public int[] getYPoints() {
+        return geometry().yPoints;
+    }
+
+    private Geometry geometry() {
+        Geometry current = geometry;
+        if (current == null) {
+            double[] unit = unitCircle(numberOfSides);
+            int[] xPoints = new int[numberOfSides];
+            int[] yPoints = new int[numberOfSides];
+            for (int i = 0; i < numberOfSides; i++) {
+                xPoints[i] = (int) (x + radius * unit[2 * i]);
+                yPoints[i] = (int) (y + radius * unit[2 * i + 1]);
+            }
+            current = new Geometry(xPoints, yPoints);
+            geometry = current;
         }
+        return current;
+    }
 
-        Polygon polygon = new Polygon(xPoints, yPoints, numberOfSides);
-        return polygon.contains(testX, testY);
+    /**
+     * Gets the cosine and sine of each vertex angle for a number of sides,
+     * interleaved, computing them on first use.
+     */
+    private static double[] unitCircle(int sides) {
+        return UNIT_CIRCLES.computeIfAbsent(sides, n -> {
+            double[] unit = new double[2 * n];
+            double angleStep = 2 * Math.PI / n;
+            for (int i = 0; i < n; i++) {
+                unit[2 * i] = Math.cos(i * angleStep);
+                unit[2 * i + 1] = Math.sin(i * angleStep);
+            }
+            return unit;
+        });
     }
 
     @Override
     public void setSelected(boolean selected) {
         this.selected = selected;
+        changed();
     }
 
     @Override
@@ -85,17 +159,38 @@ public class RegularPolygon implements Shape {
         return new Rectangle(minX, minY, width, height);
     }
 
+    @Override
+    public int getBoundsX() {
+        return x - radius;
+    }
+
+    @Override
+    public int getBoundsY() {
+        return y - radius;
+    }
+
+    @Override
+    public int getBoundsWidth() {
+        return radius * 2;
+    }
+
+    @Override
+    public int getBoundsHeight() {
+        return radius * 2;
+    }
+
     @Override
     @SuppressWarnings("CloneDeclaresCloneNotSupported")
     public Shape clone() {
         try {
             RegularPolygon clone = (RegularPolygon) super.clone();
+            clone.geometry = null;
+            clone.parent = null;
             return clone;
         } catch (CloneNotSupportedException e) {
             RegularPolygon clone = new RegularPolygon(x, y, radius, numberOfSides);
             clone.setSelected(selected);
-            clone.setFillColor(fillColor);
-            clone.setBorderColor(borderColor);
+            clone.styleId = styleId;
             clone.setRotation(rotation);
             return clone;
         }
@@ -143,7 +238,8 @@ public class RegularPolygon implements Shape {
      * @param color The new fill color
      */
     public void setFillColor(Color color) {
-        this.fillColor = color;
+        this.styleId = StyleTable.intern(StyleTable.get(styleId).withFill(color));
+        changed();
     }
 
     /**
@@ -153,7 +249,8 @@ public class RegularPolygon implements Shape {
      */
     @Override
     public void setBorderColor(Color color) {
-        this.borderColor = color;
+        this.styleId = StyleTable.intern(StyleTable.get(styleId).withBorder(color));
+        changed();
     }
 
     /**
@@ -162,7 +259,7 @@ public class RegularPolygon implements Shape {
      * @return The current fill color
      */
     public Color getFillColor() {
-        return fillColor;
+        return StyleTable.get(styleId).getFill();
     }
 
     /**
@@ -171,7 +268,7 @@ public class RegularPolygon implements Shape {
      * @return The current border color
      */
     public Color getBorderColor() {
-        return borderColor;
+        return StyleTable.get(styleId).getBorder();
     }
 
     /**
@@ -182,6 +279,7 @@ public class RegularPolygon implements Shape {
     @Override
     public void setRotation(double degrees) {
         this.rotation = degrees;
+        changed();
     }
 
     /**
@@ -193,4 +291,43 @@ public class RegularPolygon implements Shape {
     public double getRotation() {
         return rotation;
     }
+
+    @Override
+    public void setParent(ShapeGroup parent) {
+        this.parent = parent;
+    }
+
+    private void changed() {
+        if (parent != null) {
+            parent.childChanged();
+        }
+    }
+
+    @Override
+    public int getStyleId() {
+        return styleId;
+    }
+
+    @Override
+    public void setStyleId(int styleId) {
+        StyleTable.get(styleId);
+        this.styleId = styleId;
+        changed();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(StyleTable.get(styleId));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        x = fields.get("x", 0);
+        y = fields.get("y", 0);
+        radius = fields.get("radius", 0);
+        numberOfSides = fields.get("numberOfSides", 0);
+        selected = fields.get("selected", false);
+        rotation = fields.get("rotation", 0.0);
+        styleId = StyleTable.intern(StyleTable.readStyle(in, fields));
+    }
 }
@@ -19,6 +19,51 @@ public interface Shape extends Cloneable, Serializable {
 
     Rectangle getBounds(); 
 
+    /**
+     * Gets the left edge of the bounds without allocating a rectangle.
+     *
+     * @return The x-coordinate of the bounds
+     */
+    default int getBoundsX() {
+        return getBounds().getX();
+    }
+
+    /**
+     * Gets the top edge of the bounds without allocating a rectangle.
+     *
+     * @return The y-coordinate of the bounds
+     */
+    default int getBoundsY() {
+        return getBounds().getY();
+    }
+
+    /**
+     * Gets the width of the bounds without allocating a rectangle.
+     *
+     * @return The width of the bounds
+     */
+    default int getBoundsWidth() {
+        return getBounds().getWidth();
+    }
+
+    /**
+     * Gets the height of the bounds without allocating a rectangle.
+     *
+     * @return The height of the bounds
+     */
+    default int getBoundsHeight() {
+        return getBounds().getHeight();
+    }
+
+    /**
+     * Attaches this shape to the group containing it, so that the group is
+     * told when the shape changes. Called by {@link ShapeGroup}.
+     *
+     * @param parent The containing group, or null when detached
+     */
+    default void setParent(ShapeGroup parent) {
+    }
+
     
     void setBorderColor(java.awt.Color color); 
 
@@ -27,6 +72,31 @@ public interface Shape extends Cloneable, Serializable {
 
     double getRotation(); 
 
+    /**
+     * Puts this shape back in the state of a copy made earlier with
+     * {@link #clone()}, keeping its identity so that the commands holding
+     * it stay valid. Restores what commands change: rotation, style and
+     * position, and the border color and children of groups.
+     *
+     * @param record The earlier copy of this shape
+     */
+    default void restoreState(Shape record) {
+        if (this instanceof Styled && record instanceof Styled) {
+            int styleId = ((Styled) record).getStyleId();
+            if (((Styled) this).getStyleId() != styleId) {
+                ((Styled) this).setStyleId(styleId);
+            }
+        }
+        if (getRotation() != record.getRotation()) {
+            setRotation(record.getRotation());
+        }
+        int dx = record.getBoundsX() - getBoundsX();
+        int dy = record.getBoundsY() - getBoundsY();
+        if (dx != 0 || dy != 0) {
+            move(dx, dy);
+        }
+    }
+
     /**
      * Creates a deep clone of this shape.
      *
@@ -1,6 +1,8 @@
 package com.editor.shapes;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -9,6 +11,9 @@ import com.editor.drawing.Drawer;
 /**
  * Represents a group of shapes that can be manipulated as a single entity.
  * Implements Serializable to allow saving/loading state.
+ * The bounds are cached and only recomputed after a child changed; children
+ * report their changes to the group, which passes them on to its own parent,
+ * so nested groups answer bounds queries without walking their subtree.
  */
 public class ShapeGroup implements Shape { 
     private static final long serialVersionUID = 1L; 
@@ -16,6 +21,11 @@ public class ShapeGroup implements Shape {
     private boolean selected;
     private Color borderColor = Color.BLACK;
     private double rotation = 0.0; 
+    private transient ShapeGroup parent;
+    private transient long version;
+    private transient boolean updating;
+    private transient boolean boundsValid;
+    private transient int minX, minY, maxX, maxY;
 
     /**
      * Creates a new empty shape group.
@@ -29,7 +39,9 @@ public class ShapeGroup implements Shape {
      * @param shapes The shapes to include in the group
      */
     public ShapeGroup(List<Shape> shapes) {
-        this.shapes.addAll(shapes);
+        for (Shape shape : shapes) {
+            addShape(shape);
+        }
     }
 
     /**
@@ -39,6 +51,8 @@ public class ShapeGroup implements Shape {
      */
     public void addShape(Shape shape) {
         shapes.add(shape);
+        shape.setParent(this);
+        changed();
     }
 
     /**
@@ -48,7 +62,49 @@ public class ShapeGroup implements Shape {
      * @return true if the shape was removed, false otherwise
      */
     public boolean removeShape(Shape shape) {
-        return shapes.remove(shape);
+        if (!shapes.remove(shape)) {
+            return false;
+        }
+        shape.setParent(null);
+        changed();
+        return true;
+    }
+
+    /**
+     * Gets a counter that is incremented every time the group or one of its
+     * descendants changes. Callers caching anything derived from the group
+     * can compare it with the value they saw when they built their cache.
+     *
+     * @return The current version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setParent(ShapeGroup parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Called by a child after it changed. Changes made by the group itself to
+     * all of its children are reported once, when the group is done.
+     */
+    void childChanged() {
+        if (!updating) {
+            changed();
+        }
+    }
+
+    /**
+     * Drops the cached bounds, bumps the version and tells the parent.
+     */
+    void changed() {
+        boundsValid = false;
+        version++;
+        if (parent != null) {
+            parent.childChanged();
+        }
     }
 
     /**
@@ -62,7 +118,15 @@ public class ShapeGroup implements Shape {
 
     @Override
     public void draw(Drawer drawer) {
-        
+        drawer.drawGroup(this);
+    }
+
+    /**
+     * Draws every child of the group, back to front.
+     *
+     * @param drawer The drawer to draw with
+     */
+    public void drawChildren(Drawer drawer) {
         for (Shape shape : shapes) {
             shape.draw(drawer);
         }
@@ -70,21 +134,30 @@ public class ShapeGroup implements Shape {
 
     @Override
     public void move(int dx, int dy) {
-        
-        for (Shape shape : shapes) {
-            shape.move(dx, dy);
+        updating = true;
+        try {
+            for (Shape shape : shapes) {
+                shape.move(dx, dy);
+            }
+        } finally {
+            updating = false;
+        }
+
+        if (boundsValid) {
+            minX += dx;
+            minY += dy;
+            maxX += dx;
+            maxY += dy;
+        }
+        version++;
+        if (parent != null) {
+            parent.childChanged();
         }
     }
 
     @Override
     public void setPosition(int x, int y) {
-        
-        Rectangle bounds = getBounds();
-        int dx = x - bounds.getX();
-        int dy = y - bounds.getY();
-
-        
-        move(dx, dy);
+        move(x - getBoundsX(), y - getBoundsY());
     }
 
     @Override
@@ -102,10 +175,15 @@ public class ShapeGroup implements Shape {
     public void setSelected(boolean selected) {
         this.selected = selected;
 
-        
-        for (Shape shape : shapes) {
-            shape.setSelected(selected);
+        updating = true;
+        try {
+            for (Shape shape : shapes) {
+                shape.setSelected(selected);
+            }
+        } finally {
+            updating = false;
         }
+        changed();
     }
 
     @Override
@@ -115,27 +193,57 @@ public class ShapeGroup implements Shape {
 
     @Override
     public Rectangle getBounds() {
-        if (shapes.isEmpty()) {
-            return new Rectangle(0, 0, 0, 0);
-        }
+        validateBounds();
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
 
-        
-        Rectangle bounds = shapes.get(0).getBounds();
-        int minX = bounds.getX();
-        int minY = bounds.getY();
-        int maxX = minX + bounds.getWidth();
-        int maxY = minY + bounds.getHeight();
+    @Override
+    public int getBoundsX() {
+        validateBounds();
+        return minX;
+    }
 
-        
-        for (int i = 1; i < shapes.size(); i++) {
-            Rectangle shapeBounds = shapes.get(i).getBounds();
-            minX = Math.min(minX, shapeBounds.getX());
-            minY = Math.min(minY, shapeBounds.getY());
-            maxX = Math.max(maxX, shapeBounds.getX() + shapeBounds.getWidth());
-            maxY = Math.max(maxY, shapeBounds.getY() + shapeBounds.getHeight());
-        }
+    @Override
+    public int getBoundsY() {
+        validateBounds();
+        return minY;
+    }
 
-        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    @Override
+    public int getBoundsWidth() {
+        validateBounds();
+        return maxX - minX;
+    }
+
+    @Override
+    public int getBoundsHeight() {
+        validateBounds();
+        return maxY - minY;
+    }
+
+    /**
+     * Recomputes the union of the children's bounds if a child changed since
+     * the last query. An empty group has empty bounds at the origin.
+     */
+    private void validateBounds() {
+        if (boundsValid) {
+            return;
+        }
+        if (shapes.isEmpty()) {
+            minX = minY = maxX = maxY = 0;
+        } else {
+            minX = minY = Integer.MAX_VALUE;
+            maxX = maxY = Integer.MIN_VALUE;
+            for (Shape shape : shapes) {
+                int x = shape.getBoundsX();
+                int y = shape.getBoundsY();
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x + shape.getBoundsWidth());
+                maxY = Math.max(maxY, y + shape.getBoundsHeight());
+            }
+        }
+        boundsValid = true;
     }
 
     @Override
@@ -147,6 +255,7 @@ public class ShapeGroup implements Shape {
 
             
             clone.shapes = new ArrayList<>();
+            clone.parent = null;
 
             
             for (Shape shape : shapes) {
@@ -171,6 +280,7 @@ public class ShapeGroup implements Shape {
     @Override
     public void setBorderColor(Color color) {
         this.borderColor = color;
+        changed();
     }
 
     /**
@@ -191,10 +301,16 @@ public class ShapeGroup implements Shape {
     @Override
     public void setRotation(double degrees) {
         this.rotation = degrees;
-        
-        for (Shape shape : shapes) {
-            shape.setRotation(degrees);
+
+        updating = true;
+        try {
+            for (Shape shape : shapes) {
+                shape.setRotation(degrees);
+            }
+        } finally {
+            updating = false;
         }
+        changed();
     }
 
     /**
@@ -206,4 +322,42 @@ public class ShapeGroup implements Shape {
     public double getRotation() {
         return rotation;
     }
+
+    @Override
+    public void restoreState(Shape record) {
+        ShapeGroup group = (ShapeGroup) record;
+        restoreState(group.shapes, group.rotation, group.borderColor);
+    }
+
+    /**
+     * Restores the rotation, the border color and, one by one, the children
+     * of the group. The group keeps its own children, which must match the
+     * recorded ones.
+     */
+    void restoreState(List<Shape> records, double recordRotation, Color recordBorderColor) {
+        if (records.size() != shapes.size()) {
+            throw new IllegalArgumentException(
+                    "Group has " + shapes.size() + " shapes but its record has " + records.size());
+        }
+        if (rotation != recordRotation) {
+            setRotation(recordRotation);
+        }
+        updating = true;
+        try {
+            for (int i = 0; i < shapes.size(); i++) {
+                shapes.get(i).restoreState(records.get(i));
+            }
+        } finally {
+            updating = false;
+        }
+        borderColor = recordBorderColor;
+        changed();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (Shape shape : shapes) {
+            shape.setParent(this);
+        }
+    }
 }
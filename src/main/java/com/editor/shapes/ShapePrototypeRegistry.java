@@ -7,7 +7,8 @@ import com.editor.memento.PrototypeRegistryMemento;
 
 /**
  * Registry for shape prototypes using the Prototype pattern.
- * Stores prototype instances and creates new shapes by cloning them.
+ * Stores prototype instances and creates new shapes from them. Registered
+ * prototypes must not be modified afterwards.
  */
 public class ShapePrototypeRegistry {
     private final Map<String, Shape> prototypes = new HashMap<>();
@@ -23,7 +24,12 @@ public class ShapePrototypeRegistry {
     }
 
     /**
-     * Creates a new shape by cloning the prototype with the given key.
+     * Creates a new shape from the prototype with the given key. Group
+     * prototypes are placed as a {@link SymbolInstance} sharing the
+     * prototype's shapes until it is edited, like the composite registry
+     * does. Other prototypes are cloned: a single shape only holds its
+     * position, size and interned style, so a clone is already as small as
+     * anything that could refer to the prototype.
      *
      * @param key The key of the prototype to clone
      * @param x   The x-coordinate to position the new shape
@@ -37,6 +43,16 @@ public class ShapePrototypeRegistry {
             throw new IllegalArgumentException("No prototype registered with key: " + key);
         }
 
+        if (prototype instanceof ShapeGroup) {
+            ShapeGroup group = (ShapeGroup) prototype;
+            String prototypeKey = key;
+            if (group instanceof SymbolInstance && ((SymbolInstance) group).isShared()) {
+                prototypeKey = ((SymbolInstance) group).getPrototypeKey();
+                group = ((SymbolInstance) group).getPrototype();
+            }
+            return new SymbolInstance(prototypeKey, group, x - group.getBoundsX(), y - group.getBoundsY());
+        }
+
         
         Shape clone = prototype.clone();
 
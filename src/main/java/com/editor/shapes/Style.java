@@ -0,0 +1,93 @@
+package com.editor.shapes;
+
+import java.awt.Color;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Immutable appearance shared by shapes: fill and border colors, and the
+ * corner radius of rectangles. Styles are interned in the
+ * {@link StyleTable} and referenced by shapes through their ID.
+ */
+public final class Style implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Color fill;
+    private final Color border;
+    private final int borderRadius;
+
+    /**
+     * Creates a style.
+     *
+     * @param fill         The fill color
+     * @param border       The border color
+     * @param borderRadius The corner radius, used by rectangles only
+     */
+    public Style(Color fill, Color border, int borderRadius) {
+        this.fill = fill;
+        this.border = border;
+        this.borderRadius = borderRadius;
+    }
+
+    public Color getFill() {
+        return fill;
+    }
+
+    public Color getBorder() {
+        return border;
+    }
+
+    public int getBorderRadius() {
+        return borderRadius;
+    }
+
+    /**
+     * Gets a copy of this style with another fill color.
+     *
+     * @param fill The new fill color
+     * @return The new style
+     */
+    public Style withFill(Color fill) {
+        return new Style(fill, border, borderRadius);
+    }
+
+    /**
+     * Gets a copy of this style with another border color.
+     *
+     * @param border The new border color
+     * @return The new style
+     */
+    public Style withBorder(Color border) {
+        return new Style(fill, border, borderRadius);
+    }
+
+    /**
+     * Gets a copy of this style with another corner radius.
+     *
+     * @param borderRadius The new corner radius
+     * @return The new style
+     */
+    public Style withBorderRadius(int borderRadius) {
+        return new Style(fill, border, borderRadius);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Style)) {
+            return false;
+        }
+        Style other = (Style) o;
+        return borderRadius == other.borderRadius && Objects.equals(fill, other.fill)
+                && Objects.equals(border, other.border);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fill, border, borderRadius);
+    }
+
+    @Override
+    public String toString() {
+        return "Style[fill=" + fill + ", border=" + border + ", borderRadius=" + borderRadius + "]";
+    }
+}
@@ -0,0 +1,98 @@
+package com.editor.shapes;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Table of every style in use, shared by all shapes. Each distinct style is
+ * stored once and identified by a small integer, so shapes keep an int
+ * instead of their own color objects, and restyling many shapes means
+ * interning one style and assigning its ID.
+ * IDs are only valid within the running application; shapes save the style
+ * itself and intern it again when loaded. Styles are never removed.
+ * Lookups may run on several threads while styles are being added.
+ */
+public final class StyleTable {
+    /**
+     * ID of the default style: light pink fill, black border, square corners.
+     */
+    public static final int DEFAULT_STYLE = 0;
+
+    private static final Map<Style, Integer> IDS = new HashMap<>();
+    private static volatile Style[] styles = new Style[16];
+    private static int count;
+
+    static {
+        intern(new Style(new Color(255, 182, 193), Color.BLACK, 0));
+    }
+
+    private StyleTable() {
+    }
+
+    /**
+     * Gets the ID of a style, adding it to the table if it is new.
+     *
+     * @param style The style
+     * @return The ID of the style
+     */
+    public static synchronized int intern(Style style) {
+        Integer id = IDS.get(style);
+        if (id != null) {
+            return id;
+        }
+        Style[] current = styles;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, count * 2);
+        }
+        current[count] = style;
+        styles = current;
+        IDS.put(style, count);
+        return count++;
+    }
+
+    /**
+     * Gets a style by its ID.
+     *
+     * @param id The style ID
+     * @return The style
+     * @throws IllegalArgumentException if no style has this ID
+     */
+    public static Style get(int id) {
+        Style[] current = styles;
+        Style style = id >= 0 && id < current.length ? current[id] : null;
+        if (style == null) {
+            throw new IllegalArgumentException("Unknown style ID: " + id);
+        }
+        return style;
+    }
+
+    /**
+     * Reads the style a shape saved after its fields. Shapes saved before
+     * styles were shared kept their colors and corner radius in fields of
+     * their own, which are used instead.
+     */
+    static Style readStyle(ObjectInputStream in, ObjectInputStream.GetField fields)
+            throws IOException, ClassNotFoundException {
+        if (fields.getObjectStreamClass().getField("fillColor") == null) {
+            return (Style) in.readObject();
+        }
+        Style defaults = get(DEFAULT_STYLE);
+        int borderRadius = fields.getObjectStreamClass().getField("borderRadius") == null ? 0
+                : fields.get("borderRadius", 0);
+        return new Style((Color) fields.get("fillColor", defaults.getFill()),
+                (Color) fields.get("borderColor", defaults.getBorder()), borderRadius);
+    }
+
+    /**
+     * Gets the number of distinct styles.
+     *
+     * @return The number of styles in the table
+     */
+    public static synchronized int size() {
+        return count;
+    }
+}
@@ -0,0 +1,20 @@
+package com.editor.shapes;
+
+/**
+ * A shape whose colors and corner radius come from the {@link StyleTable}.
+ */
+public interface Styled {
+    /**
+     * Gets the ID of the style of this shape.
+     *
+     * @return The style ID
+     */
+    int getStyleId();
+
+    /**
+     * Gives this shape another style.
+     *
+     * @param styleId The ID of the new style
+     */
+    void setStyleId(int styleId);
+}
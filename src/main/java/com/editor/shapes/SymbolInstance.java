@@ -0,0 +1,252 @@
+package com.editor.shapes;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.editor.drawing.Drawer;
+
+/**
+ * A placed copy of a composite prototype that shares the prototype's shapes
+ * instead of cloning them. The instance only stores the registry key, a
+ * reference to the prototype and its own offset, so placing the same
+ * composite many times costs a few fields per placement.
+ * Drawing, hit-testing and bounds go through the prototype, shifted by the
+ * offset. Anything that changes the shapes themselves (colors, rotation,
+ * adding or removing children, or taking the children out to ungroup) first
+ * turns the instance into a regular group holding its own deep copy.
+ * Moving and selecting do not. The prototype must not change while
+ * instances refer to it.
+ */
+public class SymbolInstance extends ShapeGroup {
+    private static final long serialVersionUID = 1L;
+
+    private final String prototypeKey;
+    private ShapeGroup prototype;
+    private int offsetX, offsetY;
+
+    /**
+     * Creates an instance of a prototype.
+     *
+     * @param prototypeKey The registry key of the prototype
+     * @param prototype    The prototype, shared and never modified
+     * @param offsetX      The horizontal offset from the prototype
+     * @param offsetY      The vertical offset from the prototype
+     */
+    public SymbolInstance(String prototypeKey, ShapeGroup prototype, int offsetX, int offsetY) {
+        this.prototypeKey = prototypeKey;
+        this.prototype = prototype;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+    }
+
+    /**
+     * Gets the registry key of the prototype this instance was placed from.
+     *
+     * @return The prototype key
+     */
+    public String getPrototypeKey() {
+        return prototypeKey;
+    }
+
+    /**
+     * Gets the shared prototype.
+     *
+     * @return The prototype, or null once the instance has its own shapes
+     */
+    public ShapeGroup getPrototype() {
+        return prototype;
+    }
+
+    /**
+     * Checks whether the instance still shares the prototype's shapes.
+     *
+     * @return true until the instance is edited or ungrouped
+     */
+    public boolean isShared() {
+        return prototype != null;
+    }
+
+    /**
+     * Gets the horizontal offset from the prototype.
+     *
+     * @return The x offset
+     */
+    public int getOffsetX() {
+        return offsetX;
+    }
+
+    /**
+     * Gets the vertical offset from the prototype.
+     *
+     * @return The y offset
+     */
+    public int getOffsetY() {
+        return offsetY;
+    }
+
+    /**
+     * Makes deep copies of the shapes of the instance, placed where the
+     * instance is, without taking the instance off the prototype.
+     *
+     * @return The copied shapes
+     */
+    public List<Shape> copyShapes() {
+        if (prototype == null) {
+            List<Shape> copies = new ArrayList<>();
+            for (Shape shape : super.getShapes()) {
+                copies.add(shape.clone());
+            }
+            return copies;
+        }
+        List<Shape> copies = new ArrayList<>();
+        for (Shape shape : prototype.getShapes()) {
+            Shape copy = shape.clone();
+            copy.move(offsetX, offsetY);
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Replaces the shared prototype with a deep copy of its shapes moved by
+     * the offset. The instance then behaves like any other group.
+     */
+    private void materialize() {
+        if (prototype == null) {
+            return;
+        }
+        ShapeGroup source = prototype;
+        prototype = null;
+        boolean wasSelected = isSelected();
+        for (Shape shape : source.getShapes()) {
+            Shape copy = shape.clone();
+            copy.move(offsetX, offsetY);
+            super.addShape(copy);
+        }
+        offsetX = 0;
+        offsetY = 0;
+        if (wasSelected) {
+            super.setSelected(true);
+        }
+    }
+
+    @Override
+    public void drawChildren(Drawer drawer) {
+        if (prototype == null) {
+            super.drawChildren(drawer);
+            return;
+        }
+        drawer.translate(offsetX, offsetY);
+        try {
+            prototype.drawChildren(drawer);
+        } finally {
+            drawer.translate(-offsetX, -offsetY);
+        }
+    }
+
+    @Override
+    public void move(int dx, int dy) {
+        if (prototype == null) {
+            super.move(dx, dy);
+            return;
+        }
+        offsetX += dx;
+        offsetY += dy;
+        changed();
+    }
+
+    @Override
+    public boolean isSelected(int x, int y) {
+        if (prototype == null) {
+            return super.isSelected(x, y);
+        }
+        return prototype.isSelected(x - offsetX, y - offsetY);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        if (prototype == null) {
+            return super.getBounds();
+        }
+        return new Rectangle(getBoundsX(), getBoundsY(), getBoundsWidth(), getBoundsHeight());
+    }
+
+    @Override
+    public int getBoundsX() {
+        return prototype == null ? super.getBoundsX() : prototype.getBoundsX() + offsetX;
+    }
+
+    @Override
+    public int getBoundsY() {
+        return prototype == null ? super.getBoundsY() : prototype.getBoundsY() + offsetY;
+    }
+
+    @Override
+    public int getBoundsWidth() {
+        return prototype == null ? super.getBoundsWidth() : prototype.getBoundsWidth();
+    }
+
+    @Override
+    public int getBoundsHeight() {
+        return prototype == null ? super.getBoundsHeight() : prototype.getBoundsHeight();
+    }
+
+    /**
+     * Gets the shapes of the instance, copying them out of the prototype
+     * first if they are still shared.
+     *
+     * @return The list of shapes
+     */
+    @Override
+    public List<Shape> getShapes() {
+        materialize();
+        return super.getShapes();
+    }
+
+    @Override
+    public void addShape(Shape shape) {
+        materialize();
+        super.addShape(shape);
+    }
+
+    @Override
+    public boolean removeShape(Shape shape) {
+        materialize();
+        return super.removeShape(shape);
+    }
+
+    @Override
+    public void setBorderColor(Color color) {
+        materialize();
+        super.setBorderColor(color);
+    }
+
+    @Override
+    public void setRotation(double degrees) {
+        materialize();
+        super.setRotation(degrees);
+    }
+
+    /**
+     * Restores the offset of an instance still sharing its prototype.
+     * Otherwise restores the instance's own shapes, taking them off the
+     * prototype first, from copies of the recorded ones when the record
+     * still shared a prototype, so that the record is left untouched.
+     */
+    @Override
+    public void restoreState(Shape record) {
+        SymbolInstance symbol = (SymbolInstance) record;
+        if (symbol.prototype == null) {
+            materialize();
+            super.restoreState(record);
+        } else if (prototype == symbol.prototype) {
+            offsetX = symbol.offsetX;
+            offsetY = symbol.offsetY;
+            changed();
+        } else {
+            materialize();
+            restoreState(symbol.copyShapes(), symbol.getRotation(), symbol.getBorderColor());
+        }
+    }
+}
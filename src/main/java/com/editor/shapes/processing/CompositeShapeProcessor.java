@@ -9,6 +9,7 @@ import com.editor.gui.button.factory.ButtonFactory;
 import com.editor.shapes.CompositeShapePrototypeRegistry;
 import com.editor.shapes.Shape;
 import com.editor.shapes.ShapeGroup;
+import com.editor.shapes.SymbolInstance;
 
 /**
  * Processor for composite shapes (groups of shapes).
@@ -38,7 +39,9 @@ public class CompositeShapeProcessor implements ShapeProcessor {
         
         List<Shape> shapesToGroup = new ArrayList<>();
         
-        if (shape instanceof ShapeGroup) {
+        if (shape instanceof SymbolInstance) {
+            shapesToGroup.addAll(((SymbolInstance) shape).copyShapes());
+        } else if (shape instanceof ShapeGroup) {
             
             ShapeGroup group = (ShapeGroup) shape;
             for (Shape s : group.getShapes()) {
@@ -0,0 +1,220 @@
+package com.editor.spatial;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.editor.rendering.PaintBounds;
+import com.editor.shapes.Shape;
+
+/**
+ * Uniform grid implementation of {@link SpatialIndex}.
+ * Shapes are indexed by their painted extent (see {@link PaintBounds}), which
+ * covers both their hit area and everything they draw, so the same index
+ * serves hit-testing and repaint queries.
+ * Each shape is registered in every cell its extent overlaps, so point queries
+ * only look at a single cell. Shapes spanning too many cells are kept in a
+ * separate list that every query scans, which keeps huge groups cheap to move.
+ */
+public class GridSpatialIndex implements SpatialIndex {
+    private static final int DEFAULT_CELL_SIZE = 64;
+    private static final int MAX_CELLS_PER_SHAPE = 256;
+
+    private final int cellSize;
+    private final Map<Long, List<Shape>> cells = new HashMap<>();
+    private final Map<Shape, CellRange> entries = new IdentityHashMap<>();
+    private final List<Shape> oversized = new ArrayList<>();
+
+    /**
+     * Cells covered by an indexed shape, remembered so it can be removed
+     * without recomputing its old bounds.
+     */
+    private static final class CellRange {
+        final int minCol, minRow, maxCol, maxRow;
+
+        CellRange(int minCol, int minRow, int maxCol, int maxRow) {
+            this.minCol = minCol;
+            this.minRow = minRow;
+            this.maxCol = maxCol;
+            this.maxRow = maxRow;
+        }
+
+        long cellCount() {
+            return (long) (maxCol - minCol + 1) * (maxRow - minRow + 1);
+        }
+
+        boolean sameAs(CellRange other) {
+            return minCol == other.minCol && minRow == other.minRow
+                    && maxCol == other.maxCol && maxRow == other.maxRow;
+        }
+    }
+
+    /**
+     * Creates a grid index with the default cell size.
+     */
+    public GridSpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates a grid index with the given cell size.
+     *
+     * @param cellSize The width and height of a cell in pixels
+     */
+    public GridSpatialIndex(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    @Override
+    public void insert(Shape shape) {
+        if (entries.containsKey(shape)) {
+            update(shape);
+            return;
+        }
+        CellRange range = rangeOf(shape);
+        entries.put(shape, range);
+        addToCells(shape, range);
+    }
+
+    @Override
+    public void remove(Shape shape) {
+        CellRange range = entries.remove(shape);
+        if (range != null) {
+            removeFromCells(shape, range);
+        }
+    }
+
+    @Override
+    public void update(Shape shape) {
+        CellRange oldRange = entries.get(shape);
+        if (oldRange == null) {
+            return;
+        }
+        CellRange newRange = rangeOf(shape);
+        if (oldRange.sameAs(newRange)) {
+            return;
+        }
+        removeFromCells(shape, oldRange);
+        entries.put(shape, newRange);
+        addToCells(shape, newRange);
+    }
+
+    @Override
+    public void clear() {
+        cells.clear();
+        entries.clear();
+        oversized.clear();
+    }
+
+    @Override
+    public List<Shape> queryPoint(int x, int y) {
+        List<Shape> cell = cells.get(key(Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize)));
+        if (oversized.isEmpty()) {
+            return cell == null ? Collections.<Shape>emptyList() : new ArrayList<>(cell);
+        }
+        List<Shape> result = new ArrayList<>(oversized);
+        if (cell != null) {
+            result.addAll(cell);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Shape> queryRect(int x, int y, int width, int height) {
+        int minCol = Math.floorDiv(x, cellSize);
+        int minRow = Math.floorDiv(y, cellSize);
+        int maxCol = Math.floorDiv(x + Math.max(width, 0), cellSize);
+        int maxRow = Math.floorDiv(y + Math.max(height, 0), cellSize);
+
+        Set<Shape> seen = Collections.newSetFromMap(new IdentityHashMap<Shape, Boolean>());
+        List<Shape> result = new ArrayList<>(oversized);
+        seen.addAll(oversized);
+
+        long queriedCells = (long) (maxCol - minCol + 1) * (maxRow - minRow + 1);
+        if (queriedCells > cells.size()) {
+            // Large query over a sparse grid: walk the occupied cells instead.
+            for (Map.Entry<Long, List<Shape>> entry : cells.entrySet()) {
+                int col = (int) (entry.getKey() >> 32);
+                int row = (int) (long) entry.getKey();
+                if (col >= minCol && col <= maxCol && row >= minRow && row <= maxRow) {
+                    collect(entry.getValue(), seen, result);
+                }
+            }
+        } else {
+            for (int col = minCol; col <= maxCol; col++) {
+                for (int row = minRow; row <= maxRow; row++) {
+                    List<Shape> cell = cells.get(key(col, row));
+                    if (cell != null) {
+                        collect(cell, seen, result);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    private static void collect(List<Shape> cell, Set<Shape> seen, List<Shape> result) {
+        for (Shape shape : cell) {
+            if (seen.add(shape)) {
+                result.add(shape);
+            }
+        }
+    }
+
+    private CellRange rangeOf(Shape shape) {
+        Rectangle bounds = PaintBounds.of(shape);
+        return new CellRange(
+                Math.floorDiv(bounds.x, cellSize),
+                Math.floorDiv(bounds.y, cellSize),
+                Math.floorDiv(bounds.x + Math.max(bounds.width, 0), cellSize),
+                Math.floorDiv(bounds.y + Math.max(bounds.height, 0), cellSize));
+    }
+
+    private void addToCells(Shape shape, CellRange range) {
+        if (range.cellCount() > MAX_CELLS_PER_SHAPE) {
+            oversized.add(shape);
+            return;
+        }
+        for (int col = range.minCol; col <= range.maxCol; col++) {
+            for (int row = range.minRow; row <= range.maxRow; row++) {
+                cells.computeIfAbsent(key(col, row), k -> new ArrayList<>()).add(shape);
+            }
+        }
+    }
+
+    private void removeFromCells(Shape shape, CellRange range) {
+        if (range.cellCount() > MAX_CELLS_PER_SHAPE) {
+            oversized.remove(shape);
+            return;
+        }
+        for (int col = range.minCol; col <= range.maxCol; col++) {
+            for (int row = range.minRow; row <= range.maxRow; row++) {
+                Long key = key(col, row);
+                List<Shape> cell = cells.get(key);
+                if (cell != null) {
+                    cell.remove(shape);
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long key(int col, int row) {
+        return ((long) col << 32) | (row & 0xFFFFFFFFL);
+    }
+}
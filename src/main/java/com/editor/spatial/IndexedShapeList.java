@@ -0,0 +1,890 @@
+package com.editor.spatial;
+
+import java.awt.Rectangle;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import com.editor.memento.SceneCheckpoint;
+import com.editor.memento.SceneSnapshot;
+import com.editor.rendering.DirtyRegion;
+import com.editor.rendering.PaintBounds;
+import com.editor.rendering.ShapeSource;
+import com.editor.shapes.Shape;
+import com.editor.shapes.ShapeGroup;
+import com.editor.shapes.SymbolInstance;
+
+/**
+ * List of the shapes on the whiteboard, in z-order (last is topmost), that
+ * keeps a {@link SpatialIndex} in sync with every structural change.
+ * Commands keep working on it as a plain {@code List<Shape>}, while the
+ * whiteboard uses the index for hit-testing and marquee selection.
+ * Every change is also reported to an optional {@link DirtyRegion}, using the
+ * painted extent recorded when the shape was last indexed as its old area.
+ * A shape may appear at most once in the list; shapes are keyed by identity,
+ * and adding or setting a shape that is already elsewhere in the list
+ * throws an {@link IllegalArgumentException}.
+ * The order is kept in a treap ordered by position, where every node knows
+ * the size of its subtree and its parent. Positional access, insertion,
+ * removal and {@code indexOf} therefore take O(log n), removing k shapes
+ * takes O(k log n), and two shapes are compared in z-order by their rank.
+ * <p>
+ * Once a first {@link #snapshot()} has been taken, the list also keeps a
+ * {@link SceneSnapshot} of frozen copies of its shapes up to date, so that
+ * the next snapshot only has to copy the shapes added or refreshed since.
+ * Like the spatial index, it relies on every change to a shape being
+ * reported through {@link #refresh(Shape)}. The list is not thread-safe and,
+ * like the shapes it holds, must only be used from the event thread; the
+ * snapshots themselves are immutable and may be handed to other threads.
+ * Changes can also be followed one by one through a {@link ShapeListListener}.
+ * <p>
+ * Alongside the records, the list then keeps the same persistent sequence
+ * of the shapes themselves and, once a first {@link #checkpoint()} has been
+ * taken, a log of the shapes put back in, so that a {@link SceneCheckpoint}
+ * costs little more than a snapshot and restoring one puts back the very
+ * same shapes.
+ */
+public class IndexedShapeList extends AbstractList<Shape> implements ShapeSource {
+    private final Map<Shape, Node> nodes = new IdentityHashMap<>();
+    private final Random priorities = new Random();
+    private Node root;
+    private SpatialIndex index;
+    private DirtyRegion dirtyRegion;
+    private SceneSnapshot records;
+    private SceneSnapshot live;
+    private SceneCheckpoint.Entry logTail;
+    private final Set<Shape> logged = Collections.newSetFromMap(new IdentityHashMap<Shape, Boolean>());
+    private final Set<Node> unsaved = new HashSet<>();
+    private long snapshotBytes;
+    private ShapeListListener listener;
+
+    /**
+     * Largest share of unsaved shapes, as a divisor of the size, for which a
+     * snapshot updates the previous one in place rather than rebuilding it.
+     */
+    private static final int REBUILD_RATIO = 8;
+
+    /**
+     * Estimated sizes of a frozen record, a node of a snapshot and an entry
+     * of the log, in bytes, for the memory a checkpoint keeps alive.
+     */
+    private static final long RECORD_BYTES = 48;
+    private static final long SNAPSHOT_NODE_BYTES = 32;
+    private static final long LOG_ENTRY_BYTES = 24;
+
+    /**
+     * A shape in the treap, with the painted extent at the time the shape
+     * was last indexed and its frozen copy in the last snapshot.
+     */
+    private static final class Node {
+        Shape shape;
+        Rectangle paintBounds;
+        Shape record;
+        final int priority;
+        Node left, right, parent;
+        int size = 1;
+
+        Node(Shape shape, Rectangle paintBounds, int priority) {
+            this.shape = shape;
+            this.paintBounds = paintBounds;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Creates an empty list backed by the given index.
+     *
+     * @param index The spatial index to keep in sync
+     */
+    public IndexedShapeList(SpatialIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Replaces the spatial index and re-indexes every shape.
+     *
+     * @param index The new spatial index
+     */
+    public void setSpatialIndex(SpatialIndex index) {
+        this.index = index;
+        index.clear();
+        for (Node node = first(); node != null; node = next(node)) {
+            index.insert(node.shape);
+        }
+    }
+
+    /**
+     * Sets the region that collects the areas damaged by changes to the list.
+     *
+     * @param dirtyRegion The dirty region, or null to stop reporting damage
+     */
+    public void setDirtyRegion(DirtyRegion dirtyRegion) {
+        this.dirtyRegion = dirtyRegion;
+    }
+
+    /**
+     * Sets the listener notified of every change to the list.
+     *
+     * @param listener The listener, or null to stop notifying changes
+     */
+    public void setListener(ShapeListListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Gets the spatial index backing this list.
+     *
+     * @return The spatial index
+     */
+    public SpatialIndex getSpatialIndex() {
+        return index;
+    }
+
+    /**
+     * Re-indexes a shape after it moved or its appearance changed, damaging
+     * both its old and new painted area. Shapes not in this list are ignored.
+     *
+     * @param shape The shape that changed
+     */
+    public void refresh(Shape shape) {
+        Node node = nodes.get(shape);
+        if (node != null) {
+            if (records != null) {
+                unsaved.add(node);
+            }
+            damage(node.paintBounds);
+            PaintBounds.of(shape, node.paintBounds);
+            damage(node.paintBounds);
+            index.update(shape);
+            if (listener != null) {
+                listener.shapeChanged(shape);
+            }
+        }
+    }
+
+    /**
+     * Tests whether a shape's painted extent, as recorded when it was last
+     * indexed, intersects the given area. Used to cull shapes before drawing.
+     *
+     * @param shape The shape, which must be in this list
+     * @param area  The area being painted
+     * @return true if the shape may draw inside the area
+     */
+    @Override
+    public boolean isVisibleIn(Shape shape, Rectangle area) {
+        Node node = nodes.get(shape);
+        return node == null || node.paintBounds.intersects(area);
+    }
+
+    /**
+     * Gets the painted extent of a shape as recorded when it was last
+     * indexed. The rectangle is owned by the list and must not be modified.
+     *
+     * @param shape The shape
+     * @return The recorded painted extent, or null if the shape is not in
+     *         this list
+     */
+    public Rectangle paintBoundsOf(Shape shape) {
+        Node node = nodes.get(shape);
+        return node == null ? null : node.paintBounds;
+    }
+
+    /**
+     * Finds the topmost shape under the given point.
+     *
+     * @param x The x-coordinate of the point
+     * @param y The y-coordinate of the point
+     * @return The topmost hit shape, or null if no shape is under the point
+     */
+    public Shape topmostAt(int x, int y) {
+        Shape topmost = null;
+        int topmostRank = -1;
+        for (Shape candidate : index.queryPoint(x, y)) {
+            int rank = rank(nodes.get(candidate));
+            if (rank > topmostRank && candidate.isSelected(x, y)) {
+                topmost = candidate;
+                topmostRank = rank;
+            }
+        }
+        return topmost;
+    }
+
+    /**
+     * Finds the shapes whose bounds lie entirely inside the given rectangle.
+     *
+     * @param x1 The left edge of the rectangle
+     * @param y1 The top edge of the rectangle
+     * @param x2 The right edge of the rectangle
+     * @param y2 The bottom edge of the rectangle
+     * @return The enclosed shapes, in z-order
+     */
+    public List<Shape> shapesWithin(int x1, int y1, int x2, int y2) {
+        List<Shape> result = new ArrayList<>();
+        for (Shape candidate : index.queryRect(x1, y1, x2 - x1, y2 - y1)) {
+            int bx = candidate.getBoundsX();
+            int by = candidate.getBoundsY();
+            if (bx >= x1 && bx + candidate.getBoundsWidth() <= x2 &&
+                    by >= y1 && by + candidate.getBoundsHeight() <= y2) {
+                result.add(candidate);
+            }
+        }
+        sortByZOrder(result);
+        return result;
+    }
+
+    /**
+     * Finds the shapes whose painted extent may intersect the given area.
+     *
+     * @param area The area to query
+     * @return The candidate shapes, in z-order
+     */
+    @Override
+    public List<Shape> shapesIntersecting(Rectangle area) {
+        List<Shape> result = index.queryRect(area.x, area.y, area.width, area.height);
+        sortByZOrder(result);
+        return result;
+    }
+
+    /**
+     * Sorts shapes of this list back to front. The rank of each shape is
+     * looked up once, so sorting k shapes takes O(k log n + k log k).
+     *
+     * @param list The shapes to sort, all contained in this list
+     */
+    public void sortByZOrder(List<Shape> list) {
+        int count = list.size();
+        if (count < 2) {
+            return;
+        }
+        long[] keys = new long[count];
+        boolean sorted = true;
+        for (int i = 0; i < count; i++) {
+            keys[i] = (long) rank(nodes.get(list.get(i))) << 32 | i;
+            sorted &= i == 0 || keys[i] > keys[i - 1];
+        }
+        if (sorted) {
+            return;
+        }
+        Arrays.sort(keys);
+        Shape[] ordered = new Shape[count];
+        for (int i = 0; i < count; i++) {
+            ordered[i] = list.get((int) keys[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            list.set(i, ordered[i]);
+        }
+    }
+
+    @Override
+    public Shape get(int i) {
+        return nodeAt(i).shape;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public Iterator<Shape> iterator() {
+        return new Iterator<Shape>() {
+            private Node next = first();
+            private Node last;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Shape next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = IndexedShapeList.this.next(next);
+                return last.shape;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                IndexedShapeList.this.remove(last.shape);
+                last = null;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return nodes.containsKey(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        Node node = nodes.get(o);
+        return node == null ? -1 : rank(node);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public Shape set(int i, Shape shape) {
+        Node node = nodeAt(i);
+        Node existing = nodes.get(shape);
+        if (existing != null && existing != node) {
+            throw new IllegalArgumentException("Shape is already in the list at " + rank(existing));
+        }
+        Shape old = node.shape;
+        nodes.remove(old);
+        index.remove(old);
+        damage(node.paintBounds);
+        node.shape = shape;
+        node.paintBounds = PaintBounds.of(shape);
+        nodes.put(shape, node);
+        index.insert(shape);
+        damage(node.paintBounds);
+        if (records != null) {
+            live = live.set(i, shape);
+            unsaved.add(node);
+        }
+        if (listener != null) {
+            listener.shapeRemoved(i, old);
+            listener.shapeInserted(i, shape);
+        }
+        return old;
+    }
+
+    @Override
+    public void add(int i, Shape shape) {
+        if (i < 0 || i > size()) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+        }
+        if (nodes.containsKey(shape)) {
+            throw new IllegalArgumentException("Shape is already in the list at " + indexOf(shape));
+        }
+        Node node = new Node(shape, PaintBounds.of(shape), priorities.nextInt());
+        insertAt(i, node);
+        if (records != null) {
+            records = records.insert(i, null);
+            live = live.insert(i, shape);
+            unsaved.add(node);
+            log(shape);
+        }
+        nodes.put(shape, node);
+        index.insert(shape);
+        damage(node.paintBounds);
+        modCount++;
+        if (listener != null) {
+            listener.shapeInserted(i, shape);
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Shape> c) {
+        if (c.isEmpty()) {
+            return false;
+        }
+        for (Shape shape : c) {
+            add(size(), shape);
+        }
+        return true;
+    }
+
+    @Override
+    public Shape remove(int i) {
+        Node node = nodeAt(i);
+        removed(node);
+        return node.shape;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        Node node = nodes.get(o);
+        if (node == null) {
+            return false;
+        }
+        removed(node);
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o : c) {
+            Node node = nodes.get(o);
+            if (node != null) {
+                removed(node);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        nodes.clear();
+        if (records != null) {
+            records = SceneSnapshot.EMPTY;
+            live = SceneSnapshot.EMPTY;
+            unsaved.clear();
+        }
+        logTail = null;
+        logged.clear();
+        index.clear();
+        if (dirtyRegion != null) {
+            dirtyRegion.markAll();
+        }
+        modCount++;
+        if (listener != null) {
+            listener.shapesReset();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the shapes, in z-order. Only the shapes added or
+     * refreshed since the previous snapshot are copied; the copies of every
+     * other shape are shared with it, so the time and memory taken do not
+     * grow with the size of the scene. The first snapshot copies every
+     * shape, as does one taken after most of the scene changed.
+     *
+     * @return The snapshot, whose records are frozen copies of the shapes
+     */
+    public SceneSnapshot snapshot() {
+        if (records == null || unsaved.size() > size() / REBUILD_RATIO) {
+            List<Shape> frozen = new ArrayList<>(size());
+            List<Shape> shapes = new ArrayList<>(size());
+            int copied = 0;
+            for (Node node = first(); node != null; node = next(node)) {
+                if (node.record == null || unsaved.contains(node)) {
+                    node.record = freeze(node.shape);
+                    copied++;
+                }
+                frozen.add(node.record);
+                shapes.add(node.shape);
+            }
+            records = SceneSnapshot.of(frozen);
+            live = SceneSnapshot.of(shapes);
+            snapshotBytes += copied * RECORD_BYTES + 2L * size() * SNAPSHOT_NODE_BYTES;
+        } else {
+            for (Node node : unsaved) {
+                node.record = freeze(node.shape);
+                records = records.set(rank(node), node.record);
+            }
+            if (!unsaved.isEmpty()) {
+                int copiedPerRecord = 33 - Integer.numberOfLeadingZeros(size() / unsaved.size());
+                snapshotBytes += unsaved.size() * (RECORD_BYTES + copiedPerRecord * SNAPSHOT_NODE_BYTES);
+            }
+        }
+        unsaved.clear();
+        return records;
+    }
+
+    /**
+     * Replaces the shapes with those of a snapshot. Shapes still in the
+     * same state as their record in the snapshot are kept rather than
+     * copied again, so restoring a recent snapshot shares all the shapes
+     * that did not change since it was taken. The other records are cloned.
+     *
+     * @param snapshot The snapshot to restore
+     */
+    public void restore(SceneSnapshot snapshot) {
+        Map<Shape, Shape> unchanged = new IdentityHashMap<>();
+        if (records != null) {
+            for (Node node = first(); node != null; node = next(node)) {
+                if (node.record != null && !unsaved.contains(node)) {
+                    unchanged.put(node.record, node.shape);
+                }
+            }
+        }
+        records = null;
+        unsaved.clear();
+        ShapeListListener restoring = listener;
+        listener = null;
+        clear();
+        for (Shape record : snapshot) {
+            Shape shape = unchanged.remove(record);
+            add(size(), shape != null ? shape : record.clone());
+        }
+        listener = restoring;
+        if (listener != null) {
+            listener.shapesReset();
+        }
+        Node node = first();
+        for (Shape record : snapshot) {
+            node.record = record;
+            node = next(node);
+        }
+        records = snapshot;
+        live = SceneSnapshot.of(this);
+    }
+
+    /**
+     * Takes a checkpoint of the shapes: a {@link #snapshot()} together with
+     * the shapes themselves. Checkpoints taken before the list is cleared or
+     * replaced as a whole can no longer be restored. The checkpoint
+     * estimates its size from the records copied and the shapes logged
+     * since the previous one.
+     *
+     * @return The checkpoint
+     */
+    public SceneCheckpoint checkpoint() {
+        SceneSnapshot snapshot = snapshot();
+        if (logTail == null) {
+            logTail = new SceneCheckpoint.Entry(null, null);
+        }
+        long size = snapshotBytes + logged.size() * (RECORD_BYTES + LOG_ENTRY_BYTES);
+        snapshotBytes = 0;
+        logged.clear();
+        return new SceneCheckpoint(snapshot, live, logTail, size);
+    }
+
+    /**
+     * Puts back the shapes of a checkpoint, in its order and in the state
+     * recorded in it, along with the shapes out of the list that changed
+     * since. Unlike {@link #restore(SceneSnapshot)}, the shapes are the very
+     * objects of the checkpoint, so commands holding them can still be
+     * undone and redone. Shapes that did not change are left alone; the
+     * others are put back through {@link Shape#restoreState(Shape)}, the
+     * earliest state last so that it wins over the states of the groups
+     * containing the shape, and re-indexed. The list listener sees the
+     * removals and insertions needed to get back to the checkpoint's order.
+     *
+     * @param checkpoint The checkpoint to restore
+     */
+    public void restore(SceneCheckpoint checkpoint) {
+        Set<Shape> kept = Collections.newSetFromMap(new IdentityHashMap<Shape, Boolean>());
+        for (Shape shape : checkpoint.getShapes()) {
+            kept.add(shape);
+        }
+        List<Node> gone = new ArrayList<>();
+        for (Node node = first(); node != null; node = next(node)) {
+            if (!kept.contains(node.shape)) {
+                gone.add(node);
+            }
+        }
+        for (Node node : gone) {
+            removed(node);
+        }
+
+        Set<Shape> seen = Collections.newSetFromMap(new IdentityHashMap<Shape, Boolean>());
+        List<SceneCheckpoint.Entry> outside = new ArrayList<>();
+        for (SceneCheckpoint.Entry entry = checkpoint.getSince().getNext(); entry != null; entry = entry.getNext()) {
+            if (!kept.contains(entry.getShape()) && seen.add(entry.getShape())) {
+                outside.add(entry);
+            }
+        }
+        Set<Shape> touched = Collections.newSetFromMap(new IdentityHashMap<Shape, Boolean>());
+        for (int i = outside.size() - 1; i >= 0; i--) {
+            SceneCheckpoint.Entry entry = outside.get(i);
+            log(entry.getShape());
+            entry.getShape().restoreState(entry.getRecord());
+            addWithChildren(entry.getShape(), touched);
+        }
+
+        Node at = first();
+        int i = 0;
+        for (Shape shape : checkpoint.getShapes()) {
+            if (at != null && at.shape == shape) {
+                at = next(at);
+            } else {
+                Node misplaced = nodes.get(shape);
+                if (misplaced != null) {
+                    removed(misplaced);
+                }
+                add(i, shape);
+                attach(shape);
+            }
+            i++;
+        }
+
+        Iterator<Shape> recorded = checkpoint.getRecords().iterator();
+        for (Node node = first(); node != null; node = next(node)) {
+            Shape record = recorded.next();
+            if (node.record != record || unsaved.contains(node) || encloses(node.shape, touched)) {
+                node.shape.restoreState(record);
+                refresh(node.shape);
+                node.record = record;
+                unsaved.remove(node);
+            }
+        }
+        records = checkpoint.getRecords();
+        live = checkpoint.getShapes();
+    }
+
+    /**
+     * Logs the state of a shape about to be put in the list or changed while
+     * out of it, unless it was logged since the last checkpoint.
+     */
+    private void log(Shape shape) {
+        if (logTail != null && logged.add(shape)) {
+            logTail = logTail.append(shape, freeze(shape));
+        }
+    }
+
+    /**
+     * Links a shape put back at the top of the scene, and its children, the
+     * way grouping and ungrouping link them.
+     */
+    private static void attach(Shape shape) {
+        shape.setParent(null);
+        for (Shape child : childrenOf(shape)) {
+            child.setParent((ShapeGroup) shape);
+        }
+    }
+
+    /**
+     * Adds a shape and every shape inside it to a set.
+     */
+    private static void addWithChildren(Shape shape, Set<Shape> set) {
+        set.add(shape);
+        for (Shape child : childrenOf(shape)) {
+            addWithChildren(child, set);
+        }
+    }
+
+    /**
+     * Tests whether a shape, or a shape inside it, is in a set.
+     */
+    private static boolean encloses(Shape shape, Set<Shape> set) {
+        if (set.isEmpty()) {
+            return false;
+        }
+        if (set.contains(shape)) {
+            return true;
+        }
+        for (Shape child : childrenOf(shape)) {
+            if (encloses(child, set)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the children of a group, or none for a single shape or an
+     * instance still sharing its prototype's shapes.
+     */
+    private static List<Shape> childrenOf(Shape shape) {
+        if (!(shape instanceof ShapeGroup)
+                || shape instanceof SymbolInstance && ((SymbolInstance) shape).isShared()) {
+            return Collections.emptyList();
+        }
+        return ((ShapeGroup) shape).getShapes();
+    }
+
+    /**
+     * Copies a shape for a snapshot. Selection is not part of the state of
+     * the scene, so the copy is never selected.
+     */
+    private static Shape freeze(Shape shape) {
+        Shape record = shape.clone();
+        record.setSelected(false);
+        return record;
+    }
+
+    private void removed(Node node) {
+        int rank = records != null || listener != null ? rank(node) : -1;
+        if (records != null) {
+            records = records.remove(rank);
+            live = live.remove(rank);
+            unsaved.remove(node);
+        }
+        unlink(node);
+        nodes.remove(node.shape);
+        index.remove(node.shape);
+        damage(node.paintBounds);
+        modCount++;
+        if (listener != null) {
+            listener.shapeRemoved(rank, node.shape);
+        }
+    }
+
+    private void damage(Rectangle area) {
+        if (dirtyRegion != null) {
+            dirtyRegion.add(area);
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private Node nodeAt(int i) {
+        if (i < 0 || i >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (i < leftSize) {
+                node = node.left;
+            } else if (i == leftSize) {
+                return node;
+            } else {
+                i -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Gets the position of a node by adding up the nodes to its left on the
+     * way to the root.
+     */
+    private static int rank(Node node) {
+        int rank = size(node.left);
+        for (Node child = node, parent = node.parent; parent != null; child = parent, parent = parent.parent) {
+            if (child == parent.right) {
+                rank += size(parent.left) + 1;
+            }
+        }
+        return rank;
+    }
+
+    private Node first() {
+        Node node = root;
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
+        }
+        return node;
+    }
+
+    private Node next(Node node) {
+        if (node.right != null) {
+            node = node.right;
+            while (node.left != null) {
+                node = node.left;
+            }
+            return node;
+        }
+        Node parent = node.parent;
+        while (parent != null && node == parent.right) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    /**
+     * Inserts a node as a leaf at position i, then rotates it up until the
+     * heap order on priorities holds again.
+     */
+    private void insertAt(int i, Node node) {
+        if (root == null) {
+            root = node;
+            return;
+        }
+        Node parent = root;
+        while (true) {
+            parent.size++;
+            int leftSize = size(parent.left);
+            if (i <= leftSize) {
+                if (parent.left == null) {
+                    parent.left = node;
+                    break;
+                }
+                parent = parent.left;
+            } else {
+                i -= leftSize + 1;
+                if (parent.right == null) {
+                    parent.right = node;
+                    break;
+                }
+                parent = parent.right;
+            }
+        }
+        node.parent = parent;
+        while (node.parent != null && node.priority > node.parent.priority) {
+            rotateUp(node);
+        }
+    }
+
+    /**
+     * Rotates a node down until it is a leaf, then detaches it.
+     */
+    private void unlink(Node node) {
+        while (node.left != null || node.right != null) {
+            Node child;
+            if (node.left == null) {
+                child = node.right;
+            } else if (node.right == null) {
+                child = node.left;
+            } else {
+                child = node.left.priority > node.right.priority ? node.left : node.right;
+            }
+            rotateUp(child);
+        }
+        Node parent = node.parent;
+        if (parent == null) {
+            root = null;
+        } else if (parent.left == node) {
+            parent.left = null;
+        } else {
+            parent.right = null;
+        }
+        for (Node ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.size--;
+        }
+        node.parent = null;
+    }
+
+    /**
+     * Swaps a node with its parent, keeping the in-order sequence.
+     */
+    private void rotateUp(Node node) {
+        Node parent = node.parent;
+        Node grandParent = parent.parent;
+        if (parent.left == node) {
+            parent.left = node.right;
+            if (node.right != null) {
+                node.right.parent = parent;
+            }
+            node.right = parent;
+        } else {
+            parent.right = node.left;
+            if (node.left != null) {
+                node.left.parent = parent;
+            }
+            node.left = parent;
+        }
+        parent.parent = node;
+        node.parent = grandParent;
+        if (grandParent == null) {
+            root = node;
+        } else if (grandParent.left == parent) {
+            grandParent.left = node;
+        } else {
+            grandParent.right = node;
+        }
+        parent.size = size(parent.left) + size(parent.right) + 1;
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+}
@@ -0,0 +1,40 @@
+package com.editor.spatial;
+
+import com.editor.shapes.Shape;
+
+/**
+ * Listener notified of every change to an {@link IndexedShapeList}, in the
+ * order the changes are made, so that they can be recorded and replayed.
+ * It is called on the thread modifying the list, after the change, and
+ * must not modify the list.
+ */
+public interface ShapeListListener {
+    /**
+     * Called after a shape has been inserted.
+     *
+     * @param index The position of the shape
+     * @param shape The inserted shape
+     */
+    void shapeInserted(int index, Shape shape);
+
+    /**
+     * Called after a shape has been removed.
+     *
+     * @param index The position the shape had
+     * @param shape The removed shape
+     */
+    void shapeRemoved(int index, Shape shape);
+
+    /**
+     * Called when a shape in the list has moved or its appearance changed,
+     * as reported through {@link IndexedShapeList#refresh(Shape)}.
+     *
+     * @param shape The shape that changed
+     */
+    void shapeChanged(Shape shape);
+
+    /**
+     * Called after the list has been cleared or replaced as a whole.
+     */
+    void shapesReset();
+}
@@ -0,0 +1,65 @@
+package com.editor.spatial;
+
+import java.util.List;
+
+import com.editor.shapes.Shape;
+
+/**
+ * Spatial index over the bounding boxes of the shapes on the whiteboard.
+ * Queries return candidates only: every shape whose bounds match is included,
+ * but callers still run the exact hit or containment test on the result.
+ */
+public interface SpatialIndex {
+    /**
+     * Adds a shape to the index using its current bounds.
+     *
+     * @param shape The shape to index
+     */
+    void insert(Shape shape);
+
+    /**
+     * Removes a shape from the index.
+     *
+     * @param shape The shape to remove
+     */
+    void remove(Shape shape);
+
+    /**
+     * Re-indexes a shape whose bounds may have changed since it was inserted.
+     *
+     * @param shape The shape to update
+     */
+    void update(Shape shape);
+
+    /**
+     * Removes every shape from the index.
+     */
+    void clear();
+
+    /**
+     * Gets the shapes whose bounds may contain the given point.
+     *
+     * @param x The x-coordinate of the point
+     * @param y The y-coordinate of the point
+     * @return The candidate shapes, without duplicates
+     */
+    List<Shape> queryPoint(int x, int y);
+
+    /**
+     * Gets the shapes whose bounds may intersect the given rectangle.
+     *
+     * @param x      The x-coordinate of the rectangle
+     * @param y      The y-coordinate of the rectangle
+     * @param width  The width of the rectangle
+     * @param height The height of the rectangle
+     * @return The candidate shapes, without duplicates
+     */
+    List<Shape> queryRect(int x, int y, int width, int height);
+
+    /**
+     * Gets the number of indexed shapes.
+     *
+     * @return The number of shapes
+     */
+    int size();
+}
@@ -1,6 +1,11 @@
 package com.editor.state;
 
+import java.awt.EventQueue;
 import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -8,6 +13,7 @@ import java.util.concurrent.TimeUnit;
 import com.editor.commands.SaveStateCommand;
 import com.editor.gui.WhiteBoard;
 import com.editor.gui.panel.ToolbarPanel;
+import com.editor.memento.AppStateMemento;
 import com.editor.shapes.CompositeShapePrototypeRegistry;
 import com.editor.shapes.ShapePrototypeRegistry;
 
@@ -15,10 +21,18 @@ import com.editor.shapes.ShapePrototypeRegistry;
  * Manages automatic saving of the application state.
  * Implements a debounce mechanism to avoid saving too frequently.
  * Implemented as a Singleton to ensure only one instance exists.
+ * <p>
+ * Once {@link #startJournal(long)} has been called, changes to the
+ * whiteboard are appended to a journal next to the autosave file instead
+ * of rewriting it, and the autosave becomes a snapshot taken when the
+ * journal has grown to the size of the snapshot, when it meets a change it
+ * cannot record, or when another part of the application changes.
  */
 public class AutoSaveManager {
     private static final String DEFAULT_AUTOSAVE_FILENAME = "autosave.ser";
     private static final long DEBOUNCE_DELAY_MS = 1000; 
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
 
     
     private static AutoSaveManager instance;
@@ -29,6 +43,9 @@ public class AutoSaveManager {
     private ShapePrototypeRegistry prototypeRegistry;
     private String autoSaveFilePath;
     private final ScheduledExecutorService scheduler;
+    private volatile CommandJournal journal;
+    private final Object saveLock = new Object();
+    private long savedCheckpoint;
 
     private boolean saveScheduled = false;
     private boolean initialized = false;
@@ -115,13 +132,64 @@ public class AutoSaveManager {
             System.out.println("[AutoSaveManager] Auto-save scheduled");
 
             scheduler.schedule(() -> {
+                synchronized (this) {
+                    saveScheduled = false;
+                }
                 performSave();
-                
-                saveScheduled = false;
             }, DEBOUNCE_DELAY_MS, TimeUnit.MILLISECONDS);
         }
     }
 
+    /**
+     * Records a change made by a component. Changes to the whiteboard are
+     * committed to the journal; other changes trigger an auto-save.
+     *
+     * @param source The component that changed
+     */
+    public void stateChanged(Object source) {
+        CommandJournal current = journal;
+        if (source == whiteBoard && current != null && current.isHealthy()) {
+            current.flush();
+        } else {
+            triggerAutoSave();
+        }
+    }
+
+    /**
+     * Replays the journal on top of the state loaded from the autosave file,
+     * then starts journaling the changes to the whiteboard. Must be called
+     * once the autosave has been loaded, before the whiteboard changes.
+     *
+     * @param checkpoint The journal checkpoint of the loaded state, 0 if it
+     *                   has none or there is no autosave, or -1 if it could
+     *                   not be loaded
+     */
+    public void startJournal(long checkpoint) {
+        CommandJournal opened = new CommandJournal(Paths.get(autoSaveFilePath + JOURNAL_SUFFIX),
+                this::triggerAutoSave);
+        try {
+            boolean snapshotNeeded = opened.recover(whiteBoard.getShapesList(), checkpoint);
+            opened.setCompactBytes(compactBytes());
+            whiteBoard.setShapeListListener(opened);
+            whiteBoard.getCommandHistory().addListener(opened);
+            journal = opened;
+            System.out.println("[AutoSaveManager] Journaling changes to " + opened.getFile());
+            if (snapshotNeeded) {
+                whiteBoard.repaint();
+                triggerAutoSave();
+            }
+        } catch (IOException e) {
+            System.err.println("[AutoSaveManager] Cannot open journal, falling back to full auto-saves: "
+                    + e.getMessage());
+            try {
+                opened.close();
+                Files.deleteIfExists(opened.getFile());
+            } catch (IOException ignored) {
+                
+            }
+        }
+    }
+
     /**
      * Performs the actual save operation.
      */
@@ -131,8 +199,23 @@ public class AutoSaveManager {
             
             SaveStateCommand saveCommand = new SaveStateCommand(
                     whiteBoard, toolbarPanel, compositeRegistry, prototypeRegistry, autoSaveFilePath); 
-                                                                                                       
-            saveCommand.execute();
+            CommandJournal current = journal;
+            AppStateMemento[] state = new AppStateMemento[1];
+            onEventThread(() -> state[0] = saveCommand.createState(current != null ? current.checkpoint() : 0));
+            long checkpoint = state[0].getJournalCheckpoint();
+
+            synchronized (saveLock) {
+                if (checkpoint != 0 && checkpoint <= savedCheckpoint) {
+                    System.out.println("[AutoSaveManager] A more recent state was already saved");
+                    return;
+                }
+                saveCommand.writeState(state[0]);
+                savedCheckpoint = checkpoint;
+                if (current != null) {
+                    current.compact(checkpoint);
+                    current.setCompactBytes(compactBytes());
+                }
+            }
             System.out.println("[AutoSaveManager] Auto-save completed successfully");
         } catch (Exception e) {
             System.err.println("[AutoSaveManager] Error during auto-save: " + e.getMessage());
@@ -140,6 +223,27 @@ public class AutoSaveManager {
         }
     }
 
+    /**
+     * Runs a task on the event thread, where the whiteboard changes, and
+     * waits for it.
+     */
+    private static void onEventThread(Runnable task) throws InterruptedException, InvocationTargetException {
+        if (EventQueue.isDispatchThread()) {
+            task.run();
+        } else {
+            EventQueue.invokeAndWait(task);
+        }
+    }
+
+    /**
+     * Gets the size the journal may reach before a snapshot replaces it,
+     * which is the size of the last snapshot, so that replaying the journal
+     * never takes much longer than loading the snapshot.
+     */
+    private long compactBytes() {
+        return Math.max(MIN_COMPACT_BYTES, new File(autoSaveFilePath).length());
+    }
+
     /**
      * Checks if an autosave file exists.
      *
@@ -177,6 +281,22 @@ public class AutoSaveManager {
         } catch (InterruptedException e) {
             scheduler.shutdownNow();
             Thread.currentThread().interrupt();
+        } finally {
+            closeJournal();
+        }
+    }
+
+    private void closeJournal() {
+        CommandJournal current = journal;
+        if (current != null) {
+            journal = null;
+            whiteBoard.setShapeListListener(null);
+            whiteBoard.getCommandHistory().removeListener(current);
+            try {
+                current.close();
+            } catch (IOException e) {
+                System.err.println("[AutoSaveManager] Error closing journal: " + e.getMessage());
+            }
         }
     }
 }
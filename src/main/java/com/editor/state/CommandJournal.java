@@ -0,0 +1,774 @@
+package com.editor.state;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import com.editor.commands.Command;
+import com.editor.commands.CommandHistoryListener;
+import com.editor.shapes.Circle;
+import com.editor.shapes.Rectangle;
+import com.editor.shapes.RegularPolygon;
+import com.editor.shapes.Shape;
+import com.editor.shapes.ShapeGroup;
+import com.editor.shapes.Style;
+import com.editor.shapes.StyleTable;
+import com.editor.shapes.Styled;
+import com.editor.shapes.SymbolInstance;
+import com.editor.spatial.ShapeListListener;
+
+/**
+ * Append-only log of the changes made to the whiteboard, kept next to the
+ * autosave file. Every time the command history executes, undoes or redoes
+ * a command, what the command changed in the scene is appended as one
+ * record: the positions where shapes were inserted or removed, and a copy
+ * of each shape it inserted or changed. A record therefore takes bytes in
+ * proportion to the edit rather than to the document. Changes made outside
+ * the history go into the next record, or into one of their own when
+ * {@link #flush()} is called.
+ * <p>
+ * Records are written with a {@link DataOutputStream}. Rectangles, circles
+ * and polygons take their fixed fields: position, size, rotation and style.
+ * Styles and the prototypes of symbol instances are defined the first time
+ * they are used after a checkpoint, and then referred to by number, so an
+ * instance is written as its prototype and offset. Only groups, including
+ * instances that no longer share their prototype, are serialized.
+ * <p>
+ * Records are written and synced by a background thread. The records
+ * appended while a sync is in progress are written and synced together by
+ * the next one, so the event thread never waits for the disk and a burst of
+ * edits costs a single sync.
+ * <p>
+ * The log is replayed on top of the last full snapshot. A snapshot is taken
+ * at a checkpoint record, whose id it keeps; once the snapshot is written,
+ * the log is rewritten to hold only the records after that checkpoint. A
+ * change the log cannot describe, such as loading a file, appends a barrier:
+ * replay stops there, and nothing is logged until the next checkpoint.
+ * <p>
+ * The file starts with a magic number and the id of the checkpoint it
+ * follows. Each record is framed by its length and CRC-32, so that a record
+ * torn by a crash is detected and dropped with everything after it.
+ */
+final class CommandJournal implements CommandHistoryListener, ShapeListListener, Closeable {
+    private static final int MAGIC = 0x53454A32;
+    private static final int HEADER_BYTES = 12;
+    private static final int FRAME_BYTES = 8;
+
+    private static final byte CHANGES = 1;
+    private static final byte CHECKPOINT = 2;
+    private static final byte BARRIER = 3;
+
+    private static final byte INSERT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte UPDATE = 3;
+    private static final byte STYLE = 4;
+    private static final byte PROTOTYPE = 5;
+
+    private static final byte RECTANGLE = 1;
+    private static final byte CIRCLE = 2;
+    private static final byte POLYGON = 3;
+    private static final byte SYMBOL = 4;
+    private static final byte SERIALIZED = 5;
+
+    private final Path file;
+    private final Runnable snapshotNeeded;
+    private final ExecutorService writer;
+
+    private List<Shape> scene;
+    private final List<Change> changes = new ArrayList<>();
+    private final Set<Shape> inserted = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Shape> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Integer> definedStyles = new HashSet<>();
+    private final Map<ShapeGroup, Integer> definedPrototypes = new IdentityHashMap<>();
+    private boolean suspended;
+    private long lastCheckpoint;
+    private long bytesSinceCheckpoint;
+    private volatile long compactBytes = Long.MAX_VALUE;
+
+    private final List<Entry> pending = new ArrayList<>();
+    private boolean commitScheduled;
+
+    private FileChannel channel;
+    private long end;
+    private final Map<Long, Long> checkpointEnds = new HashMap<>();
+    private volatile long syncCount;
+    private volatile IOException failure;
+
+    /**
+     * A change to the scene, in the order it was made.
+     */
+    private static final class Change {
+        final byte type;
+        final int index;
+        final Shape shape;
+
+        Change(byte type, int index, Shape shape) {
+            this.type = type;
+            this.index = index;
+            this.shape = shape;
+        }
+    }
+
+    /**
+     * A framed record waiting to be written, and the checkpoint it holds.
+     */
+    private static final class Entry {
+        final ByteBuffer bytes;
+        final long checkpoint;
+
+        Entry(ByteBuffer bytes, long checkpoint) {
+            this.bytes = bytes;
+            this.checkpoint = checkpoint;
+        }
+    }
+
+    /**
+     * The styles and prototypes defined by the records read so far, by the
+     * number the records refer to them with.
+     */
+    private static final class Definitions {
+        final Map<Integer, Integer> styles = new HashMap<>();
+        final Map<Integer, SymbolInstance> prototypes = new HashMap<>();
+    }
+
+    /**
+     * Creates a journal. Nothing is read or written before
+     * {@link #recover(List, long)}.
+     *
+     * @param file           The log file
+     * @param snapshotNeeded Called when the log has grown past its
+     *                       compaction size or met a change it cannot
+     *                       describe, and a snapshot should be taken
+     */
+    CommandJournal(Path file, Runnable snapshotNeeded) {
+        this(file, snapshotNeeded, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "command-journal");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Creates a journal whose records are written by the given executor,
+     * which must run one task at a time. It is shut down by
+     * {@link #close()}.
+     */
+    CommandJournal(Path file, Runnable snapshotNeeded, ExecutorService writer) {
+        this.file = file;
+        this.snapshotNeeded = snapshotNeeded;
+        this.writer = writer;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Replays the records that follow a checkpoint onto the scene, then
+     * opens the log to append the changes made to the scene from now on.
+     * The log is replayed from its start if it follows that checkpoint, or
+     * from the checkpoint record otherwise; a log that has neither is
+     * stale and is emptied.
+     *
+     * @param scene      The shapes of the whiteboard, as loaded from the
+     *                   snapshot
+     * @param checkpoint The checkpoint of the snapshot, 0 if it has none
+     * @return true if a snapshot should be taken, because records were
+     *         replayed or the log holds records that cannot be
+     * @throws IOException if the log cannot be opened
+     */
+    boolean recover(List<Shape> scene, long checkpoint) throws IOException {
+        this.scene = scene;
+        this.lastCheckpoint = checkpoint;
+        long validEnd = 0;
+        boolean matched = false;
+        boolean stopped = false;
+        boolean stale = false;
+        int replayed = 0;
+        Definitions definitions = new Definitions();
+        long size = Files.exists(file) ? Files.size(file) : 0;
+        if (size >= HEADER_BYTES) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() == MAGIC) {
+                    matched = in.readLong() == checkpoint;
+                    boolean replaying = matched;
+                    validEnd = HEADER_BYTES;
+                    byte[] record;
+                    while ((record = readRecord(in, size - validEnd)) != null) {
+                        validEnd += FRAME_BYTES + record.length;
+                        if (record[0] == CHECKPOINT) {
+                            if (!matched && ByteBuffer.wrap(record, 1, 8).getLong() == checkpoint) {
+                                matched = true;
+                                replaying = true;
+                                stale = true;
+                            }
+                        } else if (record[0] == BARRIER) {
+                            stopped |= replaying;
+                            replaying = false;
+                        } else if (replaying) {
+                            try {
+                                apply(record, scene, definitions);
+                                replayed++;
+                            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                                System.err.println("[CommandJournal] Cannot replay record " + (replayed + 1)
+                                        + ", stopping there: " + e);
+                                stopped = true;
+                                replaying = false;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (matched) {
+            channel.truncate(validEnd);
+            end = validEnd;
+            suspended = stopped;
+        } else {
+            channel.truncate(0);
+            channel.write(header(checkpoint), 0);
+            channel.force(false);
+            end = HEADER_BYTES;
+        }
+        channel.position(end);
+        System.out.println("[CommandJournal] Replayed " + replayed + " records from " + file
+                + (stopped ? ", stopped at a barrier" : ""));
+        return replayed > 0 || stopped || stale || checkpoint < 0;
+    }
+
+    /**
+     * Sets the size the log may reach after a checkpoint before asking for
+     * a snapshot.
+     *
+     * @param bytes The compaction size in bytes
+     */
+    void setCompactBytes(long bytes) {
+        compactBytes = bytes;
+    }
+
+    /**
+     * Gets the number of bytes appended since the last checkpoint.
+     */
+    long getBytesSinceCheckpoint() {
+        return bytesSinceCheckpoint;
+    }
+
+    /**
+     * Gets the number of syncs made so far, each of which commits every
+     * record appended before it.
+     */
+    long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * Tests whether every record has been written so far.
+     */
+    boolean isHealthy() {
+        return failure == null;
+    }
+
+    /**
+     * Appends the changes made to the scene since the last record as a new
+     * record. Must be called on the thread that changes the scene.
+     */
+    void flush() {
+        if (changes.isEmpty() && changed.isEmpty()) {
+            return;
+        }
+        if (suspended || scene == null) {
+            clearChanges();
+            return;
+        }
+        byte[] record;
+        try {
+            record = encode();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[CommandJournal] Cannot journal changes, waiting for a snapshot: " + e);
+            barrier();
+            return;
+        } finally {
+            clearChanges();
+        }
+        append(record, 0);
+        bytesSinceCheckpoint += FRAME_BYTES + record.length;
+        if (bytesSinceCheckpoint > compactBytes) {
+            snapshotNeeded.run();
+        }
+    }
+
+    /**
+     * Appends a checkpoint after the changes made so far. The snapshot taken
+     * at the checkpoint must be captured on the same thread, before the
+     * scene changes again.
+     *
+     * @return The id of the checkpoint, to be saved with the snapshot
+     */
+    long checkpoint() {
+        flush();
+        long id = Math.max(lastCheckpoint + 1, System.currentTimeMillis());
+        lastCheckpoint = id;
+        append(ByteBuffer.allocate(9).put(CHECKPOINT).putLong(id).array(), id);
+        definedStyles.clear();
+        definedPrototypes.clear();
+        suspended = false;
+        bytesSinceCheckpoint = 0;
+        return id;
+    }
+
+    /**
+     * Drops the records up to a checkpoint, once the snapshot taken at it
+     * has been written. Does nothing if the log has already been compacted
+     * past it.
+     *
+     * @param checkpoint The id of the checkpoint
+     * @throws IOException if the log cannot be rewritten
+     */
+    void compact(long checkpoint) throws IOException {
+        try {
+            writer.submit(() -> {
+                compactTo(checkpoint);
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compacting the journal", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                    : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is written and synced.
+     */
+    void sync() throws IOException {
+        try {
+            writer.submit(this::commit).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while syncing the journal", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            writer.shutdown();
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    @Override
+    public void commandExecuted(Command command) {
+        flush();
+    }
+
+    @Override
+    public void commandUndone(Command command) {
+        flush();
+    }
+
+    @Override
+    public void shapeInserted(int index, Shape shape) {
+        if (!suspended) {
+            changes.add(new Change(INSERT, index, shape));
+            inserted.add(shape);
+        }
+    }
+
+    @Override
+    public void shapeRemoved(int index, Shape shape) {
+        if (!suspended) {
+            changes.add(new Change(REMOVE, index, null));
+        }
+    }
+
+    @Override
+    public void shapeChanged(Shape shape) {
+        if (!suspended) {
+            changed.add(shape);
+        }
+    }
+
+    @Override
+    public void shapesReset() {
+        barrier();
+    }
+
+    /**
+     * Stops journaling until the next checkpoint, after a change that the
+     * log cannot describe.
+     */
+    private void barrier() {
+        clearChanges();
+        if (!suspended) {
+            suspended = true;
+            append(new byte[] { BARRIER }, 0);
+            snapshotNeeded.run();
+        }
+    }
+
+    private void clearChanges() {
+        changes.clear();
+        inserted.clear();
+        changed.clear();
+    }
+
+    /**
+     * Encodes the pending changes. Inserted shapes are written as they are
+     * now, and so are the shapes changed in place, at their final position,
+     * after every insertion and removal.
+     */
+    private byte[] encode() throws IOException {
+        List<Shape> updated = new ArrayList<>();
+        for (Shape shape : changed) {
+            if (!inserted.contains(shape) && scene.contains(shape)) {
+                updated.add(shape);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(CHANGES);
+        for (Change change : changes) {
+            if (change.type == INSERT) {
+                define(change.shape, out);
+            }
+            out.writeByte(change.type);
+            out.writeInt(change.index);
+            if (change.type == INSERT) {
+                writeShape(change.shape, out);
+            }
+        }
+        for (Shape shape : updated) {
+            define(shape, out);
+            out.writeByte(UPDATE);
+            out.writeInt(scene.indexOf(shape));
+            writeShape(shape, out);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the definition of the style or prototype of a shape, unless it
+     * was already written since the last checkpoint.
+     */
+    private void define(Shape shape, DataOutputStream out) throws IOException {
+        if (shape instanceof SymbolInstance && ((SymbolInstance) shape).isShared()) {
+            SymbolInstance symbol = (SymbolInstance) shape;
+            ShapeGroup prototype = symbol.getPrototype();
+            if (!definedPrototypes.containsKey(prototype)) {
+                int number = definedPrototypes.size();
+                definedPrototypes.put(prototype, number);
+                out.writeByte(PROTOTYPE);
+                out.writeInt(number);
+                writeSerialized(new SymbolInstance(symbol.getPrototypeKey(), prototype, 0, 0), out);
+            }
+        } else if (shape instanceof Styled && !(shape instanceof ShapeGroup)) {
+            int styleId = ((Styled) shape).getStyleId();
+            if (definedStyles.add(styleId)) {
+                Style style = StyleTable.get(styleId);
+                out.writeByte(STYLE);
+                out.writeInt(styleId);
+                out.writeInt(style.getFill().getRGB());
+                out.writeInt(style.getBorder().getRGB());
+                out.writeInt(style.getBorderRadius());
+            }
+        }
+    }
+
+    /**
+     * Writes the fields of a shape, once its style or prototype is defined.
+     */
+    private void writeShape(Shape shape, DataOutputStream out) throws IOException {
+        if (shape instanceof SymbolInstance && ((SymbolInstance) shape).isShared()) {
+            SymbolInstance symbol = (SymbolInstance) shape;
+            out.writeByte(SYMBOL);
+            out.writeInt(definedPrototypes.get(symbol.getPrototype()));
+            out.writeInt(symbol.getOffsetX());
+            out.writeInt(symbol.getOffsetY());
+        } else if (shape instanceof Rectangle) {
+            Rectangle rectangle = (Rectangle) shape;
+            out.writeByte(RECTANGLE);
+            out.writeInt(rectangle.getX());
+            out.writeInt(rectangle.getY());
+            out.writeInt(rectangle.getWidth());
+            out.writeInt(rectangle.getHeight());
+            out.writeDouble(rectangle.getRotation());
+            out.writeInt(rectangle.getStyleId());
+        } else if (shape instanceof Circle) {
+            Circle circle = (Circle) shape;
+            out.writeByte(CIRCLE);
+            out.writeInt(circle.getX());
+            out.writeInt(circle.getY());
+            out.writeInt(circle.getRadius());
+            out.writeDouble(circle.getRotation());
+            out.writeInt(circle.getStyleId());
+        } else if (shape instanceof RegularPolygon) {
+            RegularPolygon polygon = (RegularPolygon) shape;
+            out.writeByte(POLYGON);
+            out.writeInt(polygon.getX());
+            out.writeInt(polygon.getY());
+            out.writeInt(polygon.getRadius());
+            out.writeInt(polygon.getNumberOfSides());
+            out.writeDouble(polygon.getRotation());
+            out.writeInt(polygon.getStyleId());
+        } else {
+            out.writeByte(SERIALIZED);
+            writeSerialized(shape, out);
+        }
+    }
+
+    private static void writeSerialized(Shape shape, DataOutputStream out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+            objects.writeUnshared(shape);
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    /**
+     * Decodes a record, then applies its changes to the scene.
+     */
+    private static void apply(byte[] record, List<Shape> scene, Definitions definitions)
+            throws IOException, ClassNotFoundException {
+        List<Change> decoded = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1));
+        while (in.available() > 0) {
+            byte type = in.readByte();
+            int index = in.readInt();
+            if (type == STYLE) {
+                Style style = new Style(new Color(in.readInt(), true), new Color(in.readInt(), true), in.readInt());
+                definitions.styles.put(index, StyleTable.intern(style));
+            } else if (type == PROTOTYPE) {
+                definitions.prototypes.put(index, (SymbolInstance) readSerialized(in));
+            } else {
+                Shape shape = type == REMOVE ? null : readShape(in, definitions);
+                decoded.add(new Change(type, index, shape));
+            }
+        }
+        for (Change change : decoded) {
+            if (change.type == INSERT) {
+                scene.add(change.index, change.shape);
+            } else if (change.type == REMOVE) {
+                scene.remove(change.index);
+            } else {
+                scene.set(change.index, change.shape);
+            }
+        }
+    }
+
+    private static Shape readShape(DataInputStream in, Definitions definitions)
+            throws IOException, ClassNotFoundException {
+        byte kind = in.readByte();
+        Shape shape;
+        switch (kind) {
+        case SYMBOL:
+            SymbolInstance symbol = definitions.prototypes.get(in.readInt());
+            if (symbol == null) {
+                throw new IOException("Undefined prototype");
+            }
+            return new SymbolInstance(symbol.getPrototypeKey(), symbol.getPrototype(), in.readInt(), in.readInt());
+        case RECTANGLE:
+            shape = new Rectangle(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            break;
+        case CIRCLE:
+            shape = new Circle(in.readInt(), in.readInt(), in.readInt());
+            break;
+        case POLYGON:
+            shape = new RegularPolygon(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            break;
+        case SERIALIZED:
+            shape = readSerialized(in);
+            shape.setSelected(false);
+            return shape;
+        default:
+            throw new IOException("Unknown shape kind " + kind);
+        }
+        shape.setRotation(in.readDouble());
+        Integer styleId = definitions.styles.get(in.readInt());
+        if (styleId == null) {
+            throw new IOException("Undefined style");
+        }
+        ((Styled) shape).setStyleId(styleId);
+        return shape;
+    }
+
+    private static Shape readSerialized(DataInputStream in) throws IOException, ClassNotFoundException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Shape) objects.readObject();
+        }
+    }
+
+    /**
+     * Reads the next record, or returns null at the end of the log or at a
+     * record that was not completely written.
+     */
+    private static byte[] readRecord(DataInputStream in, long remaining) throws IOException {
+        int length;
+        int crc;
+        try {
+            length = in.readInt();
+            crc = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length <= 0 || length > remaining - FRAME_BYTES) {
+            return null;
+        }
+        byte[] record = new byte[length];
+        in.readFully(record);
+        return crc(record) == crc ? record : null;
+    }
+
+    private static int crc(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer header(long checkpoint) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putLong(checkpoint);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Queues a record for the writer, which commits every queued record
+     * with a single sync.
+     */
+    private void append(byte[] record, long checkpoint) {
+        ByteBuffer framed = ByteBuffer.allocate(FRAME_BYTES + record.length);
+        framed.putInt(record.length).putInt(crc(record)).put(record);
+        framed.flip();
+        synchronized (pending) {
+            pending.add(new Entry(framed, checkpoint));
+            if (!commitScheduled) {
+                commitScheduled = true;
+                writer.execute(this::commit);
+            }
+        }
+    }
+
+    /**
+     * Writes and syncs the queued records. Runs on the writer thread.
+     */
+    private void commit() {
+        List<Entry> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            commitScheduled = false;
+        }
+        if (batch.isEmpty() || failure != null) {
+            return;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        long position = end;
+        for (int i = 0; i < buffers.length; i++) {
+            Entry entry = batch.get(i);
+            buffers[i] = entry.bytes;
+            position += entry.bytes.remaining();
+            if (entry.checkpoint != 0) {
+                checkpointEnds.put(entry.checkpoint, position);
+            }
+        }
+        try {
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(false);
+            end = position;
+            syncCount++;
+        } catch (IOException e) {
+            System.err.println("[CommandJournal] Cannot write to " + file + ": " + e.getMessage());
+            failure = e;
+        }
+    }
+
+    /**
+     * Rewrites the log with only the records after a checkpoint. Runs on
+     * the writer thread.
+     */
+    private void compactTo(long checkpoint) throws IOException {
+        commit();
+        Long offset = checkpointEnds.get(checkpoint);
+        if (offset == null || failure != null) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(header(checkpoint));
+            for (long position = offset; position < end;) {
+                position += channel.transferTo(position, end - position, out);
+            }
+            out.force(false);
+        }
+        channel.close();
+        try {
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            end = channel.size();
+            channel.position(end);
+        }
+        long shift = offset - HEADER_BYTES;
+        for (Iterator<Map.Entry<Long, Long>> it = checkpointEnds.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Long, Long> entry = it.next();
+            if (entry.getValue() <= offset) {
+                it.remove();
+            } else {
+                entry.setValue(entry.getValue() - shift);
+            }
+        }
+    }
+}
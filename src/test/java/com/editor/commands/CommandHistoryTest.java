@@ -0,0 +1,221 @@
+package com.editor.commands;
+
+import java.awt.Color;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.editor.memento.SceneCheckpoint;
+import com.editor.shapes.Circle;
+import com.editor.shapes.Rectangle;
+import com.editor.shapes.SceneDescription;
+import com.editor.shapes.Shape;
+import com.editor.shapes.ShapeGroup;
+import com.editor.spatial.GridSpatialIndex;
+import com.editor.spatial.IndexedShapeList;
+
+import junit.framework.TestCase;
+
+public class CommandHistoryTest extends TestCase {
+    private final IndexedShapeList scene = new IndexedShapeList(new GridSpatialIndex());
+    private Path spillFile;
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (spillFile != null) {
+            Files.deleteIfExists(spillFile);
+        }
+    }
+
+    private List<Shape> createShapes(CommandHistory history, int count) {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Shape shape = i % 2 == 0 ? new Rectangle(10 * i, 0, 10, 10) : new Circle(10 * i, 50, 5);
+            history.executeCommand(new CreateShapeCommand(scene, shape, 0, 0));
+            shapes.add(shape);
+        }
+        return shapes;
+    }
+
+    public void testSpilledCommandsAreReadBackAndUndone() throws Exception {
+        spillFile = Files.createTempFile("command-history-test", ".spill");
+        CommandHistory history = new CommandHistory(8, Long.MAX_VALUE);
+        history.setSpillFile(spillFile);
+        history.setMergeWindow(0);
+        List<Shape> shapes = createShapes(history, 5);
+
+        List<String> states = new ArrayList<>();
+        states.add(SceneDescription.of(scene));
+        for (int i = 0; i < 40; i++) {
+            List<Shape> moved = Collections.singletonList(shapes.get(i % shapes.size()));
+            history.executeCommand(new MoveShapesCommand(moved, i + 1, -i));
+            states.add(SceneDescription.of(scene));
+        }
+        assertTrue(history.getSpilledCount() > 0);
+        assertTrue(history.getSpillBytes() > 0);
+        assertEquals(45, history.getUndoCount());
+
+        for (int i = states.size() - 1; i > 0; i--) {
+            history.undo();
+            assertEquals(states.get(i - 1), SceneDescription.of(scene));
+        }
+        assertEquals(5, history.getUndoCount());
+        for (int i = 0; i < shapes.size(); i++) {
+            assertSame(shapes.get(i), scene.get(i));
+        }
+
+        while (history.getUndoCount() > 0) {
+            history.undo();
+        }
+        assertEquals(0, scene.size());
+        assertEquals(0, history.getSpilledCount());
+        assertTrue(history.getRedoCount() > 0);
+        history.redo();
+        assertSame(shapes.get(0), scene.get(0));
+        history.setSpillFile(null);
+    }
+
+    public void testMovesWithinMergeWindowAreOneUndoStep() {
+        CommandHistory history = new CommandHistory();
+        history.setMergeWindow(60000);
+        List<Shape> shapes = createShapes(history, 2);
+        List<Shape> first = Collections.singletonList(shapes.get(0));
+        String created = SceneDescription.of(scene);
+
+        history.beginInteraction();
+        for (int i = 0; i < 5; i++) {
+            history.executeCommand(new MoveShapesCommand(first, 3, -2));
+        }
+        assertEquals(3, history.getUndoCount());
+        assertEquals(4, history.getMergedCount());
+        String moved = SceneDescription.of(scene);
+
+        history.executeCommand(new MoveShapesCommand(Collections.singletonList(shapes.get(1)), 1, 1));
+        assertEquals(4, history.getUndoCount());
+
+        history.undo();
+        assertEquals(moved, SceneDescription.of(scene));
+        history.undo();
+        assertEquals(created, SceneDescription.of(scene));
+
+        history.redo();
+        history.executeCommand(new MoveShapesCommand(first, 1, 1));
+        assertEquals(4, history.getUndoCount());
+        assertEquals(4, history.getMergedCount());
+        history.undo();
+        assertEquals(moved, SceneDescription.of(scene));
+    }
+
+    private void randomCommand(CommandHistory history, Random random) {
+        int op = scene.size() < 3 ? 0 : random.nextInt(6);
+        Shape picked = scene.size() == 0 ? null : scene.get(random.nextInt(scene.size()));
+        switch (op) {
+            case 0: {
+                Shape shape = random.nextBoolean() ? new Rectangle(0, 0, 10, 10) : new Circle(0, 0, 5);
+                history.executeCommand(new CreateShapeCommand(scene, shape, random.nextInt(300), random.nextInt(300)));
+                break;
+            }
+            case 1:
+                history.executeCommand(new MoveShapesCommand(Collections.singletonList(picked),
+                        random.nextInt(21) - 10, random.nextInt(21) - 10));
+                break;
+            case 2:
+                history.executeCommand(new EditShapeCommand(Collections.singletonList(picked),
+                        new Color(random.nextInt(255), 0, 0), Color.BLUE, random.nextInt(90), 2));
+                break;
+            case 3:
+                history.executeCommand(new DeleteShapesCommand(scene, Collections.singletonList(picked)));
+                break;
+            case 4: {
+                List<Shape> shapes = new ArrayList<>(scene.subList(0, 2));
+                history.executeCommand(new GroupShapesCommand(scene, shapes));
+                break;
+            }
+            default:
+                if (picked instanceof ShapeGroup) {
+                    history.executeCommand(new UngroupShapesCommand(scene, (ShapeGroup) picked));
+                }
+                break;
+        }
+    }
+
+    public void testJumpGivesTheSceneReachedByUndoAndRedo() {
+        CommandHistory history = new CommandHistory();
+        history.setMergeWindow(0);
+        history.addListener(new CommandHistoryListener() {
+            @Override
+            public void commandExecuted(Command command) {
+                if (command instanceof ShapeCommand) {
+                    for (Shape shape : ((ShapeCommand) command).getAffectedShapes()) {
+                        scene.refresh(shape);
+                    }
+                }
+            }
+
+            @Override
+            public void commandUndone(Command command) {
+                commandExecuted(command);
+            }
+        });
+        history.setCheckpointer(new Checkpointer<SceneCheckpoint>() {
+            @Override
+            public SceneCheckpoint capture() {
+                return scene.checkpoint();
+            }
+
+            @Override
+            public void restore(SceneCheckpoint checkpoint) {
+                scene.restore(checkpoint);
+            }
+
+            @Override
+            public long estimateSize(SceneCheckpoint checkpoint) {
+                return checkpoint.estimateSize();
+            }
+
+            @Override
+            public long estimateRestoreCost(SceneCheckpoint checkpoint) {
+                return checkpoint.size();
+            }
+        }, 4);
+
+        Random random = new Random(25);
+        Map<HistoryNode, String> states = new IdentityHashMap<>();
+        states.put(history.getCurrent(), SceneDescription.of(scene));
+        for (int i = 0; i < 300; i++) {
+            if (random.nextInt(5) == 0) {
+                for (int k = random.nextInt(10); k >= 0; k--) {
+                    history.undo();
+                }
+            } else {
+                randomCommand(history, random);
+            }
+            String state = SceneDescription.of(scene);
+            String previous = states.put(history.getCurrent(), state);
+            assertTrue(previous == null || previous.equals(state));
+        }
+
+        List<HistoryNode> nodes = history.getNodes();
+        for (int i = 0; i < 200; i++) {
+            HistoryNode target = nodes.get(random.nextInt(nodes.size()));
+            assertTrue(history.jumpTo(target));
+            assertEquals(states.get(target), SceneDescription.of(scene));
+            if (random.nextInt(4) == 0) {
+                while (history.getUndoCount() > 0) {
+                    history.undo();
+                }
+                assertEquals(states.get(history.getRoot()), SceneDescription.of(scene));
+                while (history.getCurrent() != target) {
+                    history.redo();
+                }
+                assertEquals(states.get(target), SceneDescription.of(scene));
+            }
+        }
+        assertTrue(history.getCheckpointRestoreCount() > 0);
+    }
+}
@@ -0,0 +1,164 @@
+package com.editor.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.editor.memento.SceneCheckpoint;
+import com.editor.shapes.Circle;
+import com.editor.shapes.Rectangle;
+import com.editor.shapes.Shape;
+import com.editor.spatial.GridSpatialIndex;
+import com.editor.spatial.IndexedShapeList;
+
+/**
+ * Measures how long {@link CommandHistory#jumpTo(HistoryNode)} takes to go
+ * back a given number of entries from the tip of a long history, with and
+ * without checkpoints, next to undoing the same entries one by one.
+ * <p>
+ * Run with {@code java -cp target/classes:target/test-classes
+ * com.editor.commands.HistoryJumpBenchmark [shapes] [moved] [depth] [interval]}:
+ * the size of the scene, the number of shapes each move command moves, the
+ * number of commands in the history and the checkpoint interval.
+ */
+public class HistoryJumpBenchmark {
+    private static final int[] DISTANCES = {1, 10, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+    private static final int RUNS = 7;
+    private static final long RESTORE_COST_PER_SHAPE = 16;
+
+    public static void main(String[] args) {
+        int shapes = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int moved = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        int interval = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        System.out.println("[HistoryJumpBenchmark] " + shapes + " shapes, moves of " + moved
+                + " shapes, " + depth + " commands, checkpoint every " + interval);
+        Result plain = run(shapes, moved, depth, 0);
+        Result checkpointed = run(shapes, moved, depth, interval);
+        System.out.printf("building the history: %.0f ms without checkpoints, %.0f ms with%n",
+                plain.buildMillis, checkpointed.buildMillis);
+        System.out.printf("history size: %d KB without checkpoints, %d KB with%n",
+                plain.memoryBytes / 1024, checkpointed.memoryBytes / 1024);
+        System.out.println("   back   undo one by one   jump   jump with checkpoints");
+        for (int i = 0; i < plain.jumpMillis.size(); i++) {
+            System.out.printf("%7d   %12.2f ms   %7.2f ms   %9.2f ms%s%n",
+                    DISTANCES[i], plain.undoMillis.get(i), plain.jumpMillis.get(i),
+                    checkpointed.jumpMillis.get(i), checkpointed.restored.get(i) ? " (restored)" : "");
+        }
+    }
+
+    private static final class Result {
+        double buildMillis;
+        long memoryBytes;
+        final List<Double> jumpMillis = new ArrayList<>();
+        final List<Double> undoMillis = new ArrayList<>();
+        final List<Boolean> restored = new ArrayList<>();
+    }
+
+    /**
+     * Builds a history of moves, creations and deletions over a random
+     * scene, then times jumps back from its tip, best of a few runs.
+     */
+    private static Result run(int shapeCount, int moved, int depth, int interval) {
+        Random random = new Random(1);
+        final IndexedShapeList scene = new IndexedShapeList(new GridSpatialIndex());
+        for (int i = 0; i < shapeCount; i++) {
+            scene.add(new Rectangle(random.nextInt(5000), random.nextInt(5000), 10, 10));
+        }
+        CommandHistory history = new CommandHistory();
+        history.setMergeWindow(0);
+        history.addListener(new CommandHistoryListener() {
+            @Override
+            public void commandExecuted(Command command) {
+                if (command instanceof ShapeCommand) {
+                    for (Shape shape : ((ShapeCommand) command).getAffectedShapes()) {
+                        scene.refresh(shape);
+                    }
+                }
+            }
+
+            @Override
+            public void commandUndone(Command command) {
+                commandExecuted(command);
+            }
+        });
+        if (interval > 0) {
+            history.setCheckpointer(new Checkpointer<SceneCheckpoint>() {
+                @Override
+                public SceneCheckpoint capture() {
+                    return scene.checkpoint();
+                }
+
+                @Override
+                public void restore(SceneCheckpoint checkpoint) {
+                    scene.restore(checkpoint);
+                }
+
+                @Override
+                public long estimateSize(SceneCheckpoint checkpoint) {
+                    return checkpoint.estimateSize();
+                }
+
+                @Override
+                public long estimateRestoreCost(SceneCheckpoint checkpoint) {
+                    return RESTORE_COST_PER_SHAPE * checkpoint.size();
+                }
+            }, interval);
+        }
+
+        List<HistoryNode> path = new ArrayList<>();
+        path.add(history.getCurrent());
+        long start = System.nanoTime();
+        for (int i = 0; i < depth; i++) {
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                Shape circle = new Circle(random.nextInt(5000), random.nextInt(5000), 5);
+                history.executeCommand(new CreateShapeCommand(scene, circle, 0, 0));
+            } else if (kind == 1) {
+                history.executeCommand(new DeleteShapeCommand(scene, scene.get(random.nextInt(scene.size()))));
+            } else {
+                int from = random.nextInt(scene.size() - moved);
+                List<Shape> selection = new ArrayList<>(scene.subList(from, from + moved));
+                history.executeCommand(new MoveShapesCommand(selection, random.nextInt(21) - 10,
+                        random.nextInt(21) - 10));
+            }
+            path.add(history.getCurrent());
+        }
+
+        Result result = new Result();
+        result.buildMillis = (System.nanoTime() - start) / 1e6;
+        result.memoryBytes = history.getMemoryBytes();
+        HistoryNode tip = history.getCurrent();
+        for (int distance : DISTANCES) {
+            if (distance > depth) {
+                break;
+            }
+            HistoryNode target = path.get(depth - distance);
+            long bestJump = Long.MAX_VALUE;
+            long bestUndo = Long.MAX_VALUE;
+            boolean restored = false;
+            for (int run = 0; run < RUNS; run++) {
+                long restores = history.getCheckpointRestoreCount();
+                long before = System.nanoTime();
+                history.jumpTo(target);
+                bestJump = Math.min(bestJump, System.nanoTime() - before);
+                restored = history.getCheckpointRestoreCount() > restores;
+                history.jumpTo(tip);
+
+                before = System.nanoTime();
+                for (int i = 0; i < distance; i++) {
+                    history.undo();
+                }
+                bestUndo = Math.min(bestUndo, System.nanoTime() - before);
+                for (int i = 0; i < distance; i++) {
+                    history.redo();
+                }
+            }
+            result.jumpMillis.add(bestJump / 1e6);
+            result.undoMillis.add(bestUndo / 1e6);
+            result.restored.add(restored);
+        }
+        return result;
+    }
+}
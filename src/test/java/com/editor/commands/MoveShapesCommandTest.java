@@ -0,0 +1,91 @@
+package com.editor.commands;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.editor.shapes.Circle;
+import com.editor.shapes.Rectangle;
+import com.editor.shapes.RegularPolygon;
+import com.editor.shapes.SceneDescription;
+import com.editor.shapes.Shape;
+import com.editor.shapes.ShapeGroup;
+
+import junit.framework.TestCase;
+
+public class MoveShapesCommandTest extends TestCase {
+    private static List<Shape> shapes() {
+        return Arrays.<Shape>asList(
+                new Rectangle(10, 20, 30, 40),
+                new Circle(100, 100, 15),
+                new RegularPolygon(200, 50, 25, 6),
+                new ShapeGroup(Arrays.<Shape>asList(new Rectangle(0, 0, 5, 5), new Circle(50, 60, 7))));
+    }
+
+    public void testUniformMoveUndoesExactly() {
+        List<Shape> shapes = shapes();
+        String before = SceneDescription.of(shapes);
+        MoveShapesCommand command = new MoveShapesCommand(shapes, 17, -9);
+
+        command.execute();
+        assertEquals(27, shapes.get(0).getBoundsX());
+        assertEquals(11, shapes.get(0).getBoundsY());
+        command.undo();
+        assertEquals(before, SceneDescription.of(shapes));
+    }
+
+    public void testPerShapeMoveUndoesExactly() {
+        List<Shape> shapes = shapes();
+        String before = SceneDescription.of(shapes);
+        int circleX = shapes.get(1).getBoundsX();
+        MoveShapesCommand command = new MoveShapesCommand(shapes, new int[] { 1, 2, -3, 4, 0, 0, 7, -8 });
+
+        command.execute();
+        assertEquals(circleX - 3, shapes.get(1).getBoundsX());
+        for (int i = 0; i < 10; i++) {
+            command.undo();
+            command.execute();
+        }
+        command.undo();
+        assertEquals(before, SceneDescription.of(shapes));
+    }
+
+    public void testPositionMapsMoveUndoesExactly() {
+        List<Shape> shapes = shapes();
+        String before = SceneDescription.of(shapes);
+        Map<Shape, Point> start = new HashMap<>();
+        Map<Shape, Point> end = new HashMap<>();
+        for (int i = 0; i < shapes.size(); i++) {
+            Shape shape = shapes.get(i);
+            start.put(shape, new Point(shape.getBoundsX(), shape.getBoundsY()));
+            shape.move(i * 5, -i);
+            end.put(shape, new Point(shape.getBoundsX(), shape.getBoundsY()));
+        }
+        String after = SceneDescription.of(shapes);
+        MoveShapesCommand command = new MoveShapesCommand(shapes, start, end);
+
+        command.undo();
+        assertEquals(before, SceneDescription.of(shapes));
+        command.execute();
+        assertEquals(after, SceneDescription.of(shapes));
+    }
+
+    public void testMergedMovesUndoExactly() {
+        List<Shape> shapes = shapes();
+        String before = SceneDescription.of(shapes);
+        MoveShapesCommand command = new MoveShapesCommand(shapes, 4, 4);
+        command.execute();
+        MoveShapesCommand next = new MoveShapesCommand(shapes, new int[] { 1, 0, 0, 1, -1, 0, 0, -1 });
+        next.execute();
+        String after = SceneDescription.of(shapes);
+
+        assertTrue(command.mergeWith(next));
+        command.undo();
+        assertEquals(before, SceneDescription.of(shapes));
+        command.execute();
+        assertEquals(after, SceneDescription.of(shapes));
+        assertFalse(command.mergeWith(new MoveShapesCommand(shapes.subList(0, 2), 1, 1)));
+    }
+}
@@ -0,0 +1,133 @@
+package com.editor.gui;
+
+import java.awt.Color;
+import java.awt.EventQueue;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.editor.shapes.Circle;
+import com.editor.shapes.Rectangle;
+import com.editor.shapes.Shape;
+import com.editor.spatial.IndexedShapeList;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that painting the whiteboard through its offscreen buffer does not
+ * allocate in proportion to the scene. Allocations are read from
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} on
+ * the event thread, which paints the whiteboard and handles its resize
+ * events; the test is skipped on JVMs that do not count them.
+ */
+public class PaintAllocationTest extends TestCase {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final int SHAPES = 500;
+    private static final int WARMUP_FRAMES = 200;
+    private static final int FRAMES = 100;
+
+    private static final long IDLE_FRAME_BYTES = 2 * 1024;
+    private static final long DAMAGED_FRAME_BYTES = 16 * 1024;
+
+    static {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+    }
+
+    /**
+     * A whiteboard drawing into a plain image, since a canvas that is not
+     * on screen has no peer to create its buffer.
+     */
+    private static final class OffscreenWhiteBoard extends WhiteBoard {
+        OffscreenWhiteBoard() {
+            super(WIDTH, HEIGHT, Color.WHITE);
+            setSize(WIDTH, HEIGHT);
+        }
+
+        @Override
+        public Image createImage(int width, int height) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+    }
+
+    private com.sun.management.ThreadMXBean threads;
+    private WhiteBoard board;
+    private Graphics screen;
+    private Shape moving;
+
+    @Override
+    protected void setUp() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        EventQueue.invokeAndWait(this::createBoard);
+        screen = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB).getGraphics();
+    }
+
+    private void createBoard() {
+        board = new OffscreenWhiteBoard();
+        Random random = new Random(1);
+        for (int i = 0; i < SHAPES; i++) {
+            int x = random.nextInt(WIDTH - 40);
+            int y = random.nextInt(HEIGHT - 40);
+            board.getShapesList().add(i % 2 == 0 ? new Rectangle(x, y, 30, 20) : new Circle(x, y, 12));
+        }
+        moving = board.getShapesList().get(0);
+        for (int i = 0; i < 3; i++) {
+            board.addSelectedShape(board.getShapesList().get(i * 7));
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        screen.dispose();
+        EventQueue.invokeAndWait(() -> board.dispose());
+    }
+
+    public void testIdleFrameAllocation() throws Exception {
+        assertFrameAllocation(false, IDLE_FRAME_BYTES);
+    }
+
+    public void testDamagedFrameAllocation() throws Exception {
+        assertFrameAllocation(true, DAMAGED_FRAME_BYTES);
+    }
+
+    private void assertFrameAllocation(boolean damaged, long limit) throws Exception {
+        if (threads == null) {
+            System.out.println("[PaintAllocationTest] Thread allocation counter unsupported, skipping.");
+            return;
+        }
+        long[] allocated = new long[1];
+        EventQueue.invokeAndWait(() -> {
+            for (int i = 0; i < WARMUP_FRAMES; i++) {
+                frame(damaged, i);
+            }
+            long thread = Thread.currentThread().getId();
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < FRAMES; i++) {
+                frame(damaged, i);
+            }
+            allocated[0] = threads.getThreadAllocatedBytes(thread) - before;
+        });
+        long perFrame = allocated[0] / FRAMES;
+        System.out.println("[PaintAllocationTest] " + (damaged ? "Damaged" : "Idle") + " frame: "
+                + perFrame + " bytes");
+        assertTrue("Frame allocated " + perFrame + " bytes, more than " + limit, perFrame <= limit);
+    }
+
+    private void frame(boolean damaged, int i) {
+        if (damaged) {
+            moving.move(i % 2 == 0 ? 5 : -5, 0);
+            ((IndexedShapeList) board.getShapesList()).refresh(moving);
+        }
+        board.paint(screen);
+    }
+}
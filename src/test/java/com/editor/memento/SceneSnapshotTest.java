@@ -0,0 +1,123 @@
+package com.editor.memento;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.editor.shapes.Circle;
+import com.editor.shapes.Rectangle;
+import com.editor.shapes.SceneDescription;
+import com.editor.shapes.Shape;
+import com.editor.shapes.ShapeGroup;
+import com.editor.spatial.GridSpatialIndex;
+import com.editor.spatial.IndexedShapeList;
+
+import junit.framework.TestCase;
+
+public class SceneSnapshotTest extends TestCase {
+    private static final Color[] COLORS = { Color.RED, Color.GREEN, Color.BLUE, Color.BLACK };
+
+    private final Random random = new Random(19);
+
+    private IndexedShapeList scene(int count) {
+        IndexedShapeList scene = new IndexedShapeList(new GridSpatialIndex());
+        for (int i = 0; i < count; i++) {
+            scene.add(newShape());
+        }
+        return scene;
+    }
+
+    private Shape newShape() {
+        return random.nextBoolean()
+                ? new Rectangle(random.nextInt(500), random.nextInt(500), 10 + random.nextInt(20), 10)
+                : new Circle(random.nextInt(500), random.nextInt(500), 5 + random.nextInt(10));
+    }
+
+    private void mutate(IndexedShapeList scene) {
+        switch (random.nextInt(6)) {
+            case 0:
+                scene.add(random.nextInt(scene.size() + 1), newShape());
+                break;
+            case 1:
+                if (scene.size() > 1) {
+                    scene.remove(random.nextInt(scene.size()));
+                }
+                break;
+            case 2: {
+                Shape shape = scene.get(random.nextInt(scene.size()));
+                shape.setBorderColor(COLORS[random.nextInt(COLORS.length)]);
+                scene.refresh(shape);
+                break;
+            }
+            case 3:
+                if (scene.size() > 3) {
+                    List<Shape> children = new ArrayList<>(scene.subList(0, 2));
+                    scene.removeAll(children);
+                    scene.add(new ShapeGroup(children));
+                }
+                break;
+            default: {
+                Shape shape = scene.get(random.nextInt(scene.size()));
+                shape.move(random.nextInt(41) - 20, random.nextInt(41) - 20);
+                scene.refresh(shape);
+                break;
+            }
+        }
+    }
+
+    public void testRestoreGivesBackTheScene() {
+        IndexedShapeList scene = scene(50);
+        List<SceneSnapshot> snapshots = new ArrayList<>();
+        List<String> descriptions = new ArrayList<>();
+        for (int round = 0; round < 200; round++) {
+            for (int k = random.nextInt(5); k >= 0; k--) {
+                mutate(scene);
+            }
+            snapshots.add(scene.snapshot());
+            descriptions.add(SceneDescription.of(scene));
+        }
+
+        for (int round = 0; round < 200; round++) {
+            int i = random.nextInt(snapshots.size());
+            scene.restore(snapshots.get(i));
+            assertEquals(descriptions.get(i), SceneDescription.of(scene));
+            mutate(scene);
+        }
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertEquals(descriptions.get(i), SceneDescription.of(snapshots.get(i)));
+        }
+    }
+
+    public void testRestoreDoesNotShareShapesWithTheSnapshot() {
+        IndexedShapeList scene = scene(5);
+        SceneSnapshot snapshot = scene.snapshot();
+        String description = SceneDescription.of(scene);
+
+        scene.clear();
+        scene.restore(snapshot);
+        for (Shape shape : scene) {
+            shape.move(3, 3);
+            scene.refresh(shape);
+        }
+        assertEquals(description, SceneDescription.of(snapshot));
+
+        scene.restore(snapshot);
+        assertEquals(description, SceneDescription.of(scene));
+    }
+
+    public void testMementoRoundTrip() {
+        IndexedShapeList scene = scene(10);
+        scene.add(new ShapeGroup(Arrays.<Shape>asList(newShape(), newShape())));
+        ShapeMemento memento = new ShapeMemento(scene.snapshot());
+        String description = SceneDescription.of(scene);
+
+        for (int k = 0; k < 20; k++) {
+            mutate(scene);
+        }
+        assertEquals(description, SceneDescription.of(memento.getShapesState()));
+        scene.restore(memento.getSnapshot());
+        assertEquals(description, SceneDescription.of(scene));
+    }
+}
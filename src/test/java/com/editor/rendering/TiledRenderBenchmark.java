@@ -0,0 +1,92 @@
+package com.editor.rendering;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import com.editor.shapes.Circle;
+import com.editor.shapes.RegularPolygon;
+import com.editor.shapes.Shape;
+import com.editor.spatial.GridSpatialIndex;
+import com.editor.spatial.IndexedShapeList;
+
+/**
+ * Measures how {@link TiledRenderer} scales with its parallelism: a fixed
+ * large scene is painted with a cold tile cache, as after a zoom change, at
+ * every thread count from 1 to the number of available processors.
+ * <p>
+ * Run with {@code java -cp target/classes:target/test-classes
+ * com.editor.rendering.TiledRenderBenchmark [shapes] [frames]}: the size of
+ * the scene and the number of frames timed at each thread count.
+ */
+public class TiledRenderBenchmark {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int WARMUP_FRAMES = 5;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int shapeCount = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        Random random = new Random(1);
+        IndexedShapeList scene = new IndexedShapeList(new GridSpatialIndex());
+        for (int i = 0; i < shapeCount; i++) {
+            int x = random.nextInt(WIDTH);
+            int y = random.nextInt(HEIGHT);
+            Shape shape;
+            switch (i % 3) {
+            case 0:
+                shape = new com.editor.shapes.Rectangle(x, y, 10 + random.nextInt(40), 10 + random.nextInt(40));
+                break;
+            case 1:
+                shape = new Circle(x, y, 5 + random.nextInt(20));
+                break;
+            default:
+                shape = new RegularPolygon(x, y, 5 + random.nextInt(20), 3 + random.nextInt(6));
+                break;
+            }
+            shape.setRotation(random.nextInt(4) == 0 ? random.nextInt(360) : 0);
+            scene.add(shape);
+        }
+
+        BufferedImage screen = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = screen.createGraphics();
+        Rectangle clip = new Rectangle(0, 0, WIDTH, HEIGHT);
+        ViewTransform view = new ViewTransform();
+        TileCache cache = new TileCache();
+        TiledRenderer renderer = new TiledRenderer(cache, scene, new RenderStats(), Color.WHITE);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("[TiledRenderBenchmark] " + shapeCount + " shapes, " + WIDTH + "x" + HEIGHT
+                + ", " + frames + " frames, " + processors + " processors");
+        System.out.println("threads   ms/frame   best ms   speedup");
+        double single = 0;
+        for (int threads = 1; threads <= processors; threads++) {
+            renderer.setParallelism(threads);
+            for (int i = 0; i < WARMUP_FRAMES; i++) {
+                cache.clear();
+                renderer.paint(g2d, clip, view);
+            }
+            long total = 0;
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < frames; i++) {
+                cache.clear();
+                long start = System.nanoTime();
+                renderer.paint(g2d, clip, view);
+                long elapsed = System.nanoTime() - start;
+                total += elapsed;
+                best = Math.min(best, elapsed);
+            }
+            double average = total / 1e6 / frames;
+            if (threads == 1) {
+                single = average;
+            }
+            System.out.printf("%7d   %8.2f   %7.2f   %6.2fx%n", threads, average, best / 1e6, single / average);
+        }
+        renderer.dispose();
+        g2d.dispose();
+    }
+}
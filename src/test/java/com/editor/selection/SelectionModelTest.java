@@ -0,0 +1,79 @@
+package com.editor.selection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.editor.shapes.Rectangle;
+import com.editor.shapes.Shape;
+
+import junit.framework.TestCase;
+
+public class SelectionModelTest extends TestCase {
+    private static List<Shape> shapes(int count) {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shapes.add(new Rectangle(i, i, 10, 10));
+        }
+        return shapes;
+    }
+
+    public void testGetWhileIteratingSeesEveryShapeOnce() {
+        List<Shape> shapes = shapes(10);
+        SelectionModel selection = new SelectionModel();
+        selection.addAll(shapes);
+        selection.removeAll(Arrays.asList(shapes.get(1), shapes.get(4), shapes.get(7)));
+
+        List<Shape> iterated = new ArrayList<>();
+        int i = 0;
+        for (Shape shape : selection) {
+            assertSame(shape, selection.get(i++));
+            iterated.add(shape);
+        }
+        assertEquals(selection.asList(), iterated);
+        assertEquals(7, iterated.size());
+    }
+
+    public void testKeepsSelectionOrderAgainstOracle() {
+        List<Shape> shapes = shapes(50);
+        SelectionModel selection = new SelectionModel();
+        List<Shape> oracle = new ArrayList<>();
+        Random random = new Random(5);
+        for (int step = 0; step < 5000; step++) {
+            Shape shape = shapes.get(random.nextInt(shapes.size()));
+            if (random.nextBoolean()) {
+                assertEquals(!oracle.contains(shape), selection.add(shape));
+                if (!oracle.contains(shape)) {
+                    oracle.add(shape);
+                }
+            } else {
+                assertEquals(oracle.remove(shape), selection.remove(shape));
+            }
+            assertEquals(oracle.size(), selection.size());
+            for (int i = 0; i < oracle.size(); i++) {
+                assertSame(oracle.get(i), selection.get(i));
+                assertTrue(oracle.get(i).isSelected());
+            }
+        }
+    }
+
+    public void testToggleNullDoesNotNotify() {
+        SelectionModel selection = new SelectionModel();
+        final int[] notified = new int[1];
+        selection.addListener(new SelectionListener() {
+            @Override
+            public void selectionChanged(SelectionModel model) {
+                notified[0]++;
+            }
+        });
+        assertFalse(selection.toggle(null));
+        assertEquals(0, notified[0]);
+
+        Shape shape = new Rectangle(0, 0, 5, 5);
+        assertTrue(selection.toggle(shape));
+        assertFalse(selection.toggle(shape));
+        assertEquals(2, notified[0]);
+        assertFalse(shape.isSelected());
+    }
+}
@@ -0,0 +1,99 @@
+package com.editor.shapes;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the time and the retained heap of stamping many shapes out of
+ * the two prototype registries: single shapes and a group prototype from
+ * {@link ShapePrototypeRegistry}, the same group from
+ * {@link CompositeShapePrototypeRegistry}, and, for comparison, deep clones
+ * of that group.
+ * <p>
+ * Run with {@code java -cp target/classes:target/test-classes
+ * com.editor.shapes.PrototypeStampingBenchmark [instances]}. The composite
+ * registry logs every placement; its output is discarded while it runs.
+ */
+public class PrototypeStampingBenchmark {
+    private static final int GROUP_SIZE = 8;
+    private static final int RUNS = 5;
+
+    /**
+     * Stamps one shape.
+     */
+    private interface Stamp {
+        Shape create(int i);
+    }
+
+    public static void main(String[] args) {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        final ShapeGroup group = new ShapeGroup();
+        for (int i = 0; i < GROUP_SIZE; i++) {
+            group.addShape(i % 2 == 0 ? new Rectangle(i * 20, 0, 15, 15) : new Circle(i * 20, 30, 8));
+        }
+        final ShapePrototypeRegistry shapes = new ShapePrototypeRegistry();
+        shapes.registerPrototype("rectangle", new Rectangle(0, 0, 40, 30));
+        shapes.registerPrototype("polygon", new RegularPolygon(0, 0, 20, 6));
+        shapes.registerPrototype("group", group);
+        final CompositeShapePrototypeRegistry composites = new CompositeShapePrototypeRegistry();
+        composites.registerPrototype("group", group);
+
+        System.out.println("[PrototypeStampingBenchmark] " + count + " instances, groups of " + GROUP_SIZE + " shapes");
+        System.out.println("                                       ms   bytes/instance");
+        run("shape registry, rectangle", count, i -> shapes.createShape("rectangle", i % 5000, i / 5000));
+        run("shape registry, polygon", count, i -> shapes.createShape("polygon", i % 5000, i / 5000));
+        run("shape registry, group", count, i -> shapes.createShape("group", i % 5000, i / 5000));
+        run("composite registry, group", count, i -> composites.createGroup("group", i % 5000, i / 5000));
+        run("deep clone of the group", count, i -> {
+            Shape clone = group.clone();
+            clone.setPosition(i % 5000, i / 5000);
+            return clone;
+        });
+    }
+
+    /**
+     * Stamps the instances a few times, keeping the best time, then reports
+     * the heap the last batch retains after a full collection.
+     */
+    private static void run(String name, int count, Stamp stamp) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        long best = Long.MAX_VALUE;
+        long retained = 0;
+        List<Shape> instances = null;
+        try {
+            for (int run = 0; run < RUNS; run++) {
+                instances = null;
+                long before = usedHeap();
+                long start = System.nanoTime();
+                instances = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    instances.add(stamp.create(i));
+                }
+                best = Math.min(best, System.nanoTime() - start);
+                retained = usedHeap() - before;
+            }
+        } finally {
+            System.setOut(out);
+        }
+        System.out.printf("%-34s %8.1f   %8d%n", name, best / 1e6,
+                (retained - 4L * count) / instances.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,55 @@
+package com.editor.shapes;
+
+import java.util.List;
+
+/**
+ * Describes scenes as text, so that tests can compare two scenes made of
+ * different shape objects. The description covers the kind, bounds,
+ * rotation and style of every shape, and the children of groups; a symbol
+ * instance is described by its shapes without being taken off its
+ * prototype.
+ */
+public final class SceneDescription {
+    private SceneDescription() {
+    }
+
+    public static String of(Iterable<? extends Shape> shapes) {
+        StringBuilder description = new StringBuilder();
+        for (Shape shape : shapes) {
+            describe(shape, description);
+            description.append('\n');
+        }
+        return description.toString();
+    }
+
+    public static String of(Shape shape) {
+        StringBuilder description = new StringBuilder();
+        describe(shape, description);
+        return description.toString();
+    }
+
+    private static void describe(Shape shape, StringBuilder description) {
+        description.append(shape.getClass().getSimpleName()).append('(')
+                .append(shape.getBoundsX()).append(',').append(shape.getBoundsY()).append(',')
+                .append(shape.getBoundsWidth()).append(',').append(shape.getBoundsHeight())
+                .append(" rotation ").append(shape.getRotation());
+        if (shape instanceof Styled) {
+            Style style = StyleTable.get(((Styled) shape).getStyleId());
+            description.append(" fill ").append(Integer.toHexString(style.getFill().getRGB()))
+                    .append(" border ").append(Integer.toHexString(style.getBorder().getRGB()))
+                    .append(" radius ").append(style.getBorderRadius());
+        }
+        if (shape instanceof ShapeGroup) {
+            ShapeGroup group = (ShapeGroup) shape;
+            description.append(" border ").append(group.getBorderColor() == null
+                    ? "none" : Integer.toHexString(group.getBorderColor().getRGB()));
+            List<Shape> children = group instanceof SymbolInstance
+                    ? ((SymbolInstance) group).copyShapes() : group.getShapes();
+            for (Shape child : children) {
+                description.append(' ');
+                describe(child, description);
+            }
+        }
+        description.append(')');
+    }
+}
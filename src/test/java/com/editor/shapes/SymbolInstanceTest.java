@@ -0,0 +1,51 @@
+package com.editor.shapes;
+
+import junit.framework.TestCase;
+
+public class SymbolInstanceTest extends TestCase {
+    private static ShapeGroup prototype(int x) {
+        ShapeGroup group = new ShapeGroup();
+        group.addShape(new Rectangle(x, 0, 10, 10));
+        group.addShape(new Circle(x + 20, 20, 5));
+        return group;
+    }
+
+    public void testRestoreFromInstanceOfAnotherPrototype() {
+        SymbolInstance instance = new SymbolInstance("a", prototype(0), 5, 5);
+        SymbolInstance record = new SymbolInstance("b", prototype(100), 1, 2);
+
+        instance.restoreState(record);
+
+        assertFalse(instance.isShared());
+        assertTrue(record.isShared());
+        assertEquals(record.getBoundsX(), instance.getBoundsX());
+        assertEquals(record.getBoundsY(), instance.getBoundsY());
+        assertEquals(record.getBoundsWidth(), instance.getBoundsWidth());
+    }
+
+    public void testRestoreOffsetOfSharedInstance() {
+        ShapeGroup shared = prototype(0);
+        SymbolInstance instance = new SymbolInstance("a", shared, 5, 5);
+        SymbolInstance record = new SymbolInstance("a", shared, 30, 40);
+
+        instance.restoreState(record);
+
+        assertTrue(instance.isShared());
+        assertEquals(30, instance.getOffsetX());
+        assertEquals(40, instance.getOffsetY());
+    }
+
+    public void testRestoreFromMaterializedRecord() {
+        ShapeGroup shared = prototype(0);
+        SymbolInstance instance = new SymbolInstance("a", shared, 0, 0);
+        SymbolInstance record = new SymbolInstance("a", shared, 0, 0);
+        record.getShapes();
+        record.move(7, 3);
+
+        instance.restoreState(record);
+
+        assertFalse(instance.isShared());
+        assertEquals(record.getBoundsX(), instance.getBoundsX());
+        assertEquals(record.getBoundsY(), instance.getBoundsY());
+    }
+}
@@ -0,0 +1,174 @@
+package com.editor.spatial;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import com.editor.memento.SceneSnapshot;
+import com.editor.shapes.Circle;
+import com.editor.shapes.Rectangle;
+import com.editor.shapes.Shape;
+
+import junit.framework.TestCase;
+
+public class IndexedShapeListTest extends TestCase {
+    private static final int OPERATIONS = 20000;
+
+    private final Random random = new Random(42);
+    private int created;
+
+    private Shape newShape() {
+        created++;
+        return created % 2 == 0
+                ? new Rectangle(random.nextInt(1000), random.nextInt(1000), 10, 10)
+                : new Circle(random.nextInt(1000), random.nextInt(1000), 5);
+    }
+
+    public void testMatchesArrayList() {
+        runAgainstOracle(false);
+    }
+
+    public void testMatchesArrayListWhileSnapshotting() {
+        runAgainstOracle(true);
+    }
+
+    private void runAgainstOracle(boolean snapshots) {
+        IndexedShapeList list = new IndexedShapeList(new GridSpatialIndex());
+        List<Shape> oracle = new ArrayList<>();
+        List<Shape> removed = new ArrayList<>();
+        if (snapshots) {
+            list.snapshot();
+        }
+
+        for (int step = 0; step < OPERATIONS; step++) {
+            int size = oracle.size();
+            int op = random.nextInt(size < 20 ? 2 : 9);
+            switch (op) {
+                case 0:
+                case 1: {
+                    int i = random.nextInt(size + 1);
+                    Shape shape = !removed.isEmpty() && random.nextBoolean()
+                            ? removed.remove(removed.size() - 1) : newShape();
+                    list.add(i, shape);
+                    oracle.add(i, shape);
+                    break;
+                }
+                case 2: {
+                    int i = random.nextInt(size);
+                    Shape expected = oracle.remove(i);
+                    assertSame(expected, list.remove(i));
+                    removed.add(expected);
+                    break;
+                }
+                case 3: {
+                    Shape shape = oracle.get(random.nextInt(size));
+                    oracle.remove(shape);
+                    assertTrue(list.remove(shape));
+                    assertFalse(list.remove(shape));
+                    removed.add(shape);
+                    break;
+                }
+                case 4: {
+                    int i = random.nextInt(size);
+                    Shape shape = newShape();
+                    Shape expected = oracle.set(i, shape);
+                    assertSame(expected, list.set(i, shape));
+                    removed.add(expected);
+                    break;
+                }
+                case 5: {
+                    int i = random.nextInt(size);
+                    assertSame(oracle.get(i), list.get(i));
+                    assertEquals(i, list.indexOf(oracle.get(i)));
+                    break;
+                }
+                case 6: {
+                    Shape shape = removed.isEmpty() ? newShape() : removed.get(random.nextInt(removed.size()));
+                    assertEquals(oracle.indexOf(shape), list.indexOf(shape));
+                    assertEquals(oracle.contains(shape), list.contains(shape));
+                    break;
+                }
+                case 7: {
+                    List<Shape> batch = new ArrayList<>();
+                    for (int k = random.nextInt(5); k >= 0; k--) {
+                        batch.add(oracle.get(random.nextInt(size)));
+                    }
+                    batch.add(newShape());
+                    oracle.removeAll(batch);
+                    list.removeAll(batch);
+                    break;
+                }
+                default: {
+                    Shape shape = oracle.get(random.nextInt(size));
+                    shape.move(random.nextInt(21) - 10, random.nextInt(21) - 10);
+                    list.refresh(shape);
+                    if (snapshots && random.nextInt(10) == 0) {
+                        assertSnapshot(oracle, list.snapshot());
+                    }
+                    break;
+                }
+            }
+            assertEquals(oracle.size(), list.size());
+            if (step % 500 == 0) {
+                assertSameOrder(oracle, list);
+            }
+        }
+        assertSameOrder(oracle, list);
+        if (snapshots) {
+            assertSnapshot(oracle, list.snapshot());
+        }
+    }
+
+    private static void assertSameOrder(List<Shape> oracle, IndexedShapeList list) {
+        Iterator<Shape> iterator = list.iterator();
+        for (int i = 0; i < oracle.size(); i++) {
+            assertSame(oracle.get(i), list.get(i));
+            assertSame(oracle.get(i), iterator.next());
+            assertEquals(i, list.indexOf(oracle.get(i)));
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    private static void assertSnapshot(List<Shape> oracle, SceneSnapshot snapshot) {
+        assertEquals(oracle.size(), snapshot.size());
+        for (int i = 0; i < oracle.size(); i++) {
+            Shape record = snapshot.get(i);
+            assertNotSame(oracle.get(i), record);
+            assertEquals(oracle.get(i).getClass(), record.getClass());
+            assertEquals(oracle.get(i).getBoundsX(), record.getBoundsX());
+            assertEquals(oracle.get(i).getBoundsY(), record.getBoundsY());
+        }
+    }
+
+    public void testAddRejectsShapeAlreadyInList() {
+        IndexedShapeList list = new IndexedShapeList(new GridSpatialIndex());
+        Shape shape = newShape();
+        list.add(shape);
+        list.add(newShape());
+        try {
+            list.add(shape);
+            fail("Added a shape twice");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        assertEquals(2, list.size());
+    }
+
+    public void testSetRejectsShapeElsewhereInList() {
+        IndexedShapeList list = new IndexedShapeList(new GridSpatialIndex());
+        Shape first = newShape();
+        Shape second = newShape();
+        list.add(first);
+        list.add(second);
+        try {
+            list.set(1, first);
+            fail("Set a shape that is already in the list");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        assertSame(second, list.get(1));
+        assertSame(first, list.set(0, first));
+        assertEquals(0, list.indexOf(first));
+    }
+}
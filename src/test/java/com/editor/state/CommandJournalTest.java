@@ -0,0 +1,342 @@
+package com.editor.state;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.editor.commands.Command;
+import com.editor.commands.CommandHistory;
+import com.editor.commands.CommandHistoryListener;
+import com.editor.commands.CreateShapeCommand;
+import com.editor.commands.EditShapeCommand;
+import com.editor.commands.GroupShapesCommand;
+import com.editor.commands.MoveShapeCommand;
+import com.editor.commands.MoveShapesCommand;
+import com.editor.commands.ShapeCommand;
+import com.editor.commands.UngroupShapesCommand;
+import com.editor.shapes.Circle;
+import com.editor.shapes.Rectangle;
+import com.editor.shapes.RegularPolygon;
+import com.editor.shapes.SceneDescription;
+import com.editor.shapes.Shape;
+import com.editor.shapes.ShapeGroup;
+import com.editor.shapes.SymbolInstance;
+import com.editor.spatial.GridSpatialIndex;
+import com.editor.spatial.IndexedShapeList;
+
+import junit.framework.TestCase;
+
+public class CommandJournalTest extends TestCase {
+    private final Random random = new Random(24);
+    private final ShapeGroup prototype = new ShapeGroup();
+    private final List<CommandJournal> journals = new ArrayList<>();
+    private Path directory;
+    private Path file;
+    private int snapshotRequests;
+
+    private IndexedShapeList scene;
+    private CommandHistory history;
+    private CommandJournal journal;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("command-journal-test");
+        file = directory.resolve("autosave.ser.journal");
+        prototype.addShape(new Circle(0, 0, 5));
+        prototype.addShape(new Rectangle(5, 5, 10, 10));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (CommandJournal opened : journals) {
+            opened.close();
+        }
+        for (Path path : Files.newDirectoryStream(directory)) {
+            Files.delete(path);
+        }
+        Files.delete(directory);
+    }
+
+    private static List<Shape> copy(List<Shape> shapes) {
+        List<Shape> copies = new ArrayList<>(shapes.size());
+        for (Shape shape : shapes) {
+            copies.add(shape.clone());
+        }
+        return copies;
+    }
+
+    private static IndexedShapeList sceneOf(List<Shape> shapes) {
+        IndexedShapeList list = new IndexedShapeList(new GridSpatialIndex());
+        list.addAll(copy(shapes));
+        return list;
+    }
+
+    private List<Shape> base() {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            shapes.add(new Rectangle(i * 3, i * 2, 10, 10));
+        }
+        return shapes;
+    }
+
+    /**
+     * Opens the journal on a copy of the given shapes, wired to a history
+     * the way the whiteboard does it.
+     */
+    private void open(List<Shape> shapes, long checkpoint) throws IOException {
+        open(shapes, checkpoint, null);
+    }
+
+    private void open(List<Shape> shapes, long checkpoint, ExecutorService writer) throws IOException {
+        scene = sceneOf(shapes);
+        history = new CommandHistory();
+        history.setMergeWindow(0);
+        Runnable snapshotNeeded = () -> snapshotRequests++;
+        journal = writer == null ? new CommandJournal(file, snapshotNeeded)
+                : new CommandJournal(file, snapshotNeeded, writer);
+        journals.add(journal);
+        journal.recover(scene, checkpoint);
+        history.addListener(new CommandHistoryListener() {
+            @Override
+            public void commandExecuted(Command command) {
+                if (command instanceof ShapeCommand) {
+                    for (Shape shape : ((ShapeCommand) command).getAffectedShapes()) {
+                        scene.refresh(shape);
+                    }
+                }
+            }
+
+            @Override
+            public void commandUndone(Command command) {
+                commandExecuted(command);
+            }
+        });
+        history.addListener(journal);
+        scene.setListener(journal);
+    }
+
+    /**
+     * Replays a copy of the log onto a copy of the given shapes.
+     */
+    private IndexedShapeList replay(List<Shape> shapes, long checkpoint, boolean snapshotNeeded)
+            throws IOException {
+        journal.sync();
+        Path replayed = directory.resolve("replay" + journals.size());
+        Files.copy(file, replayed);
+        IndexedShapeList list = sceneOf(shapes);
+        CommandJournal reader = new CommandJournal(replayed, () -> {
+        });
+        journals.add(reader);
+        assertEquals(snapshotNeeded, reader.recover(list, checkpoint));
+        return list;
+    }
+
+    private Shape pick() {
+        return scene.get(random.nextInt(scene.size()));
+    }
+
+    private List<Shape> pickSome() {
+        List<Shape> picked = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Shape shape = pick();
+            if (!picked.contains(shape)) {
+                picked.add(shape);
+            }
+        }
+        return picked;
+    }
+
+    private void randomEdit() {
+        int op = scene.size() < 3 ? 0 : random.nextInt(9);
+        switch (op) {
+            case 0: {
+                int x = random.nextInt(500);
+                int y = random.nextInt(500);
+                int kind = random.nextInt(4);
+                Shape shape = kind == 0 ? new Rectangle(x, y, 10, 10)
+                        : kind == 1 ? new Circle(x, y, 7)
+                        : kind == 2 ? new RegularPolygon(x, y, 9, 5)
+                        : new SymbolInstance("star", prototype, x, y);
+                history.executeCommand(new CreateShapeCommand(scene, shape, 0, 0));
+                break;
+            }
+            case 1: {
+                Shape shape = pick();
+                history.executeCommand(new MoveShapeCommand(shape, shape.getBoundsX(), shape.getBoundsY(),
+                        random.nextInt(500), random.nextInt(500)));
+                break;
+            }
+            case 2:
+                history.executeCommand(new MoveShapesCommand(pickSome(), 3, 4));
+                break;
+            case 3:
+                history.executeCommand(new EditShapeCommand(pickSome(), new Color(random.nextInt(255), 0, 0),
+                        Color.BLUE, random.nextInt(90), 2));
+                break;
+            case 4: {
+                List<Shape> shapes = pickSome();
+                if (shapes.size() > 1) {
+                    history.executeCommand(new GroupShapesCommand(scene, shapes));
+                }
+                break;
+            }
+            case 5:
+                for (Shape shape : scene) {
+                    if (shape instanceof ShapeGroup) {
+                        history.executeCommand(new UngroupShapesCommand(scene, (ShapeGroup) shape));
+                        break;
+                    }
+                }
+                break;
+            case 6:
+                history.undo();
+                break;
+            case 7:
+                history.redo();
+                break;
+            default:
+                scene.remove(pick());
+                journal.flush();
+                break;
+        }
+    }
+
+    private void randomEdits(int count) {
+        for (int i = 0; i < count; i++) {
+            randomEdit();
+        }
+    }
+
+    public void testReplayGivesBackTheScene() throws IOException {
+        List<Shape> base = base();
+        open(base, 0);
+        randomEdits(1000);
+
+        IndexedShapeList replayed = replay(base, 0, true);
+        assertEquals(SceneDescription.of(scene), SceneDescription.of(replayed));
+    }
+
+    public void testTornTailRecordIsDropped() throws IOException {
+        List<Shape> base = base();
+        open(base, 0);
+        randomEdits(100);
+        journal.sync();
+        String before = SceneDescription.of(scene);
+        long size = Files.size(file);
+
+        Shape shape = pick();
+        history.executeCommand(new MoveShapeCommand(shape, shape.getBoundsX(), shape.getBoundsY(), 1, 1));
+        journal.sync();
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        IndexedShapeList replayed = replay(base, 0, true);
+        assertEquals(before, SceneDescription.of(replayed));
+        assertEquals(size, Files.size(directory.resolve("replay" + (journals.size() - 1))));
+    }
+
+    public void testRecordFailingItsChecksumEndsReplay() throws IOException {
+        List<Shape> base = base();
+        open(base, 0);
+        List<String> states = new ArrayList<>();
+        List<Long> ends = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Shape shape = pick();
+            history.executeCommand(new MoveShapeCommand(shape, shape.getBoundsX(), shape.getBoundsY(), i, i));
+            journal.sync();
+            states.add(SceneDescription.of(scene));
+            ends.add(Files.size(file));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long position = ends.get(5) + 10;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xFF);
+        }
+
+        IndexedShapeList replayed = replay(base, 0, true);
+        assertEquals(states.get(5), SceneDescription.of(replayed));
+        assertEquals((long) ends.get(5), Files.size(directory.resolve("replay" + (journals.size() - 1))));
+    }
+
+    public void testRecordsAppendedDuringSyncAreCommittedTogether() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        List<Shape> base = base();
+        open(base, 0, writer);
+        writer.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        long syncs = journal.getSyncCount();
+
+        for (int i = 0; i < 200; i++) {
+            Shape shape = pick();
+            history.executeCommand(new MoveShapeCommand(shape, shape.getBoundsX(), shape.getBoundsY(), i, i));
+        }
+        assertEquals(syncs, journal.getSyncCount());
+        release.countDown();
+        journal.sync();
+        assertEquals(syncs + 1, journal.getSyncCount());
+        journal.sync();
+        assertEquals(syncs + 1, journal.getSyncCount());
+
+        IndexedShapeList replayed = replay(base, 0, true);
+        assertEquals(SceneDescription.of(scene), SceneDescription.of(replayed));
+    }
+
+    public void testCompactionKeepsRecordsAfterTheCheckpoint() throws IOException {
+        List<Shape> base = base();
+        open(base, 0);
+        randomEdits(300);
+        long checkpoint = journal.checkpoint();
+        List<Shape> snapshot = copy(scene);
+        randomEdits(200);
+        journal.sync();
+        String expected = SceneDescription.of(scene);
+
+        assertEquals(expected, SceneDescription.of(replay(snapshot, checkpoint, true)));
+        assertEquals(expected, SceneDescription.of(replay(base, 0, true)));
+
+        long uncompacted = Files.size(file);
+        journal.compact(checkpoint);
+        assertTrue(Files.size(file) < uncompacted);
+        assertEquals(expected, SceneDescription.of(replay(snapshot, checkpoint, true)));
+
+        randomEdits(50);
+        assertEquals(SceneDescription.of(scene), SceneDescription.of(replay(snapshot, checkpoint, true)));
+        assertEquals(SceneDescription.of(base), SceneDescription.of(replay(base, 0, false)));
+    }
+
+    public void testBarrierStopsReplayUntilNextCheckpoint() throws IOException {
+        List<Shape> base = base();
+        open(base, 0);
+        randomEdits(100);
+        String beforeReset = SceneDescription.of(scene);
+        int requests = snapshotRequests;
+
+        scene.clear();
+        scene.add(new Circle(1, 1, 1));
+        randomEdits(20);
+        assertEquals(requests + 1, snapshotRequests);
+        assertEquals(beforeReset, SceneDescription.of(replay(base, 0, true)));
+
+        long checkpoint = journal.checkpoint();
+        List<Shape> snapshot = copy(scene);
+        randomEdits(20);
+        assertEquals(SceneDescription.of(scene), SceneDescription.of(replay(snapshot, checkpoint, true)));
+    }
+}